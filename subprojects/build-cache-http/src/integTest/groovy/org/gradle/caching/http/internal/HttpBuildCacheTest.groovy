@@ -97,4 +97,54 @@ class HttpBuildCacheTest extends Specification {
 
         exception.message == "For key '${key.hashCode}', using HTTP cache at ${server.uri}/cache/ response status 500: broken"
     }
+
+    def "releases connection after cache miss"() {
+        cache = new HttpBuildCache(server.uri.resolve("/cache/"), 1)
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGetMissing("/cache/${key.hashCode}")
+        server.expectGet("/cache/${key.hashCode}", srcFile)
+
+        when:
+        def firstResult = cache.load(key) { input ->
+            throw new RuntimeException("That should never be called")
+        }
+        def receivedInput = null
+        def secondResult = cache.load(key) { input ->
+            receivedInput = input.text
+        }
+
+        then:
+        !firstResult
+        secondResult
+        receivedInput == "Data"
+    }
+
+    def "releases connection after store"() {
+        cache = new HttpBuildCache(server.uri.resolve("/cache/"), 1)
+        def destFile = tempDir.file("cached.zip")
+        def otherDestFile = tempDir.file("other.zip")
+        server.expectPut("/cache/${key.hashCode}", destFile)
+        server.expectPut("/cache/${key.hashCode}", otherDestFile)
+
+        when:
+        cache.store(key) { output ->
+            output << "Data"
+        }
+        cache.store(key) { output ->
+            output << "Other"
+        }
+
+        then:
+        destFile.text == "Data"
+        otherDestFile.text == "Other"
+    }
+
+    def "requires at least one connection"() {
+        when:
+        new HttpBuildCache(server.uri.resolve("/cache/"), 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
@@ -25,6 +25,8 @@ import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.gradle.caching.BuildCache;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
@@ -44,8 +46,12 @@ import java.net.URISyntaxException;
  * Build cache implementation that delegates to a service accessible via HTTP.
  *
  * <p>Cache entries are loaded via {@literal GET} and stored via {@literal PUT} requests.</p>
+ *
+ * <p>Connections are pooled and kept alive between requests, so that loading and storing entries for many tasks does not pay for
+ * establishing a new connection every time. Cache entries are already compressed, so no compression is negotiated with the server.</p>
  */
 public class HttpBuildCache implements BuildCache {
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCache.class);
 
     private final URI root;
@@ -53,12 +59,33 @@ public class HttpBuildCache implements BuildCache {
     private final CloseableHttpClient httpClient;
 
     public HttpBuildCache(URI root) {
+        this(root, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Creates a cache that uses at most the given number of concurrent connections to the cache server.
+     */
+    public HttpBuildCache(URI root, int maxConnections) {
         if (!root.getPath().endsWith("/")) {
             throw new IncompleteArgumentException("HTTP cache root URI must end with '/'");
         }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("HTTP cache must use at least one connection, but was configured to use " + maxConnections);
+        }
         this.root = root;
         this.safeUri = safeUri(root);
-        this.httpClient = HttpClients.createDefault();
+        this.httpClient = createHttpClient(maxConnections);
+    }
+
+    private static CloseableHttpClient createHttpClient(int maxConnections) {
+        // All requests go to the same route, so allow the whole pool to be used for it
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .disableContentCompression()
+            .build();
     }
 
     @Override
@@ -77,6 +104,8 @@ public class HttpBuildCache implements BuildCache {
                 reader.readFrom(response.getEntity().getContent());
                 return true;
             } else if (statusCode == 404) {
+                // Consume the response, so the connection can be reused
+                EntityUtils.consumeQuietly(response.getEntity());
                 return false;
             } else {
                 // TODO: We should consider different status codes as fatal/recoverable
@@ -127,6 +156,8 @@ public class HttpBuildCache implements BuildCache {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Response for PUT {}: {}", safeUri(uri), response.getStatusLine());
             }
+            // Consume the response, so the connection can be reused
+            EntityUtils.consumeQuietly(response.getEntity());
         } catch (IOException e) {
             // TODO: We should consider different types of exceptions as fatal/recoverable.
             // Right now, everything is considered recoverable.
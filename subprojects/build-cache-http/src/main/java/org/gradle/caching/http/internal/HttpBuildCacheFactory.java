@@ -28,8 +28,10 @@ import java.net.URI;
  */
 public class HttpBuildCacheFactory implements BuildCacheFactory {
     private static final String HTTP_URI_PROPERTY = "org.gradle.cache.tasks.http.uri";
+    private static final String HTTP_MAX_CONNECTIONS_PROPERTY = "org.gradle.cache.tasks.http.maxConnections";
 
     private final URI root;
+    private final int maxConnections;
 
     public HttpBuildCacheFactory() {
         String uri = System.getProperty(HTTP_URI_PROPERTY);
@@ -37,14 +39,20 @@ public class HttpBuildCacheFactory implements BuildCacheFactory {
             throw new GradleException(String.format("Must specify HTTP cache backend URI via '%s' system property", HTTP_URI_PROPERTY));
         }
         this.root = URI.create(uri);
+        this.maxConnections = Integer.getInteger(HTTP_MAX_CONNECTIONS_PROPERTY, HttpBuildCache.DEFAULT_MAX_CONNECTIONS);
     }
 
     public HttpBuildCacheFactory(URI root) {
+        this(root, HttpBuildCache.DEFAULT_MAX_CONNECTIONS);
+    }
+
+    public HttpBuildCacheFactory(URI root, int maxConnections) {
         this.root = root;
+        this.maxConnections = maxConnections;
     }
 
     @Override
     public BuildCache createCache(StartParameter startParameter) {
-        return new HttpBuildCache(root);
+        return new HttpBuildCache(root, maxConnections);
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo;
+import org.gradle.internal.Factory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Compares the in-memory caches of file hashes kept by {@link InMemoryTaskArtifactCache}: the {@link CompactInMemoryStore} and the Guava cache
+ * used for all other caches. The heap retained per entry is printed when the cache has been filled, and the benchmarks measure lookups.
+ */
+@State(Scope.Benchmark)
+public class InMemoryFileHashCacheBenchmark {
+    private static final Factory<FileInfo> NO_VALUE = new Factory<FileInfo>() {
+        @Override
+        public FileInfo create() {
+            throw new IllegalStateException();
+        }
+    };
+    private static final Callable<Object> NO_VALUE_CALLABLE = new Callable<Object>() {
+        @Override
+        public Object call() {
+            throw new IllegalStateException();
+        }
+    };
+
+    @Param({"100000", "1000000"})
+    int entries;
+
+    @Param({"compact", "guava"})
+    String cache;
+
+    private String[] paths;
+    private CompactInMemoryStore<FileInfo> compactCache;
+    private Cache<Object, Object> guavaCache;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void fillCache() {
+        paths = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            paths[i] = ("/home/user/project/module-" + (i % 100) + "/src/main/java/org/example/Type" + i + ".java").intern();
+        }
+        random = new Random(entries);
+        long heapBefore = usedHeap();
+        if (cache.equals("compact")) {
+            compactCache = new CompactInMemoryStore<FileInfo>(new CachingFileHasher.FileInfoPacker(), entries);
+            for (String path : paths) {
+                compactCache.put(path, fileInfo());
+            }
+        } else {
+            guavaCache = CacheBuilder.newBuilder().maximumSize(entries).recordStats().build();
+            for (String path : paths) {
+                guavaCache.put(path, fileInfo());
+            }
+        }
+        long retained = usedHeap() - heapBefore;
+        System.out.println();
+        System.out.println(cache + " cache with " + entries + " entries retains " + retained / entries + " bytes per entry");
+    }
+
+    private FileInfo fileInfo() {
+        byte[] hash = new byte[16];
+        random.nextBytes(hash);
+        return new FileInfo(HashCode.fromBytes(hash), random.nextInt(100000), random.nextLong());
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public Object get() throws ExecutionException {
+        String path = paths[random.nextInt(entries)];
+        if (compactCache != null) {
+            return compactCache.get(path, NO_VALUE);
+        }
+        return guavaCache.get(path, NO_VALUE_CALLABLE);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the throughput of hashing small and large files with the supported algorithms,
+ * and with the previous implementation that streamed files into an MD5 hasher via {@link Files#copy(File, java.io.OutputStream)}.
+ */
+@State(Scope.Benchmark)
+public class FileHasherBenchmark {
+
+    @Param({"1024", "65536", "67108864"})
+    int fileSize;
+
+    @Param({"MD5", "MURMUR3"})
+    FileHashingAlgorithm algorithm;
+
+    private File file;
+    private FileHasher hasher;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        byte[] contents = new byte[fileSize];
+        new Random(fileSize).nextBytes(contents);
+        file = File.createTempFile("hash-benchmark", ".bin");
+        Files.write(contents, file);
+        hasher = new DefaultFileHasher(algorithm);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public HashCode hash() {
+        return hasher.hash(file);
+    }
+
+    @Benchmark
+    public HashCode streamingMd5() throws IOException {
+        Hasher hasher = Hashing.md5().newHasher();
+        Files.copy(file, Funnels.asOutputStream(hasher));
+        return hasher.hash();
+    }
+}
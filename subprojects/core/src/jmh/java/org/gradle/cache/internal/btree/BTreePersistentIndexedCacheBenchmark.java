@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the throughput of reading and writing entries of a large cache using {@link FileBackedBlockStore} and {@link MappedFileBlockStore}.
+ */
+@State(Scope.Benchmark)
+public class BTreePersistentIndexedCacheBenchmark {
+    private static final int ENTRIES = 100000;
+
+    @Param({"file", "mapped"})
+    String store;
+
+    @Param({"65536", "1048576"})
+    int regionSize;
+
+    private File cacheFile;
+    private BTreePersistentIndexedCache<String, String> cache;
+    private Random random;
+    private String value;
+
+    @Setup(Level.Trial)
+    public void createCache() throws IOException {
+        System.setProperty(MappedFileBlockStore.ENABLED_PROPERTY, String.valueOf(store.equals("mapped")));
+        System.setProperty(MappedFileBlockStore.REGION_SIZE_PROPERTY, String.valueOf(regionSize));
+        cacheFile = File.createTempFile("btree-benchmark", ".bin");
+        cacheFile.delete();
+        value = new String(new char[200]).replace('\0', 'x');
+        cache = new BTreePersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER);
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put(key(i), value);
+        }
+        // Start from a freshly opened store, as a cold daemon would
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER);
+        random = new Random(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCache() {
+        cache.close();
+        cacheFile.delete();
+        System.clearProperty(MappedFileBlockStore.ENABLED_PROPERTY);
+        System.clearProperty(MappedFileBlockStore.REGION_SIZE_PROPERTY);
+    }
+
+    @Benchmark
+    public String get() {
+        return cache.get(key(random.nextInt(ENTRIES)));
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(key(random.nextInt(ENTRIES)), value);
+    }
+
+    private static String key(int index) {
+        return "/some/project/build/classes/main/org/gradle/Class" + index + ".class";
+    }
+}
@@ -16,9 +16,13 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.cache.StringInterner;
@@ -29,14 +33,17 @@ import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.SingletonFileTree;
 import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.hash.ParallelFileHasher;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.serialize.SerializerRegistry;
 
 import java.io.File;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 import static org.gradle.api.internal.changedetection.state.FileDetails.FileType.*;
 
@@ -47,23 +54,43 @@ import static org.gradle.api.internal.changedetection.state.FileDetails.FileType
  */
 public abstract class AbstractFileCollectionSnapshotter implements FileCollectionSnapshotter, TaskOutputsGenerationListener {
     private final FileHasher hasher;
+    private final ParallelFileHasher parallelFileHasher;
     private final StringInterner stringInterner;
     private final FileSystem fileSystem;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
-    // Map from interned absolute path for a file to known details for the file. Currently used only for root files, not those nested in a directory
-    private final Map<String, DefaultFileDetails> rootFiles = new ConcurrentHashMap<String, DefaultFileDetails>();
+    private final FileSystemMirror fileSystemMirror;
 
     public AbstractFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory) {
+        this(hasher, new ParallelFileHasher(null, 1), stringInterner, fileSystem, directoryFileTreeFactory);
+    }
+
+    /**
+     * Creates a snapshotter that hashes the files of large collections in parallel, using the given {@link ParallelFileHasher}. The given {@link FileHasher} must be thread-safe.
+     */
+    public AbstractFileCollectionSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory) {
+        this(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory, new FileSystemMirror());
+    }
+
+    /**
+     * Creates a snapshotter that shares what it learns about the file system with other snapshotters using the same {@link FileSystemMirror}.
+     */
+    public AbstractFileCollectionSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
         this.hasher = hasher;
+        this.parallelFileHasher = parallelFileHasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
+        this.fileSystemMirror = fileSystemMirror;
     }
 
     @Override
     public void beforeTaskOutputsGenerated() {
-        // When the task outputs are generated, throw away all cached state. This is intentionally very simple, to be improved later
-        rootFiles.clear();
+        fileSystemMirror.invalidateAll();
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated(Iterable<File> outputRoots) {
+        fileSystemMirror.invalidate(outputRoots);
     }
 
     public void registerSerializers(SerializerRegistry registry) {
@@ -81,6 +108,8 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
             return FileCollectionSnapshot.EMPTY;
         }
 
+        Map<String, HashCode> fileHashes = hashRegularFiles(fileTreeElements);
+
         Map<String, NormalizedFileSnapshot> snapshots = Maps.newLinkedHashMap();
         for (DefaultFileDetails fileDetails : fileTreeElements) {
             String absolutePath = fileDetails.path;
@@ -94,7 +123,7 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
                         snapshot = DirSnapshot.getInstance();
                         break;
                     case RegularFile:
-                        snapshot = new FileHashSnapshot(hasher.hash(fileDetails.details), fileDetails.details.getLastModified());
+                        snapshot = new FileHashSnapshot(fileHashes.get(absolutePath), fileDetails.details.getLastModified());
                         break;
                     default:
                         throw new AssertionError();
@@ -108,6 +137,27 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
         return new DefaultFileCollectionSnapshot(snapshots, compareStrategy, snapshotNormalizationStrategy.isPathAbsolute());
     }
 
+    /**
+     * Hashes the first occurrence of each regular file, possibly in parallel. The hashes are independent of the order they are calculated in, so the snapshot is the same as when hashing sequentially.
+     */
+    private Map<String, HashCode> hashRegularFiles(List<DefaultFileDetails> fileTreeElements) {
+        Set<String> seenPaths = Sets.newHashSet();
+        List<DefaultFileDetails> regularFiles = Lists.newArrayList();
+        List<FileTreeElement> regularFileDetails = Lists.newArrayList();
+        for (DefaultFileDetails fileDetails : fileTreeElements) {
+            if (seenPaths.add(fileDetails.path) && fileDetails.getType() == RegularFile) {
+                regularFiles.add(fileDetails);
+                regularFileDetails.add(fileDetails.details);
+            }
+        }
+        List<HashCode> hashes = parallelFileHasher.hash(hasher, regularFileDetails);
+        Map<String, HashCode> fileHashes = Maps.newHashMapWithExpectedSize(regularFiles.size());
+        for (int i = 0; i < regularFiles.size(); i++) {
+            fileHashes.put(regularFiles.get(i).path, hashes.get(i));
+        }
+        return fileHashes;
+    }
+
     private class FileCollectionVisitorImpl implements FileCollectionVisitor {
         private final List<DefaultFileDetails> fileTreeElements;
 
@@ -118,10 +168,11 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
         @Override
         public void visitCollection(FileCollectionInternal fileCollection) {
             for (File file : fileCollection) {
-                DefaultFileDetails details = rootFiles.get(file.getPath());
+                DefaultFileDetails details = fileSystemMirror.getFile(file.getPath());
                 if (details == null) {
+                    long generation = fileSystemMirror.getGeneration();
                     details = calculateDetails(file);
-                    rootFiles.put(details.path, details);
+                    fileSystemMirror.putFile(details, generation);
                 }
                 switch (details.type) {
                     case Missing:
@@ -169,8 +220,48 @@ public abstract class AbstractFileCollectionSnapshotter implements FileCollectio
         fileTree.visitTreeOrBackingFile(new FileVisitorImpl(fileTreeElements));
     }
 
+    /**
+     * Visits the given directory tree, reusing the elements of the whole tree when it has been walked before. Trees with exclude patterns are walked
+     * on their own, as the excludes may keep large parts of the directory from being walked at all.
+     */
     protected void visitDirectoryTree(DirectoryFileTree directoryTree, List<DefaultFileDetails> fileTreeElements) {
-        directoryTree.visit(new FileVisitorImpl(fileTreeElements));
+        PatternSet patterns = directoryTree.getPatterns();
+        if (!patterns.getExcludes().isEmpty() || !patterns.getExcludeSpecs().isEmpty()) {
+            directoryTree.visit(new FileVisitorImpl(fileTreeElements));
+            return;
+        }
+
+        String path = getPath(directoryTree.getDir());
+        List<DefaultFileDetails> elements = fileSystemMirror.getDirectoryTree(path);
+        if (elements == null) {
+            long generation = fileSystemMirror.getGeneration();
+            List<DefaultFileDetails> visited = Lists.newArrayList();
+            directoryFileTreeFactory.create(directoryTree.getDir()).visit(new FileVisitorImpl(visited));
+            elements = ImmutableList.copyOf(visited);
+            fileSystemMirror.putDirectoryTree(path, elements, generation);
+        }
+        if (patterns.isEmpty()) {
+            fileTreeElements.addAll(elements);
+        } else {
+            addMatchingElements(elements, patterns.getAsSpec(), fileTreeElements);
+        }
+    }
+
+    /**
+     * Applies the patterns of a tree to the elements of the whole tree in the same way as walking the tree would, skipping the contents of directories that do not match.
+     */
+    private static void addMatchingElements(List<DefaultFileDetails> elements, Spec<FileTreeElement> spec, List<DefaultFileDetails> fileTreeElements) {
+        String skippedDirPrefix = null;
+        for (DefaultFileDetails element : elements) {
+            if (skippedDirPrefix != null && element.path.startsWith(skippedDirPrefix)) {
+                continue;
+            }
+            if (spec.isSatisfiedBy(element.details)) {
+                fileTreeElements.add(element);
+            } else if (element.type == Directory) {
+                skippedDirPrefix = element.path + File.separatorChar;
+            }
+        }
     }
 
     private class FileVisitorImpl implements FileVisitor {
@@ -17,11 +17,14 @@ package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.hash.HashCode;
+import org.gradle.api.Nullable;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.hash.FileHashingAlgorithm;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentStore;
+import org.gradle.internal.Factory;
 import org.gradle.internal.resource.TextResource;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
@@ -29,16 +32,40 @@ import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
+/**
+ * A {@link FileHasher} that keeps the hashes of files in a persistent cache, and only hashes a file again when its length or timestamp has changed.
+ *
+ * <p>Can be used from multiple threads, for example by a {@link org.gradle.api.internal.hash.ParallelFileHasher}. It keeps no state other than the
+ * cache, which is safe to use from multiple threads for all stores provided by Gradle, and the {@link WatchedFileHashCache}. Threads hashing the
+ * same file at the same time may both hash it and both put the result into the cache, which is harmless as the results are the same.</p>
+ */
 public class CachingFileHasher implements FileHasher {
     private final PersistentIndexedCache<String, FileInfo> cache;
     private final FileHasher delegate;
     private final StringInterner stringInterner;
+    private final WatchedFileHashCache watchedFileHashes;
 
     public CachingFileHasher(FileHasher delegate, PersistentStore store, StringInterner stringInterner) {
+        this(delegate, store, stringInterner, null);
+    }
+
+    public CachingFileHasher(FileHasher delegate, PersistentStore store, StringInterner stringInterner, @Nullable WatchedFileHashCache watchedFileHashes) {
         this.delegate = delegate;
-        this.cache = store.createCache("fileHashes", String.class, new FileInfoSerializer());
+        this.cache = store.createCache(cacheNameFor(delegate.getAlgorithm()), String.class, new FileInfoSerializer());
         this.stringInterner = stringInterner;
+        this.watchedFileHashes = watchedFileHashes;
+    }
+
+    private static String cacheNameFor(FileHashingAlgorithm algorithm) {
+        // Keep hashes produced by different algorithms apart, so that switching the algorithm between builds never mixes them up
+        return algorithm == FileHashingAlgorithm.MD5 ? "fileHashes" : "fileHashes-" + algorithm.name().toLowerCase();
+    }
+
+    @Override
+    public FileHashingAlgorithm getAlgorithm() {
+        return delegate.getAlgorithm();
     }
 
     @Override
@@ -60,11 +87,28 @@ public class CachingFileHasher implements FileHasher {
         return snapshot(fileDetails).getHash();
     }
 
-    private FileInfo snapshot(File file) {
+    @Override
+    public HashCode hash(byte[] content) {
+        return delegate.hash(content);
+    }
+
+    private FileInfo snapshot(final File file) {
+        if (watchedFileHashes != null) {
+            // Only look at the file when its hash is not trusted. The file is watched by then, so its length and timestamp are read again
+            return watchedFileHashes.get(file.getAbsoluteFile(), new Factory<FileInfo>() {
+                @Override
+                public FileInfo create() {
+                    return snapshot(file, file.length(), file.lastModified());
+                }
+            });
+        }
         return snapshot(file, file.length(), file.lastModified());
     }
 
     private FileInfo snapshot(FileTreeElement file) {
+        if (watchedFileHashes != null) {
+            return snapshot(file.getFile());
+        }
         return snapshot(file.getFile(), file.getSize(), file.getLastModified());
     }
 
@@ -115,4 +159,33 @@ public class CachingFileHasher implements FileHasher {
             encoder.writeLong(value.length);
         }
     }
+
+    /**
+     * Packs a {@link FileInfo} with a 128 bit hash into four longs.
+     */
+    static class FileInfoPacker implements ValuePacker<FileInfo> {
+        @Override
+        public int getSize() {
+            return 4;
+        }
+
+        @Override
+        public boolean pack(FileInfo value, long[] target, int offset) {
+            if (value.hash.bits() != 128) {
+                return false;
+            }
+            ByteBuffer hash = ByteBuffer.wrap(value.hash.asBytes());
+            target[offset] = hash.getLong();
+            target[offset + 1] = hash.getLong();
+            target[offset + 2] = value.length;
+            target[offset + 3] = value.timestamp;
+            return true;
+        }
+
+        @Override
+        public FileInfo unpack(long[] source, int offset) {
+            byte[] hash = ByteBuffer.allocate(16).putLong(source[offset]).putLong(source[offset + 1]).array();
+            return new FileInfo(HashCode.fromBytes(hash), source[offset + 2], source[offset + 3]);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.internal.FileLock;
+import org.gradle.cache.internal.MultiProcessSafeAsyncPersistentIndexedCache;
+import org.gradle.internal.Factory;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Same as {@link InMemoryDecoratedCache}, but keeps the entries in a {@link CompactInMemoryStore}.
+ */
+class CompactInMemoryDecoratedCache<V> implements MultiProcessSafeAsyncPersistentIndexedCache<String, V> {
+    private final static Logger LOG = Logging.getLogger(CompactInMemoryDecoratedCache.class);
+    private final MultiProcessSafeAsyncPersistentIndexedCache<String, V> delegate;
+    private final CompactInMemoryStore<V> inMemoryCache;
+    private final String cacheId;
+    private final AtomicReference<FileLock.State> fileLockStateReference;
+
+    public CompactInMemoryDecoratedCache(MultiProcessSafeAsyncPersistentIndexedCache<String, V> delegate, CompactInMemoryStore<V> inMemoryCache, String cacheId, AtomicReference<FileLock.State> fileLockStateReference) {
+        this.delegate = delegate;
+        this.inMemoryCache = inMemoryCache;
+        this.cacheId = cacheId;
+        this.fileLockStateReference = fileLockStateReference;
+    }
+
+    @Override
+    public V get(final String key) {
+        return inMemoryCache.get(key, new Factory<V>() {
+            @Override
+            public V create() {
+                return delegate.get(key);
+            }
+        });
+    }
+
+    @Override
+    public void putLater(String key, V value, Runnable completion) {
+        inMemoryCache.put(key, value);
+        delegate.putLater(key, value, completion);
+    }
+
+    @Override
+    public void removeLater(String key, Runnable completion) {
+        inMemoryCache.put(key, null);
+        delegate.removeLater(key, completion);
+    }
+
+    @Override
+    public void afterLockAcquire(FileLock.State currentCacheState) {
+        boolean outOfDate = false;
+        FileLock.State previousState = fileLockStateReference.get();
+        if (previousState == null) {
+            outOfDate = true;
+        } else if (currentCacheState.hasBeenUpdatedSince(previousState)) {
+            LOG.info("Invalidating in-memory cache of {}", cacheId);
+            outOfDate = true;
+        }
+        if (outOfDate) {
+            inMemoryCache.invalidateAll();
+        }
+        delegate.afterLockAcquire(currentCacheState);
+    }
+
+    @Override
+    public void finishWork() {
+        delegate.finishWork();
+    }
+
+    @Override
+    public void beforeLockRelease(FileLock.State currentCacheState) {
+        fileLockStateReference.set(currentCacheState);
+        delegate.beforeLockRelease(currentCacheState);
+    }
+}
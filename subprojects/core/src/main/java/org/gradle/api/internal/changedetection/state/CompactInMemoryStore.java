@@ -0,0 +1,277 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.Cast;
+import org.gradle.internal.Factory;
+
+/**
+ * An in-memory cache with {@link String} keys that keeps its values packed into arrays of longs.
+ *
+ * <p>
+ *     Compared to a Guava cache of boxed values, this avoids an entry object, a value object and the objects referenced by the value
+ *     for every key, which matters for caches with hundreds of thousands of entries that live as long as the daemon. Keys are expected
+ *     to be interned by the caller, so they are shared with the rest of the build.
+ * </p>
+ * <p>
+ *     Each of the segments is an open addressing hash table that grows up to its share of the maximum size. After that, an entry is
+ *     evicted for each new key using the clock algorithm: entries that were used since the clock hand last passed them get a second chance.
+ *     Absent values are cached too.
+ * </p>
+ */
+class CompactInMemoryStore<V> {
+    private static final int SEGMENT_BITS = 4;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte ABSENT = 1;
+    private static final byte REFERENCED = 2;
+
+    private final Segment<V>[] segments;
+
+    CompactInMemoryStore(ValuePacker<V> packer, int maxSize) {
+        int segmentCount = 1 << SEGMENT_BITS;
+        int maxSegmentSize = Math.max(1, (maxSize + segmentCount - 1) / segmentCount);
+        this.segments = Cast.uncheckedCast(new Segment[segmentCount]);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<V>(packer, maxSegmentSize);
+        }
+    }
+
+    /**
+     * Returns the value for the given key, using the given loader to load it when it is not kept in memory. A null value means there is no value for the key.
+     */
+    V get(String key, Factory<V> loader) {
+        int hash = spread(key.hashCode());
+        Segment<V> segment = segmentFor(hash);
+        long version;
+        synchronized (segment) {
+            int index = segment.indexOf(key, hash);
+            if (index >= 0) {
+                return segment.get(index);
+            }
+            version = segment.version;
+        }
+        V value = loader.create();
+        synchronized (segment) {
+            // Do not keep the value when the key may have been updated while the value was loaded
+            if (segment.version == version) {
+                segment.put(key, hash, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the value for the given key. A null value means there is no value for the key.
+     */
+    void put(String key, V value) {
+        int hash = spread(key.hashCode());
+        Segment<V> segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.version++;
+            segment.put(key, hash, value);
+        }
+    }
+
+    void invalidateAll() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.version++;
+                segment.clear();
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static int spread(int hashCode) {
+        int hash = hashCode * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Segment<V> {
+        private final ValuePacker<V> packer;
+        private final int maxSize;
+        private final int maxCapacity;
+        private String[] keys;
+        private byte[] flags;
+        private long[] values;
+        private int size;
+        private int hand;
+        private long version;
+
+        Segment(ValuePacker<V> packer, int maxSize) {
+            this.packer = packer;
+            this.maxSize = maxSize;
+            int capacity = INITIAL_CAPACITY;
+            while (capacity * 3 / 4 < maxSize) {
+                capacity <<= 1;
+            }
+            this.maxCapacity = capacity;
+            clear();
+        }
+
+        void clear() {
+            allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+            size = 0;
+            hand = 0;
+        }
+
+        private void allocate(int capacity) {
+            keys = new String[capacity];
+            flags = new byte[capacity];
+            values = new long[capacity * packer.getSize()];
+        }
+
+        /**
+         * Returns the index of the key, or the negated insertion point minus one when the key is not present.
+         */
+        int indexOf(String key, int hash) {
+            int mask = keys.length - 1;
+            for (int index = hash & mask;; index = (index + 1) & mask) {
+                String candidate = keys[index];
+                if (candidate == null) {
+                    return -index - 1;
+                }
+                if (candidate == key || candidate.equals(key)) {
+                    return index;
+                }
+            }
+        }
+
+        V get(int index) {
+            flags[index] |= REFERENCED;
+            if ((flags[index] & ABSENT) != 0) {
+                return null;
+            }
+            return packer.unpack(values, index * packer.getSize());
+        }
+
+        void put(String key, int hash, V value) {
+            int index = indexOf(key, hash);
+            if (index < 0) {
+                if (size >= maxSize) {
+                    evict();
+                } else if (size >= keys.length * 3 / 4) {
+                    grow();
+                } else {
+                    insert(-index - 1, key, value);
+                    return;
+                }
+                index = indexOf(key, hash);
+                insert(-index - 1, key, value);
+                return;
+            }
+            if (value == null) {
+                flags[index] = ABSENT | REFERENCED;
+            } else if (packer.pack(value, values, index * packer.getSize())) {
+                flags[index] = REFERENCED;
+            } else {
+                removeAt(index);
+            }
+        }
+
+        private void insert(int index, String key, V value) {
+            if (value == null) {
+                flags[index] = ABSENT;
+            } else if (packer.pack(value, values, index * packer.getSize())) {
+                flags[index] = 0;
+            } else {
+                return;
+            }
+            keys[index] = key;
+            size++;
+        }
+
+        private void evict() {
+            int mask = keys.length - 1;
+            while (true) {
+                int index = hand;
+                hand = (hand + 1) & mask;
+                if (keys[index] == null) {
+                    continue;
+                }
+                if ((flags[index] & REFERENCED) != 0) {
+                    flags[index] &= ~REFERENCED;
+                    continue;
+                }
+                removeAt(index);
+                return;
+            }
+        }
+
+        /**
+         * Removes the entry at the given index, moving back later entries of the same probe sequence so that no tombstone is needed.
+         */
+        private void removeAt(int index) {
+            int mask = keys.length - 1;
+            int slotSize = packer.getSize();
+            keys[index] = null;
+            size--;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                String key = keys[next];
+                if (key == null) {
+                    return;
+                }
+                int home = spread(key.hashCode()) & mask;
+                boolean canMove = next > index ? home <= index || home > next : home <= index && home > next;
+                if (canMove) {
+                    keys[index] = key;
+                    flags[index] = flags[next];
+                    System.arraycopy(values, next * slotSize, values, index * slotSize, slotSize);
+                    keys[next] = null;
+                    index = next;
+                }
+            }
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            byte[] oldFlags = flags;
+            long[] oldValues = values;
+            int slotSize = packer.getSize();
+            allocate(Math.min(oldKeys.length * 2, maxCapacity));
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                String key = oldKeys[i];
+                if (key != null) {
+                    int index = spread(key.hashCode()) & mask;
+                    while (keys[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = key;
+                    flags[index] = oldFlags[i];
+                    System.arraycopy(oldValues, i * slotSize, values, index * slotSize, slotSize);
+                }
+            }
+            hand = 0;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.hash.ParallelFileHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 
 import java.util.Collections;
@@ -40,6 +41,14 @@ public class DefaultClasspathSnapshotter extends AbstractFileCollectionSnapshott
         super(hasher, stringInterner, fileSystem, directoryFileTreeFactory);
     }
 
+    public DefaultClasspathSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory) {
+        super(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory);
+    }
+
+    public DefaultClasspathSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        super(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
+    }
+
     @Override
     public Class<? extends FileCollectionSnapshotter> getRegisteredType() {
         return ClasspathSnapshotter.class;
@@ -16,23 +16,36 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
 import org.gradle.caching.internal.BuildCacheKeyBuilder;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
-    private final Map<String, NormalizedFileSnapshot> snapshots;
+    private volatile Map<String, NormalizedFileSnapshot> snapshots;
+    // The serialized snapshots, when this snapshot has been read from the task history and has not been decoded yet
+    private byte[] encodedSnapshots;
+    private final int snapshotCount;
+    private HashCode hash;
+    private final SnapshotMapSerializer snapshotMapSerializer;
     private final TaskFilePropertyCompareStrategy compareStrategy;
     private final boolean pathIsAbsolute;
     private final Factory<List<File>> cachedElementsFactory = Factories.softReferenceCache(new Factory<List<File>>() {
@@ -50,28 +63,71 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
 
     public DefaultFileCollectionSnapshot(Map<String, NormalizedFileSnapshot> snapshots, TaskFilePropertyCompareStrategy compareStrategy, boolean pathIsAbsolute) {
         this.snapshots = snapshots;
+        this.snapshotCount = snapshots.size();
+        this.snapshotMapSerializer = null;
+        this.compareStrategy = compareStrategy;
+        this.pathIsAbsolute = pathIsAbsolute;
+    }
+
+    private DefaultFileCollectionSnapshot(int snapshotCount, HashCode hash, byte[] encodedSnapshots, SnapshotMapSerializer snapshotMapSerializer, TaskFilePropertyCompareStrategy compareStrategy, boolean pathIsAbsolute) {
+        this.snapshotCount = snapshotCount;
+        this.hash = hash;
+        this.encodedSnapshots = encodedSnapshots;
+        this.snapshotMapSerializer = snapshotMapSerializer;
         this.compareStrategy = compareStrategy;
         this.pathIsAbsolute = pathIsAbsolute;
     }
 
     @Override
     public Map<String, NormalizedFileSnapshot> getSnapshots() {
+        Map<String, NormalizedFileSnapshot> snapshots = this.snapshots;
+        if (snapshots == null) {
+            snapshots = decodeSnapshots();
+        }
+        return snapshots;
+    }
+
+    private synchronized Map<String, NormalizedFileSnapshot> decodeSnapshots() {
+        if (snapshots == null) {
+            try {
+                snapshots = snapshotMapSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(encodedSnapshots)));
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            encodedSnapshots = null;
+        }
         return snapshots;
     }
 
+    private synchronized byte[] getEncodedSnapshots() {
+        return encodedSnapshots;
+    }
+
     @Override
     public boolean isEmpty() {
-        return snapshots.isEmpty();
+        return snapshotCount == 0;
+    }
+
+    @Override
+    public synchronized HashCode getHash() {
+        if (hash == null) {
+            hash = compareStrategy.hash(getSnapshots(), pathIsAbsolute);
+        }
+        return hash;
     }
 
     @Override
     public Iterator<TaskStateChange> iterateContentChangesSince(FileCollectionSnapshot oldSnapshot, String fileType) {
-        return compareStrategy.iterateContentChangesSince(snapshots, oldSnapshot.getSnapshots(), fileType, pathIsAbsolute);
+        if (getHash().equals(oldSnapshot.getHash())) {
+            // Nothing has changed, so there is no need to look at the individual files
+            return Iterators.emptyIterator();
+        }
+        return compareStrategy.iterateContentChangesSince(getSnapshots(), oldSnapshot.getSnapshots(), fileType, pathIsAbsolute);
     }
 
     @Override
     public void appendToCacheKey(BuildCacheKeyBuilder builder) {
-        compareStrategy.appendToCacheKey(builder, snapshots);
+        compareStrategy.appendToCacheKey(builder, getSnapshots());
     }
 
     @Override
@@ -80,8 +136,8 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
     }
 
     private List<File> doGetElements() {
-        List<File> files = Lists.newArrayListWithCapacity(snapshots.size());
-        for (String name : snapshots.keySet()) {
+        List<File> files = Lists.newArrayListWithCapacity(snapshotCount);
+        for (String name : getSnapshots().keySet()) {
             files.add(new File(name));
         }
         return files;
@@ -94,7 +150,7 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
 
     private List<File> doGetFiles() {
         List<File> files = Lists.newArrayList();
-        for (Map.Entry<String, NormalizedFileSnapshot> entry : snapshots.entrySet()) {
+        for (Map.Entry<String, NormalizedFileSnapshot> entry : getSnapshots().entrySet()) {
             if (entry.getValue().getSnapshot() instanceof FileHashSnapshot) {
                 files.add(new File(entry.getKey()));
             }
@@ -102,7 +158,12 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
         return files;
     }
 
+    /**
+     * Keeps the file snapshots that are read in their serialized form, and only decodes them when they are used. The snapshots of a previous execution
+     * are not used at all when a task is out of date for some other reason, and a snapshot that has not been decoded can be written again as is.
+     */
     public static class SerializerImpl implements Serializer<DefaultFileCollectionSnapshot> {
+        private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
         private final SnapshotMapSerializer snapshotMapSerializer;
 
         public SerializerImpl(StringInterner stringInterner) {
@@ -111,15 +172,27 @@ class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
 
         public DefaultFileCollectionSnapshot read(Decoder decoder) throws Exception {
             TaskFilePropertyCompareStrategy compareStrategy = TaskFilePropertyCompareStrategy.values()[decoder.readSmallInt()];
-            Map<String, NormalizedFileSnapshot> snapshots = snapshotMapSerializer.read(decoder);
-            boolean pathIsUnique = decoder.readBoolean();
-            return new DefaultFileCollectionSnapshot(snapshots, compareStrategy, pathIsUnique);
+            boolean pathIsAbsolute = decoder.readBoolean();
+            int snapshotCount = decoder.readSmallInt();
+            HashCode hash = hashCodeSerializer.read(decoder);
+            byte[] encodedSnapshots = decoder.readBinary();
+            return new DefaultFileCollectionSnapshot(snapshotCount, hash, encodedSnapshots, snapshotMapSerializer, compareStrategy, pathIsAbsolute);
         }
 
         public void write(Encoder encoder, DefaultFileCollectionSnapshot value) throws Exception {
             encoder.writeSmallInt(value.compareStrategy.ordinal());
-            snapshotMapSerializer.write(encoder, value.snapshots);
             encoder.writeBoolean(value.pathIsAbsolute);
+            encoder.writeSmallInt(value.snapshotCount);
+            hashCodeSerializer.write(encoder, value.getHash());
+            byte[] encodedSnapshots = value.getEncodedSnapshots();
+            if (encodedSnapshots == null) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                KryoBackedEncoder snapshotsEncoder = new KryoBackedEncoder(outputStream);
+                snapshotMapSerializer.write(snapshotsEncoder, value.getSnapshots());
+                snapshotsEncoder.flush();
+                encodedSnapshots = outputStream.toByteArray();
+            }
+            encoder.writeBinary(encodedSnapshots);
         }
     }
 }
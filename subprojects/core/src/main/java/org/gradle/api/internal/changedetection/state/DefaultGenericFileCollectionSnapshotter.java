@@ -19,6 +19,7 @@ package org.gradle.api.internal.changedetection.state;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.hash.ParallelFileHasher;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 
 public class DefaultGenericFileCollectionSnapshotter extends AbstractFileCollectionSnapshotter implements GenericFileCollectionSnapshotter {
@@ -26,6 +27,14 @@ public class DefaultGenericFileCollectionSnapshotter extends AbstractFileCollect
         super(hasher, stringInterner, fileSystem, directoryFileTreeFactory);
     }
 
+    public DefaultGenericFileCollectionSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory) {
+        super(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory);
+    }
+
+    public DefaultGenericFileCollectionSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        super(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
+    }
+
     @Override
     public Class<? extends FileCollectionSnapshotter> getRegisteredType() {
         return GenericFileCollectionSnapshotter.class;
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.hash.HashCode;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
 import org.gradle.caching.internal.BuildCacheKeyBuilder;
 
@@ -35,6 +36,11 @@ public interface FileCollectionSnapshot {
 
     boolean isEmpty();
 
+    /**
+     * Returns a hash of the contents of this snapshot. When two snapshots have the same hash, there are no changes between them.
+     */
+    HashCode getHash();
+
     /**
      * Returns an iterator over the changes to file contents since the given snapshot, subject to the given filters.
      */
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Nullable;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps what is known about the file system during a build, so that files and directory trees used by several tasks are only looked at once.
+ *
+ * <p>
+ *     The mirror holds the details of root files and the contents of the directory trees that have been walked, keyed by their absolute path.
+ *     When a task is about to generate its outputs, everything that overlaps with its output roots is discarded, that is the roots themselves,
+ *     everything below them and the directories containing them. Everything else is kept, so tasks consuming unrelated directories do
+ *     not need to walk them again.
+ * </p>
+ * <p>
+ *     Entries are only added when nothing has been discarded since the caller started to look at the file system, so that the result of a walk
+ *     that overlapped with a task generating its outputs is never kept.
+ * </p>
+ */
+public class FileSystemMirror {
+    private final Map<String, DefaultFileDetails> files = new ConcurrentHashMap<String, DefaultFileDetails>();
+    private final Map<String, List<DefaultFileDetails>> trees = new ConcurrentHashMap<String, List<DefaultFileDetails>>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns the current generation, which needs to be passed when adding entries. Call this before looking at the file system.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    @Nullable
+    DefaultFileDetails getFile(String path) {
+        return files.get(path);
+    }
+
+    void putFile(DefaultFileDetails details, long generation) {
+        files.put(details.path, details);
+        if (this.generation.get() != generation) {
+            files.remove(details.path);
+        }
+    }
+
+    /**
+     * Returns the elements of the directory tree at the given path, as visited without any patterns, or null when the tree is not known.
+     */
+    @Nullable
+    List<DefaultFileDetails> getDirectoryTree(String path) {
+        return trees.get(path);
+    }
+
+    void putDirectoryTree(String path, List<DefaultFileDetails> elements, long generation) {
+        trees.put(path, elements);
+        if (this.generation.get() != generation) {
+            trees.remove(path);
+        }
+    }
+
+    /**
+     * Discards everything that overlaps with the given roots.
+     */
+    void invalidate(Iterable<File> roots) {
+        generation.incrementAndGet();
+        for (File root : roots) {
+            String rootPath = root.getAbsolutePath();
+            removeOverlapping(files, rootPath);
+            removeOverlapping(trees, rootPath);
+        }
+    }
+
+    /**
+     * Discards everything.
+     */
+    void invalidateAll() {
+        generation.incrementAndGet();
+        files.clear();
+        trees.clear();
+    }
+
+    private static void removeOverlapping(Map<String, ?> entries, String rootPath) {
+        for (Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+            String path = iterator.next();
+            if (isSameOrNested(path, rootPath) || isSameOrNested(rootPath, path)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isSameOrNested(String path, String parentPath) {
+        if (!path.startsWith(parentPath)) {
+            return false;
+        }
+        return path.length() == parentPath.length()
+            || parentPath.endsWith(File.separator)
+            || path.charAt(parentPath.length()) == File.separatorChar;
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.internal.AsyncCacheAccess;
@@ -28,6 +29,7 @@ import org.gradle.cache.internal.CrossProcessSynchronizingCache;
 import org.gradle.cache.internal.FileLock;
 import org.gradle.cache.internal.MultiProcessSafeAsyncPersistentIndexedCache;
 import org.gradle.cache.internal.MultiProcessSafePersistentIndexedCache;
+import org.gradle.internal.Cast;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -39,7 +41,9 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class InMemoryTaskArtifactCache implements CacheDecorator {
     private final static Logger LOG = Logging.getLogger(InMemoryTaskArtifactCache.class);
+    private static final String FILE_HASHES_CACHE_NAME = "fileHashes";
     private final Cache<String, Cache<Object, Object>> cache;
+    private final Cache<String, CompactInMemoryStore<?>> compactCaches;
     private final Map<String, AtomicReference<FileLock.State>> fileLockStates = new HashMap<String, AtomicReference<FileLock.State>>();
     private final CacheCapSizer cacheCapSizer;
 
@@ -53,6 +57,16 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
                 .maximumSize(cacheCapSizer.getNumberOfCaches() * 2);
         this.cache = cacheBuilder //X2 to factor in a child build (for example buildSrc)
                 .build();
+        this.compactCaches = CacheBuilder.newBuilder()
+                .maximumSize(cacheCapSizer.getNumberOfCaches() * 2)
+                .<String, CompactInMemoryStore<?>>build();
+    }
+
+    /**
+     * Returns true for the caches of file hashes, one per hashing algorithm.
+     */
+    protected static boolean isFileHashesCache(String cacheName) {
+        return cacheName.equals(FILE_HASHES_CACHE_NAME) || cacheName.startsWith(FILE_HASHES_CACHE_NAME + "-");
     }
 
     @Override
@@ -63,8 +77,14 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
     }
 
     protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, String cacheName, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache) {
-        Cache<Object, Object> inMemoryCache = createInMemoryCache(cacheId, cacheName);
         AtomicReference<FileLock.State> fileLockStateReference = getFileLockStateReference(cacheId);
+        if (isFileHashesCache(cacheName)) {
+            // There are many file hashes, so keep them packed rather than as objects
+            CompactInMemoryStore<FileInfo> inMemoryCache = createCompactInMemoryCache(cacheId, cacheName);
+            MultiProcessSafeAsyncPersistentIndexedCache<String, FileInfo> fileInfoCache = Cast.uncheckedCast(backingCache);
+            return Cast.uncheckedCast(new CompactInMemoryDecoratedCache<FileInfo>(fileInfoCache, inMemoryCache, cacheId, fileLockStateReference));
+        }
+        Cache<Object, Object> inMemoryCache = createInMemoryCache(cacheId, cacheName);
         return new InMemoryDecoratedCache<K, V>(backingCache, inMemoryCache, cacheId, fileLockStateReference);
     }
 
@@ -94,9 +114,25 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
         return inMemoryCache;
     }
 
+    private CompactInMemoryStore<FileInfo> createCompactInMemoryCache(String cacheId, String cacheName) {
+        CompactInMemoryStore<FileInfo> inMemoryCache = Cast.uncheckedCast(compactCaches.getIfPresent(cacheId));
+        if (inMemoryCache != null) {
+            LOG.info("In-memory cache of {}: Size{{}}", cacheId, inMemoryCache.size());
+        } else {
+            Integer maxSize = cacheCapSizer.getMaxSize(FILE_HASHES_CACHE_NAME);
+            LOG.debug("Creating compact in-memory cache of {}: MaxSize{{}}", cacheId, maxSize);
+            inMemoryCache = new CompactInMemoryStore<FileInfo>(new CachingFileHasher.FileInfoPacker(), maxSize);
+            compactCaches.put(cacheId, inMemoryCache);
+        }
+        return inMemoryCache;
+    }
+
     public void invalidateAll() {
         for(Cache<Object, Object> subcache : cache.asMap().values()) {
             subcache.invalidateAll();
         }
+        for (CompactInMemoryStore<?> subcache : compactCaches.asMap().values()) {
+            subcache.invalidateAll();
+        }
     }
 }
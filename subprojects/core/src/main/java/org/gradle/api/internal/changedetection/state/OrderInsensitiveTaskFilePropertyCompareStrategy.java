@@ -21,6 +21,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MultimapBuilder;
+import com.google.common.hash.Hasher;
 import org.gradle.api.internal.changedetection.rules.ChangeType;
 import org.gradle.api.internal.changedetection.rules.FileChange;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
@@ -197,6 +198,24 @@ class OrderInsensitiveTaskFilePropertyCompareStrategy implements TaskFilePropert
         }
     }
 
+    @Override
+    public void appendToHasher(Hasher hasher, Map<String, NormalizedFileSnapshot> snapshots, boolean pathIsAbsolute) {
+        if (pathIsAbsolute) {
+            // Snapshots are matched up by absolute path
+            List<String> absolutePaths = Lists.newArrayList(snapshots.keySet());
+            Collections.sort(absolutePaths);
+            for (String absolutePath : absolutePaths) {
+                TaskFilePropertyCompareStrategy.appendToHasher(hasher, absolutePath, snapshots.get(absolutePath).getSnapshot());
+            }
+        } else {
+            List<NormalizedFileSnapshot> normalizedSnapshots = Lists.newArrayList(snapshots.values());
+            Collections.sort(normalizedSnapshots);
+            for (NormalizedFileSnapshot normalizedSnapshot : normalizedSnapshots) {
+                TaskFilePropertyCompareStrategy.appendToHasher(hasher, normalizedSnapshot.getNormalizedPath(), normalizedSnapshot.getSnapshot());
+            }
+        }
+    }
+
     @Override
     public boolean isIncludeAdded() {
         return includeAdded;
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.collect.AbstractIterator;
+import com.google.common.hash.Hasher;
 import org.gradle.api.internal.changedetection.rules.ChangeType;
 import org.gradle.api.internal.changedetection.rules.FileChange;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
@@ -86,6 +87,13 @@ class OrderSensitiveTaskFilePropertyCompareStrategy implements TaskFilePropertyC
         }
     }
 
+    @Override
+    public void appendToHasher(Hasher hasher, Map<String, NormalizedFileSnapshot> snapshots, boolean pathIsAbsolute) {
+        for (NormalizedFileSnapshot normalizedSnapshot : snapshots.values()) {
+            TaskFilePropertyCompareStrategy.appendToHasher(hasher, normalizedSnapshot.getNormalizedPath(), normalizedSnapshot.getSnapshot());
+        }
+    }
+
     @Override
     public boolean isIncludeAdded() {
         return true;
@@ -27,7 +27,7 @@ public class ShortLivedProcessInMemoryTaskArtifactCache extends InMemoryTaskArti
     @Override
     protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemoryCaching(String cacheId, String cacheName, MultiProcessSafeAsyncPersistentIndexedCache<K, V> backingCache) {
         // Apply in-memory caching to file snapshots only. For all other caches, each entry is used at most once, so does not benefit from caching
-        if ("fileHashes".equals(cacheName)) {
+        if (isFileHashesCache(cacheName)) {
             return super.applyInMemoryCaching(cacheId, cacheName, backingCache);
         }
         return backingCache;
@@ -26,15 +26,26 @@ import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Serializes the file snapshots of a {@link FileCollectionSnapshot}.
+ *
+ * <p>
+ *     Files are usually visited directory by directory, so consecutive absolute paths share long prefixes. Each path is written as the length of the prefix
+ *     it shares with the previous path followed by the remaining characters. A normalized path that is a suffix of the absolute path, such as a file name,
+ *     is written as its length only. The kind of file and the kind of normalization are combined into a single byte.
+ * </p>
+ */
 public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedFileSnapshot>> {
     private static final byte DIR_SNAPSHOT = 1;
     private static final byte MISSING_FILE_SNAPSHOT = 2;
     private static final byte REGULAR_FILE_SNAPSHOT = 3;
+    private static final int FILE_SNAPSHOT_KIND_MASK = 0x3;
 
-    private static final byte NO_NORMALIZATION = 1;
-    private static final byte DEFAULT_NORMALIZATION = 2;
-    private static final byte INDEXED_NORMALIZATION = 3;
-    private static final byte IGNORED_PATH_NORMALIZATION = 4;
+    private static final byte NO_NORMALIZATION = 1 << 2;
+    private static final byte DEFAULT_NORMALIZATION = 2 << 2;
+    private static final byte INDEXED_NORMALIZATION = 3 << 2;
+    private static final byte IGNORED_PATH_NORMALIZATION = 4 << 2;
+    private static final int NORMALIZATION_KIND_MASK = 0x7 << 2;
 
     private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
     private final StringInterner stringInterner;
@@ -47,18 +58,21 @@ public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedF
     public Map<String, NormalizedFileSnapshot> read(Decoder decoder) throws Exception {
         int snapshotsCount = decoder.readSmallInt();
         Map<String, NormalizedFileSnapshot> snapshots = new LinkedHashMap<String, NormalizedFileSnapshot>(snapshotsCount);
+        String previousPath = "";
         for (int i = 0; i < snapshotsCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
-            NormalizedFileSnapshot snapshot = readSnapshot(absolutePath, decoder, stringInterner);
+            int commonPrefixLength = decoder.readSmallInt();
+            String absolutePath = stringInterner.intern(previousPath.substring(0, commonPrefixLength) + decoder.readString());
+            NormalizedFileSnapshot snapshot = readSnapshot(absolutePath, decoder);
             snapshots.put(absolutePath, snapshot);
+            previousPath = absolutePath;
         }
         return snapshots;
     }
 
-    private NormalizedFileSnapshot readSnapshot(String absolutePath, Decoder decoder, StringInterner stringInterner) throws IOException {
-        byte fileSnapshotKind = decoder.readByte();
+    private NormalizedFileSnapshot readSnapshot(String absolutePath, Decoder decoder) throws IOException {
+        byte kind = decoder.readByte();
         IncrementalFileSnapshot snapshot;
-        switch (fileSnapshotKind) {
+        switch (kind & FILE_SNAPSHOT_KIND_MASK) {
             case DIR_SNAPSHOT:
                 snapshot = DirSnapshot.getInstance();
                 break;
@@ -72,13 +86,13 @@ public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedF
                 throw new RuntimeException("Unable to read serialized file snapshot. Unrecognized value found in the data stream.");
         }
 
-        int normalizedSnapshotKind = decoder.readByte();
-        switch (normalizedSnapshotKind) {
+        switch (kind & NORMALIZATION_KIND_MASK) {
             case NO_NORMALIZATION:
                 return new NonNormalizedFileSnapshot(absolutePath, snapshot);
             case DEFAULT_NORMALIZATION:
-                String normalizedPath = stringInterner.intern(decoder.readString());
-                return new DefaultNormalizedFileSnapshot(normalizedPath, snapshot);
+                int suffixLength = decoder.readSmallInt() - 1;
+                String normalizedPath = suffixLength >= 0 ? absolutePath.substring(absolutePath.length() - suffixLength) : decoder.readString();
+                return new DefaultNormalizedFileSnapshot(stringInterner.intern(normalizedPath), snapshot);
             case INDEXED_NORMALIZATION:
                 int index = decoder.readSmallInt();
                 return new IndexedNormalizedFileSnapshot(absolutePath, index, snapshot);
@@ -92,38 +106,65 @@ public class SnapshotMapSerializer implements Serializer<Map<String, NormalizedF
     @Override
     public void write(Encoder encoder, Map<String, NormalizedFileSnapshot> value) throws Exception {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            NormalizedFileSnapshot snapshot = value.get(key);
-            writeSnapshot(encoder, snapshot);
+        String previousPath = "";
+        for (Map.Entry<String, NormalizedFileSnapshot> entry : value.entrySet()) {
+            String absolutePath = entry.getKey();
+            int commonPrefixLength = commonPrefixLength(previousPath, absolutePath);
+            encoder.writeSmallInt(commonPrefixLength);
+            encoder.writeString(absolutePath.substring(commonPrefixLength));
+            writeSnapshot(encoder, absolutePath, entry.getValue());
+            previousPath = absolutePath;
         }
     }
 
-    private void writeSnapshot(Encoder encoder, NormalizedFileSnapshot value) throws IOException {
+    private static int commonPrefixLength(String previous, String current) {
+        int maxLength = Math.min(previous.length(), current.length());
+        int length = 0;
+        while (length < maxLength && previous.charAt(length) == current.charAt(length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private void writeSnapshot(Encoder encoder, String absolutePath, NormalizedFileSnapshot value) throws IOException {
         IncrementalFileSnapshot snapshot = value.getSnapshot();
+        int kind;
         if (snapshot instanceof DirSnapshot) {
-            encoder.writeByte(DIR_SNAPSHOT);
+            kind = DIR_SNAPSHOT;
         } else if (snapshot instanceof MissingFileSnapshot) {
-            encoder.writeByte(MISSING_FILE_SNAPSHOT);
+            kind = MISSING_FILE_SNAPSHOT;
         } else if (snapshot instanceof FileHashSnapshot) {
-            encoder.writeByte(REGULAR_FILE_SNAPSHOT);
-            hashCodeSerializer.write(encoder, snapshot.getHash());
+            kind = REGULAR_FILE_SNAPSHOT;
         } else {
             throw new AssertionError();
         }
 
         if (value instanceof NonNormalizedFileSnapshot) {
-            encoder.writeByte(NO_NORMALIZATION);
+            kind |= NO_NORMALIZATION;
         } else if (value instanceof DefaultNormalizedFileSnapshot) {
-            encoder.writeByte(DEFAULT_NORMALIZATION);
-            encoder.writeString(value.getNormalizedPath());
+            kind |= DEFAULT_NORMALIZATION;
         } else if (value instanceof IndexedNormalizedFileSnapshot) {
-            encoder.writeByte(INDEXED_NORMALIZATION);
-            encoder.writeSmallInt(((IndexedNormalizedFileSnapshot) value).getIndex());
+            kind |= INDEXED_NORMALIZATION;
         } else if (value instanceof IgnoredPathFileSnapshot) {
-            encoder.writeByte(IGNORED_PATH_NORMALIZATION);
+            kind |= IGNORED_PATH_NORMALIZATION;
         } else {
             throw new AssertionError();
         }
+
+        encoder.writeByte((byte) kind);
+        if (snapshot instanceof FileHashSnapshot) {
+            hashCodeSerializer.write(encoder, snapshot.getHash());
+        }
+        if (value instanceof DefaultNormalizedFileSnapshot) {
+            String normalizedPath = value.getNormalizedPath();
+            if (absolutePath.endsWith(normalizedPath)) {
+                encoder.writeSmallInt(normalizedPath.length() + 1);
+            } else {
+                encoder.writeSmallInt(0);
+                encoder.writeString(normalizedPath);
+            }
+        } else if (value instanceof IndexedNormalizedFileSnapshot) {
+            encoder.writeSmallInt(((IndexedNormalizedFileSnapshot) value).getIndex());
+        }
     }
 }
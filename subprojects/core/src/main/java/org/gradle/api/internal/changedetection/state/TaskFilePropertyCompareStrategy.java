@@ -18,6 +18,9 @@ package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Iterators;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.gradle.api.internal.changedetection.rules.ChangeType;
 import org.gradle.api.internal.changedetection.rules.FileChange;
 import org.gradle.api.internal.changedetection.rules.TaskStateChange;
@@ -54,9 +57,31 @@ public enum TaskFilePropertyCompareStrategy {
         delegate.appendToCacheKey(builder, snapshots);
     }
 
+    /**
+     * Calculates a hash of the given snapshots, such that {@link #iterateContentChangesSince(Map, Map, String, boolean)} reports no changes
+     * between two collections of snapshots with the same hash. The reverse does not hold, for example the hashes differ when files have been added
+     * to the outputs of a task.
+     */
+    public HashCode hash(Map<String, NormalizedFileSnapshot> snapshots, boolean pathIsAbsolute) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putInt(ordinal());
+        hasher.putBoolean(pathIsAbsolute);
+        delegate.appendToHasher(hasher, snapshots, pathIsAbsolute);
+        return hasher.hash();
+    }
+
+    static void appendToHasher(Hasher hasher, String path, IncrementalFileSnapshot snapshot) {
+        hasher.putInt(path.length());
+        hasher.putUnencodedChars(path);
+        byte[] hash = snapshot.getHash().asBytes();
+        hasher.putInt(hash.length);
+        hasher.putBytes(hash);
+    }
+
     interface Impl {
         Iterator<TaskStateChange> iterateContentChangesSince(Map<String, NormalizedFileSnapshot> current, Map<String, NormalizedFileSnapshot> previous, String fileType, boolean pathIsAbsolute);
         void appendToCacheKey(BuildCacheKeyBuilder builder, Map<String, NormalizedFileSnapshot> snapshots);
+        void appendToHasher(Hasher hasher, Map<String, NormalizedFileSnapshot> snapshots, boolean pathIsAbsolute);
         boolean isIncludeAdded();
     }
 
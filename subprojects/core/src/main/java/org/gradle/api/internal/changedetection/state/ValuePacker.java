@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+/**
+ * Packs the values of a cache into a fixed number of longs, so that {@link CompactInMemoryStore} can keep them without an object per entry.
+ */
+interface ValuePacker<V> {
+    /**
+     * The number of longs used by each value.
+     */
+    int getSize();
+
+    /**
+     * Writes the given value to {@code target}, starting at {@code offset}.
+     *
+     * @return false when the value cannot be packed, in which case it is not kept in memory.
+     */
+    boolean pack(V value, long[] target, int offset);
+
+    /**
+     * Reads a value previously written by {@link #pack(Object, long[], int)}.
+     */
+    V unpack(long[] source, int offset);
+}
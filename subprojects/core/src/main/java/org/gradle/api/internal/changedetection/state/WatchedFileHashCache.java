@@ -0,0 +1,406 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.internal.hash.FileHashingAlgorithm;
+import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.os.OperatingSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps file hashes in memory for the lifetime of the daemon, using file system events to find out which of them are out of date.
+ *
+ * <p>
+ *     The hash of a file is trusted without looking at the file's length and timestamp for as long as no change to the file has been reported.
+ *     Some changes are never reported, for example when an ancestor of a watched directory is replaced. To catch these, each directory
+ *     containing files with trusted hashes is checked once per build. Whenever something unexpected happens, such as a directory that
+ *     has changed without notice or events that were lost, all hashes are discarded and watching starts over.
+ * </p>
+ * <p>
+ *     The number of hashes kept in memory is limited, discarding the hashes of the least recently used directories first. The number of
+ *     watched directories is limited as well. Watching a directory also watches all directories below it, so each of these is counted,
+ *     and the hashes of files in a directory that would exceed the limit are not kept. A file watcher cannot stop watching a single
+ *     directory, so when the limit has been reached and some of the watched directories were not used by the previous build, all hashes
+ *     are discarded at the start of the next build and watching starts over, which releases the watches of the unused directories.
+ * </p>
+ * <p>
+ *     File system events are delivered asynchronously, so a change made immediately before a build starts may not have been reported
+ *     by the time the file is hashed. For this reason the cache is only used when enabled via the {@value #ENABLED_PROPERTY} system property.
+ *     It is never used on macOS, where the JDK polls the file system instead of receiving events.
+ * </p>
+ */
+public class WatchedFileHashCache implements Stoppable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.hash.watch";
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchedFileHashCache.class);
+    private static final int DEFAULT_MAX_WATCHED_DIRECTORIES = 4096;
+
+    private final FileWatcherFactory fileWatcherFactory;
+    private final int maxHashes;
+    private final int maxWatchedDirectories;
+    private final AtomicReference<State> state = new AtomicReference<State>();
+    private final AtomicLong buildCount = new AtomicLong();
+
+    public WatchedFileHashCache(FileWatcherFactory fileWatcherFactory) {
+        this(fileWatcherFactory, new CacheCapSizer().getMaxSize("fileHashes"), DEFAULT_MAX_WATCHED_DIRECTORIES);
+    }
+
+    /**
+     * @param maxHashes the maximum number of file hashes to keep in memory.
+     * @param maxWatchedDirectories the maximum number of directories to watch, including the directories below each watched directory.
+     */
+    WatchedFileHashCache(FileWatcherFactory fileWatcherFactory, int maxHashes, int maxWatchedDirectories) {
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.maxHashes = maxHashes;
+        this.maxWatchedDirectories = maxWatchedDirectories;
+        this.state.set(new State(FileHashingAlgorithm.MD5));
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) && !OperatingSystem.current().isMacOsX();
+    }
+
+    /**
+     * Called at the start of each build. Directories are checked again before the hashes of the files in them are trusted.
+     */
+    public void beginBuild(FileHashingAlgorithm algorithm) {
+        long currentBuild = buildCount.incrementAndGet();
+        State current = state.get();
+        if (current.algorithm != algorithm) {
+            reset(current, algorithm);
+        } else if (current.hasUnusedRootsAtLimit(currentBuild - 1)) {
+            LOGGER.debug("Watching {} directories, discarding all file hashes kept in memory to stop watching the unused ones.", current.watchedDirectoryCount.get());
+            reset(current, algorithm);
+        }
+    }
+
+    /**
+     * Returns the trusted information for the given file if there is some. Otherwise starts watching the file and uses the given
+     * factory to calculate the information, which is trusted from then on unless a change to the file is reported in the meantime.
+     */
+    FileInfo get(File file, Factory<FileInfo> snapshotter) {
+        State current = state.get();
+        File dir = file.getParentFile();
+        if (dir == null) {
+            return snapshotter.create();
+        }
+        WatchedDirectory directory = current.getDirectory(dir);
+        if (directory == null) {
+            directory = current.watch(dir);
+            if (directory == null) {
+                return snapshotter.create();
+            }
+        } else if (!current.isUpToDate(directory)) {
+            return snapshotter.create();
+        } else {
+            FileInfo info = directory.files.get(file.getName());
+            if (info != null) {
+                return info;
+            }
+        }
+
+        long changeCount = directory.changeCount.get();
+        FileInfo info = snapshotter.create();
+        directory.put(file.getName(), info);
+        if (directory.changeCount.get() != changeCount || directory.evicted) {
+            // Something changed in the directory while the file was being hashed, or the directory is no longer tracked, so the result cannot be trusted
+            directory.remove(file.getName());
+        } else if (current.hashCount.get() > maxHashes) {
+            current.evictLeastRecentlyUsed();
+        }
+        return info;
+    }
+
+    @Override
+    public void stop() {
+        state.get().stop();
+    }
+
+    private void reset(State previous, FileHashingAlgorithm algorithm) {
+        if (state.compareAndSet(previous, new State(algorithm))) {
+            previous.stop();
+        }
+    }
+
+    private class State implements FileWatcherListener, Action<Throwable> {
+        private final FileHashingAlgorithm algorithm;
+        // Least recently used first, guarded by itself. The lock is never held while calling other code, so the watcher can use it as well.
+        private final Map<File, WatchedDirectory> directories = new LinkedHashMap<File, WatchedDirectory>(16, 0.75f, true);
+        private final ConcurrentMap<File, WatchedRoot> roots = new ConcurrentHashMap<File, WatchedRoot>();
+        // Directories that would have exceeded the limit, guarded by this
+        private final Set<File> rejectedRoots = new HashSet<File>();
+        private final AtomicInteger hashCount = new AtomicInteger();
+        private final AtomicInteger watchedDirectoryCount = new AtomicInteger();
+        private volatile boolean limitReached;
+        private volatile FileWatcher watcher;
+        private volatile boolean stopped;
+
+        State(FileHashingAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        WatchedDirectory getDirectory(File dir) {
+            synchronized (directories) {
+                return directories.get(dir);
+            }
+        }
+
+        synchronized WatchedDirectory watch(File dir) {
+            WatchedRoot root = findRoot(dir);
+            if (root == null) {
+                if (rejectedRoots.contains(dir)) {
+                    return null;
+                }
+                int remaining = maxWatchedDirectories - watchedDirectoryCount.get();
+                int directoryCount = countDirectories(dir, remaining);
+                if (directoryCount > remaining) {
+                    LOGGER.debug("Not watching {} for changes, as too many directories are watched already.", dir);
+                    rejectedRoots.add(dir);
+                    limitReached = true;
+                    return null;
+                }
+                try {
+                    if (watcher == null) {
+                        watcher = fileWatcherFactory.watch(this, this);
+                        if (stopped) {
+                            watcher.stop();
+                            return null;
+                        }
+                    }
+                    watcher.watch(FileSystemSubset.builder().add(dir).build());
+                    watchedDirectoryCount.addAndGet(directoryCount);
+                    root = new WatchedRoot();
+                    roots.put(dir, root);
+                } catch (IOException e) {
+                    LOGGER.debug("Could not watch {} for changes, file hashes will not be kept in memory.", dir, e);
+                    reset(this, algorithm);
+                    return null;
+                }
+            }
+            long lastModified = dir.lastModified();
+            if (lastModified == 0) {
+                return null;
+            }
+            long currentBuild = buildCount.get();
+            root.usedInBuild = currentBuild;
+            synchronized (directories) {
+                WatchedDirectory existing = directories.get(dir);
+                if (existing != null) {
+                    return existing;
+                }
+                WatchedDirectory directory = new WatchedDirectory(dir, root, lastModified, currentBuild, hashCount);
+                directories.put(dir, directory);
+                return directory;
+            }
+        }
+
+        private WatchedRoot findRoot(File dir) {
+            for (File candidate = dir; candidate != null; candidate = candidate.getParentFile()) {
+                WatchedRoot root = roots.get(candidate);
+                if (root != null) {
+                    return root;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Counts the given directory and the directories below it, which are all watched when the directory is watched. Stops counting once the count exceeds the given maximum.
+         */
+        private int countDirectories(File dir, int max) {
+            int count = 0;
+            LinkedList<File> queue = new LinkedList<File>();
+            queue.add(dir);
+            while (!queue.isEmpty() && count <= max) {
+                File current = queue.removeFirst();
+                count++;
+                File[] children = current.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        if (child.isDirectory()) {
+                            queue.add(child);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        boolean hasUnusedRootsAtLimit(long previousBuild) {
+            if (!limitReached) {
+                return false;
+            }
+            for (WatchedRoot root : roots.values()) {
+                if (root.usedInBuild < previousBuild) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void evictLeastRecentlyUsed() {
+            synchronized (directories) {
+                Iterator<WatchedDirectory> iterator = directories.values().iterator();
+                while (hashCount.get() > maxHashes && iterator.hasNext()) {
+                    WatchedDirectory directory = iterator.next();
+                    iterator.remove();
+                    directory.evict();
+                }
+            }
+        }
+
+        boolean isUpToDate(WatchedDirectory directory) {
+            long currentBuild = buildCount.get();
+            if (directory.checkedInBuild == currentBuild) {
+                return true;
+            }
+            if (directory.dir.lastModified() != directory.lastModified) {
+                LOGGER.debug("Directory {} has changed without notice, discarding all file hashes kept in memory.", directory.dir);
+                reset(this, algorithm);
+                return false;
+            }
+            directory.checkedInBuild = currentBuild;
+            directory.root.usedInBuild = currentBuild;
+            return true;
+        }
+
+        @Override
+        public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+            // Called while the watcher holds its own lock, so this must never wait for a build thread
+            File file = event.getFile();
+            if (event.getType() == FileWatcherEvent.Type.UNDEFINED || file == null) {
+                LOGGER.debug("File system events were lost, discarding all file hashes kept in memory.");
+                reset(this, algorithm);
+                return;
+            }
+            if (event.getType() == FileWatcherEvent.Type.DELETE) {
+                if (roots.containsKey(file)) {
+                    reset(this, algorithm);
+                    return;
+                }
+                WatchedDirectory deleted;
+                synchronized (directories) {
+                    deleted = directories.remove(file);
+                }
+                if (deleted != null) {
+                    deleted.evict();
+                }
+            }
+            if (event.getType() == FileWatcherEvent.Type.CREATE && file.isDirectory()) {
+                // Directories created below a watched directory are watched as well
+                watchedDirectoryCount.incrementAndGet();
+            }
+            WatchedDirectory parent;
+            synchronized (directories) {
+                parent = directories.get(file.getParentFile());
+            }
+            if (parent != null) {
+                parent.changed(file.getName(), event.getType() != FileWatcherEvent.Type.MODIFY);
+            }
+        }
+
+        @Override
+        public void execute(Throwable failure) {
+            LOGGER.debug("Watching for file changes failed, discarding all file hashes kept in memory.", failure);
+            reset(this, algorithm);
+        }
+
+        void stop() {
+            stopped = true;
+            FileWatcher watcher = this.watcher;
+            if (watcher != null) {
+                watcher.stop();
+            }
+        }
+    }
+
+    private static class WatchedRoot {
+        private volatile long usedInBuild;
+    }
+
+    private static class WatchedDirectory {
+        private final File dir;
+        private final WatchedRoot root;
+        private final ConcurrentMap<String, FileInfo> files = new ConcurrentHashMap<String, FileInfo>();
+        private final AtomicLong changeCount = new AtomicLong();
+        private final AtomicInteger hashCount;
+        private volatile long lastModified;
+        private volatile long checkedInBuild;
+        private volatile boolean evicted;
+
+        WatchedDirectory(File dir, WatchedRoot root, long lastModified, long checkedInBuild, AtomicInteger hashCount) {
+            this.dir = dir;
+            this.root = root;
+            this.lastModified = lastModified;
+            this.checkedInBuild = checkedInBuild;
+            this.hashCount = hashCount;
+        }
+
+        void put(String name, FileInfo info) {
+            if (files.put(name, info) == null) {
+                hashCount.incrementAndGet();
+            }
+        }
+
+        void remove(String name) {
+            if (files.remove(name) != null) {
+                hashCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Discards all hashes of this directory, including those of files that are being hashed right now.
+         */
+        void evict() {
+            evicted = true;
+            for (String name : files.keySet()) {
+                remove(name);
+            }
+        }
+
+        void changed(String name, boolean entriesChanged) {
+            changeCount.incrementAndGet();
+            remove(name);
+            if (entriesChanged) {
+                // Creating or removing a file updates the timestamp of the directory, which is expected
+                lastModified = dir.lastModified();
+            }
+        }
+    }
+}
@@ -16,20 +16,45 @@
 package org.gradle.api.internal.hash;
 
 import com.google.common.base.Charsets;
-import com.google.common.hash.Funnels;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.internal.resource.TextResource;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class DefaultFileHasher implements FileHasher {
-    private static final byte[] SIGNATURE = Hashing.md5().hashString(DefaultFileHasher.class.getName(), Charsets.UTF_8).asBytes();
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private final FileHashingAlgorithm algorithm;
+    private final byte[] signature;
+
+    public DefaultFileHasher() {
+        this(FileHashingAlgorithm.MD5);
+    }
+
+    public DefaultFileHasher(FileHashingAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        this.signature = signatureFor(algorithm);
+    }
+
+    private static byte[] signatureFor(FileHashingAlgorithm algorithm) {
+        // Keep the signature for MD5 stable, so that hashes stay compatible with hashes calculated by previous versions
+        String signature = algorithm == FileHashingAlgorithm.MD5
+            ? DefaultFileHasher.class.getName()
+            : DefaultFileHasher.class.getName() + ":" + algorithm.name();
+        return Hashing.md5().hashString(signature, Charsets.UTF_8).asBytes();
+    }
+
+    @Override
+    public FileHashingAlgorithm getAlgorithm() {
+        return algorithm;
+    }
 
     @Override
     public HashCode hash(TextResource resource) {
@@ -42,10 +67,20 @@ public class DefaultFileHasher implements FileHasher {
     public HashCode hash(File file) {
         try {
             Hasher hasher = createFileHasher();
-            Files.copy(file, Funnels.asOutputStream(hasher));
+            InputStream inputStream = new FileInputStream(file);
+            try {
+                // Read small files in one go, and large files in chunks of a size that keeps the number of reads low
+                byte[] buffer = new byte[(int) Math.max(1, Math.min(file.length(), MAX_BUFFER_SIZE))];
+                int read;
+                while ((read = inputStream.read(buffer)) >= 0) {
+                    hasher.putBytes(buffer, 0, read);
+                }
+            } finally {
+                inputStream.close();
+            }
             return hasher.hash();
         } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", algorithm, file), e);
         }
     }
 
@@ -54,9 +89,16 @@ public class DefaultFileHasher implements FileHasher {
         return hash(fileDetails.getFile());
     }
 
-    private static Hasher createFileHasher() {
-        Hasher hasher = Hashing.md5().newHasher();
-        hasher.putBytes(SIGNATURE);
+    @Override
+    public HashCode hash(byte[] content) {
+        Hasher hasher = createFileHasher();
+        hasher.putBytes(content);
+        return hasher.hash();
+    }
+
+    private Hasher createFileHasher() {
+        Hasher hasher = algorithm.getFunction().newHasher();
+        hasher.putBytes(signature);
         return hasher;
     }
 }
@@ -22,6 +22,11 @@ import org.gradle.internal.resource.TextResource;
 import java.io.File;
 
 public interface FileHasher {
+    /**
+     * Returns the algorithm used to produce the hashes returned by this hasher.
+     */
+    FileHashingAlgorithm getAlgorithm();
+
     /**
      * Returns the hash of the current content of the given resource. The provided resource must have content available.
      */
@@ -36,4 +41,9 @@ public interface FileHasher {
      * Returns the hash of the current content of the given file, assuming the given file metadata. The provided file must exist and be a file (rather than, say, a directory).
      */
     HashCode hash(FileTreeElement fileDetails);
+
+    /**
+     * Returns the hash of the given content. This is the same hash as the one returned for a file with this content.
+     */
+    HashCode hash(byte[] content);
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.gradle.api.InvalidUserDataException;
+
+import java.util.Arrays;
+
+/**
+ * The hash functions that can be used to hash the contents of files. All of them produce 128 bit hashes.
+ */
+public enum FileHashingAlgorithm {
+    MD5(Hashing.md5()),
+    /**
+     * A non-cryptographic hash that is considerably faster to calculate than {@link #MD5}.
+     */
+    MURMUR3(Hashing.murmur3_128());
+
+    /**
+     * The system property that selects the algorithm for a build.
+     */
+    public static final String SYSTEM_PROPERTY = "org.gradle.internal.hash.algorithm";
+
+    private final HashFunction function;
+
+    FileHashingAlgorithm(HashFunction function) {
+        this.function = function;
+    }
+
+    public HashFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * Returns the algorithm selected via the {@value #SYSTEM_PROPERTY} system property, defaulting to {@link #MD5}.
+     */
+    public static FileHashingAlgorithm fromSystemProperties() {
+        String name = System.getProperty(SYSTEM_PROPERTY);
+        if (name == null) {
+            return MD5;
+        }
+        for (FileHashingAlgorithm algorithm : values()) {
+            if (algorithm.name().equalsIgnoreCase(name.trim())) {
+                return algorithm;
+            }
+        }
+        throw new InvalidUserDataException(String.format("Unknown file hashing algorithm '%s' specified via the '%s' system property. Supported algorithms: %s", name, SYSTEM_PROPERTY, Arrays.toString(values())));
+    }
+}
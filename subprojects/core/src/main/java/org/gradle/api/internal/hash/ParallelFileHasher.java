@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Hashes batches of files, spreading the work across a bounded pool of worker threads when a batch is large enough to benefit from it.
+ *
+ * <p>The hashes are always returned in the order of the given files, regardless of the order in which they were calculated.
+ * The {@link FileHasher} used must be safe to call from multiple threads.</p>
+ */
+public class ParallelFileHasher implements Stoppable {
+    /**
+     * Batches smaller than this are hashed on the calling thread, as handing them off to other threads costs more than it saves.
+     */
+    static final int MIN_FILES_FOR_PARALLEL_HASHING = 128;
+    /**
+     * The number of files each worker hashes in one go. Small enough to balance the load when file sizes vary a lot.
+     */
+    static final int FILES_PER_CHUNK = 32;
+
+    private final ExecutorFactory executorFactory;
+    private final int maxWorkers;
+    private StoppableExecutor executor;
+
+    public ParallelFileHasher(ExecutorFactory executorFactory, int maxWorkers) {
+        this.executorFactory = executorFactory;
+        this.maxWorkers = maxWorkers;
+    }
+
+    public List<HashCode> hash(final FileHasher hasher, final List<? extends FileTreeElement> files) {
+        final HashCode[] hashes = new HashCode[files.size()];
+        if (maxWorkers < 2 || files.size() < MIN_FILES_FOR_PARALLEL_HASHING) {
+            hashRange(hasher, files, hashes, 0, files.size());
+            return Arrays.asList(hashes);
+        }
+
+        StoppableExecutor executor = getExecutor();
+        List<Future<?>> chunks = Lists.newArrayListWithCapacity(files.size() / FILES_PER_CHUNK + 1);
+        for (int start = 0; start < files.size(); start += FILES_PER_CHUNK) {
+            final int chunkStart = start;
+            final int chunkEnd = Math.min(start + FILES_PER_CHUNK, files.size());
+            chunks.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    hashRange(hasher, files, hashes, chunkStart, chunkEnd);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            cancel(chunks);
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            cancel(chunks);
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        return Arrays.asList(hashes);
+    }
+
+    private static void hashRange(FileHasher hasher, List<? extends FileTreeElement> files, HashCode[] hashes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            hashes[i] = hasher.hash(files.get(i));
+        }
+    }
+
+    private static void cancel(List<Future<?>> chunks) {
+        for (Future<?> chunk : chunks) {
+            chunk.cancel(false);
+        }
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("File hashing", maxWorkers);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
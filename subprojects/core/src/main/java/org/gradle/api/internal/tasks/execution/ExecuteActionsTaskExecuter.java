@@ -18,6 +18,7 @@ package org.gradle.api.internal.tasks.execution;
 import org.gradle.api.GradleException;
 import org.gradle.api.execution.TaskActionListener;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
 import org.gradle.api.internal.tasks.ContextAwareTaskAction;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
@@ -48,7 +49,13 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
     public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         listener.beforeActions(task);
         if (!task.getTaskActions().isEmpty()) {
-            outputsGenerationListener.beforeTaskOutputsGenerated();
+            TaskOutputsInternal outputs = task.getOutputs();
+            if (writesOnlyDeclaredOutputs(outputs)) {
+                outputsGenerationListener.beforeTaskOutputsGenerated(outputs.getFiles());
+            } else {
+                // The actions could change any file
+                outputsGenerationListener.beforeTaskOutputsGenerated();
+            }
         }
         state.setExecuting(true);
         try {
@@ -66,6 +73,14 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
         }
     }
 
+    /**
+     * Only a cacheable task is trusted to change nothing but its declared outputs, as the build cache relies on that as well.
+     * Any other task could write to undeclared locations.
+     */
+    private static boolean writesOnlyDeclaredOutputs(TaskOutputsInternal outputs) {
+        return outputs.hasDeclaredOutputs() && outputs.isCacheAllowed() && outputs.isCacheEnabled();
+    }
+
     private GradleException executeActions(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         LOGGER.debug("Executing actions for {}.", task);
         final List<ContextAwareTaskAction> actions = new ArrayList<ContextAwareTaskAction>(task.getTaskActions());
@@ -107,7 +107,7 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
                                     });
                                     if (found) {
                                         state.setOutcome(TaskExecutionOutcome.FROM_CACHE);
-                                        taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+                                        taskOutputsGenerationListener.beforeTaskOutputsGenerated(taskOutputs.getFiles());
                                         return;
                                     }
                                 } else {
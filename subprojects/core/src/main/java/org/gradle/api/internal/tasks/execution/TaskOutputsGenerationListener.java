@@ -16,10 +16,17 @@
 
 package org.gradle.api.internal.tasks.execution;
 
+import java.io.File;
+
 public interface TaskOutputsGenerationListener {
     /**
      * Invoked when the outputs for a task are about to be generated.
      * This is for example just before the task actions are executed or the outputs are loaded from the cache.
      */
     void beforeTaskOutputsGenerated();
+
+    /**
+     * Invoked when the outputs for a task are about to be generated, and only the given output files and directories, including their contents, are going to change.
+     */
+    void beforeTaskOutputsGenerated(Iterable<File> outputRoots);
 }
@@ -29,10 +29,12 @@ public class VerifyNoInputChangesTaskExecuter implements TaskExecuter {
 
     private TaskExecuter delegate;
     private TaskArtifactStateRepository repository;
+    private TaskOutputsGenerationListener outputsGenerationListener;
 
-    public VerifyNoInputChangesTaskExecuter(TaskArtifactStateRepository repository, TaskExecuter delegate) {
+    public VerifyNoInputChangesTaskExecuter(TaskArtifactStateRepository repository, TaskOutputsGenerationListener outputsGenerationListener, TaskExecuter delegate) {
         this.delegate = delegate;
         this.repository = repository;
+        this.outputsGenerationListener = outputsGenerationListener;
     }
 
     @Override
@@ -40,6 +42,8 @@ public class VerifyNoInputChangesTaskExecuter implements TaskExecuter {
         BuildCacheKey beforeExecution = context.getTaskArtifactState().calculateCacheKey();
         delegate.execute(task, state, context);
         if (beforeExecution != null) {
+            // The task may have changed any of its inputs, so do not use what is known about the file system from before the execution
+            outputsGenerationListener.beforeTaskOutputsGenerated();
             BuildCacheKey afterExecution = repository.getStateFor(task).calculateCacheKey();
             if (afterExecution == null || !beforeExecution.getHashCode().equals(afterExecution.getHashCode())) {
                 throw new TaskExecutionException(task, new GradleException("The inputs for the task changed during the execution! Check if you have a `doFirst` changing the inputs."));
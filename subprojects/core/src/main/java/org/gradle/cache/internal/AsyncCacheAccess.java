@@ -23,6 +23,7 @@ public interface AsyncCacheAccess {
      * Submits the given action for execution without waiting for the result.
      *
      * An implementation may execute the action immediately or later. All actions submitted by this method must complete before any action submitted to {@link #read(Factory)} is executed. Actions submitted using this method must run in the order that they are submitted.
+     * An implementation may skip a {@link CacheEntryUpdate} when a later update of the same entry is submitted before it runs.
      */
     void enqueue(Runnable task);
 
@@ -40,29 +40,21 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     }
 
     @Override
-    public void putLater(final K key, final V value, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
+    public void putLater(final K key, final V value, Runnable completion) {
+        asyncCacheAccess.enqueue(new EntryUpdate(key, completion) {
             @Override
-            public void run() {
-                try {
-                    persistentCache.put(key, value);
-                } finally {
-                    completion.run();
-                }
+            protected void update() {
+                persistentCache.put(key, value);
             }
         });
     }
 
     @Override
-    public void removeLater(final K key, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
+    public void removeLater(final K key, Runnable completion) {
+        asyncCacheAccess.enqueue(new EntryUpdate(key, completion) {
             @Override
-            public void run() {
-                try {
-                    persistentCache.remove(key);
-                } finally {
-                    completion.run();
-                }
+            protected void update() {
+                persistentCache.remove(key);
             }
         });
     }
@@ -81,4 +73,40 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     public void beforeLockRelease(FileLock.State currentCacheState) {
         persistentCache.beforeLockRelease(currentCacheState);
     }
+
+    private abstract class EntryUpdate implements CacheEntryUpdate {
+        private final K key;
+        private final Runnable completion;
+
+        EntryUpdate(K key, Runnable completion) {
+            this.key = key;
+            this.completion = completion;
+        }
+
+        protected abstract void update();
+
+        @Override
+        public Object getCache() {
+            return persistentCache;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public void run() {
+            try {
+                update();
+            } finally {
+                completion.run();
+            }
+        }
+
+        @Override
+        public void discard() {
+            completion.run();
+        }
+    }
 }
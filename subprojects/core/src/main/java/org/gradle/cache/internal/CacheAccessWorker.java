@@ -26,23 +26,49 @@ import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.TimeProvider;
 import org.gradle.internal.time.Timers;
 import org.gradle.internal.time.TrueTimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs the operations submitted to an {@link AsyncCacheAccess} on a single worker thread, holding the cache lock for batches of operations.
+ *
+ * <p>
+ *     The size of each batch adapts to the load. The lock is kept for as long as operations keep arriving within the batch window, up to a limit.
+ *     When acquiring the lock had to wait for some other user of the cache, the batch window shrinks and the limit is lowered so that the lock is
+ *     released sooner. The limit is raised again while the queue is backed up, so that a burst of updates is written without releasing the lock.
+ * </p>
+ * <p>
+ *     Consecutive updates of the same cache entry, as submitted by {@link AsyncCacheAccessDecoratedCache}, are coalesced so that only the last of them
+ *     is written. Reads, flushes and other operations are never reordered with respect to the updates.
+ * </p>
+ */
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorker.class);
+    private static final long MIN_BATCH_WINDOW_MILLIS = 10;
+    private static final long CONTENDED_LOCK_WAIT_MILLIS = 10;
+    private static final int MAX_OPERATIONS_PER_DRAIN = 1000;
+
     private final BlockingQueue<Runnable> workQueue;
+    private final int queueCapacity;
     private final String displayName;
     private final CacheAccess cacheAccess;
-    private final long batchWindowMillis;
+    private final long maximumBatchWindowMillis;
     private final long maximumLockingTimeMillis;
+    private final long contendedLockingTimeMillis;
+    private final CacheAccessWorkerStatistics statistics;
+    private long batchWindowMillis;
     private boolean closed;
     private boolean workerCompleted;
     private boolean stopSeen;
@@ -51,13 +77,24 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private final TimeProvider timeProvider = new TrueTimeProvider();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
+        this(displayName, cacheAccess, new CacheAccessWorkerStatistics());
+    }
+
+    CacheAccessWorker(String displayName, CacheAccess cacheAccess, CacheAccessWorkerStatistics statistics) {
         this.displayName = displayName;
         this.cacheAccess = cacheAccess;
-        this.batchWindowMillis = 200;
+        this.statistics = statistics;
+        this.maximumBatchWindowMillis = 200;
+        this.batchWindowMillis = maximumBatchWindowMillis;
         this.maximumLockingTimeMillis = 5000;
+        this.contendedLockingTimeMillis = 1000;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
-        int queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
-        workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity, true);
+        queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
+        workQueue = new LinkedBlockingQueue<Runnable>(queueCapacity);
+    }
+
+    CacheAccessWorkerStatistics getStatistics() {
+        return statistics;
     }
 
     @Override
@@ -173,33 +210,49 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
 
     private void flushOperations(final Runnable updateOperation) {
         final List<FlushOperationsCommand> flushOperations = new ArrayList<FlushOperationsCommand>();
+        final long lockRequested = timeProvider.getCurrentTimeForDuration();
         try {
             cacheAccess.useCache("CacheAccessWorker flushing operations", new Runnable() {
                 @Override
                 public void run() {
-                    CountdownTimer timer = Timers.startTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
-                    if (updateOperation != null) {
-                        failureHandler.onExecute(updateOperation);
+                    long lockAcquired = timeProvider.getCurrentTimeForDuration();
+                    boolean contended = lockAcquired - lockRequested > CONTENDED_LOCK_WAIT_MILLIS;
+                    if (contended) {
+                        batchWindowMillis = Math.max(MIN_BATCH_WINDOW_MILLIS, batchWindowMillis / 2);
+                    } else {
+                        batchWindowMillis = Math.min(maximumBatchWindowMillis, batchWindowMillis * 2);
                     }
-                    Runnable otherOperation;
+                    long lockingTimeMillis = contended ? contendedLockingTimeMillis : maximumLockingTimeMillis;
+                    CountdownTimer timer = Timers.startTimer(lockingTimeMillis, TimeUnit.MILLISECONDS);
+
+                    List<Runnable> operations = new ArrayList<Runnable>();
+                    operations.add(updateOperation);
+                    int batchSize = 0;
+                    int maxQueueDepth = 0;
                     try {
-                        while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
-                            failureHandler.onExecute(otherOperation);
-                            final Class<? extends Runnable> runnableClass = otherOperation.getClass();
-                            if (runnableClass == FlushOperationsCommand.class) {
-                                flushOperations.add((FlushOperationsCommand) otherOperation);
+                        while (true) {
+                            maxQueueDepth = Math.max(maxQueueDepth, workQueue.size() + operations.size());
+                            workQueue.drainTo(operations, MAX_OPERATIONS_PER_DRAIN - operations.size());
+                            batchSize += operations.size();
+                            boolean done = runOperations(operations, flushOperations);
+                            operations.clear();
+                            if (done) {
+                                break;
                             }
-                            if (runnableClass == ShutdownOperationsCommand.class) {
-                                stopSeen = true;
+                            if (timer.hasExpired() && (workQueue.size() < queueCapacity / 2 || timer.getElapsedMillis() >= maximumLockingTimeMillis)) {
+                                // Release the lock for a while, unless there is a backlog of operations and the lock has not been held for too long
+                                break;
                             }
-                            if (runnableClass == ShutdownOperationsCommand.class
-                                    || runnableClass == FlushOperationsCommand.class
-                                    || timer.hasExpired()) {
+                            Runnable nextOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS);
+                            if (nextOperation == null) {
                                 break;
                             }
+                            operations.add(nextOperation);
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
+                    } finally {
+                        statistics.batchCompleted(batchSize, maxQueueDepth, lockAcquired - lockRequested, timer.getElapsedMillis());
                     }
                 }
             });
@@ -210,6 +263,81 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         }
     }
 
+    /**
+     * Runs the given operations in order, coalescing consecutive updates of the same cache entry.
+     *
+     * @return true when the lock should be released after these operations, because they contain a flush or shutdown command.
+     */
+    private boolean runOperations(List<Runnable> operations, List<FlushOperationsCommand> flushOperations) {
+        boolean done = false;
+        int firstUpdate = 0;
+        for (int i = 0; i <= operations.size(); i++) {
+            Runnable operation = i < operations.size() ? operations.get(i) : null;
+            if (operation != null && entryUpdateOf(operation) != null) {
+                continue;
+            }
+            runEntryUpdates(operations.subList(firstUpdate, i));
+            firstUpdate = i + 1;
+            if (operation == null) {
+                break;
+            }
+            failureHandler.onExecute(operation);
+            Class<? extends Runnable> runnableClass = operation.getClass();
+            if (runnableClass == FlushOperationsCommand.class) {
+                flushOperations.add((FlushOperationsCommand) operation);
+                done = true;
+            } else if (runnableClass == ShutdownOperationsCommand.class) {
+                stopSeen = true;
+                done = true;
+            }
+        }
+        return done;
+    }
+
+    private void runEntryUpdates(List<Runnable> updates) {
+        Map<EntryKey, Runnable> lastUpdates = new HashMap<EntryKey, Runnable>();
+        for (Runnable update : updates) {
+            lastUpdates.put(new EntryKey(entryUpdateOf(update)), update);
+        }
+        Map<EntryKey, List<CacheEntryUpdate>> supersededUpdates = new HashMap<EntryKey, List<CacheEntryUpdate>>();
+        for (Runnable update : updates) {
+            CacheEntryUpdate entryUpdate = entryUpdateOf(update);
+            EntryKey key = new EntryKey(entryUpdate);
+            if (lastUpdates.get(key) != update) {
+                List<CacheEntryUpdate> superseded = supersededUpdates.get(key);
+                if (superseded == null) {
+                    superseded = new ArrayList<CacheEntryUpdate>();
+                    supersededUpdates.put(key, superseded);
+                }
+                superseded.add(entryUpdate);
+                continue;
+            }
+            failureHandler.onExecute(update);
+            List<CacheEntryUpdate> superseded = supersededUpdates.remove(key);
+            if (superseded != null) {
+                statistics.updatesCoalesced(superseded.size());
+                for (final CacheEntryUpdate supersededUpdate : superseded) {
+                    failureHandler.onExecute(new Runnable() {
+                        @Override
+                        public void run() {
+                            supersededUpdate.discard();
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private static CacheEntryUpdate entryUpdateOf(Runnable operation) {
+        if (operation instanceof CacheEntryUpdate) {
+            return (CacheEntryUpdate) operation;
+        }
+        if (operation instanceof AsyncCacheAccessRunnable && ((AsyncCacheAccessRunnable) operation).delegate instanceof CacheEntryUpdate) {
+            return (CacheEntryUpdate) ((AsyncCacheAccessRunnable) operation).delegate;
+        }
+        return null;
+    }
+
     public synchronized void stop() {
         if (!closed && !workerCompleted) {
             closed = true;
@@ -223,10 +351,38 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             } catch (InterruptedException e) {
                 // ignore
             }
+            LOGGER.debug("Cache access worker for {} finished: {}", displayName, statistics);
         }
         rethrowFailure();
     }
 
+    private static class EntryKey {
+        private final Object cache;
+        private final Object key;
+
+        EntryKey(CacheEntryUpdate update) {
+            this.cache = update.getCache();
+            this.key = update.getKey();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            EntryKey other = (EntryKey) obj;
+            return cache == other.cache && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(cache) * 31 + key.hashCode();
+        }
+    }
+
     private static class ShutdownOperationsCommand implements Runnable {
         @Override
         public void run() {
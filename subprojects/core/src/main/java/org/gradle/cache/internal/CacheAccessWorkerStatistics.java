@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+/**
+ * Counters describing the batches of cache operations run by a {@link CacheAccessWorker}, for diagnostics.
+ */
+public class CacheAccessWorkerStatistics {
+    private long batches;
+    private long operations;
+    private long coalescedUpdates;
+    private int maxBatchSize;
+    private int maxQueueDepth;
+    private long lockWaitMillis;
+    private long lockHoldMillis;
+    private long maxLockHoldMillis;
+
+    synchronized void batchCompleted(int batchSize, int queueDepth, long lockWaitMillis, long lockHoldMillis) {
+        batches++;
+        operations += batchSize;
+        maxBatchSize = Math.max(maxBatchSize, batchSize);
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        this.lockWaitMillis += lockWaitMillis;
+        this.lockHoldMillis += lockHoldMillis;
+        maxLockHoldMillis = Math.max(maxLockHoldMillis, lockHoldMillis);
+    }
+
+    synchronized void updatesCoalesced(int count) {
+        coalescedUpdates += count;
+    }
+
+    /**
+     * The number of times the cache lock was acquired to run operations.
+     */
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    public synchronized long getOperations() {
+        return operations;
+    }
+
+    /**
+     * The number of updates that were not written, as a later update of the same entry was written instead.
+     */
+    public synchronized long getCoalescedUpdates() {
+        return coalescedUpdates;
+    }
+
+    public synchronized int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getLockWaitMillis() {
+        return lockWaitMillis;
+    }
+
+    public synchronized long getLockHoldMillis() {
+        return lockHoldMillis;
+    }
+
+    public synchronized long getMaxLockHoldMillis() {
+        return maxLockHoldMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return operations + " operations in " + batches + " batches (" + coalescedUpdates + " updates coalesced, max batch size " + maxBatchSize
+            + ", max queue depth " + maxQueueDepth + "), lock held for " + lockHoldMillis + "ms (max " + maxLockHoldMillis + "ms), waited "
+            + lockWaitMillis + "ms for lock";
+    }
+}
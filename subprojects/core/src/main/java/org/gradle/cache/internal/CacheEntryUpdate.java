@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+/**
+ * An asynchronous update of a single cache entry, submitted to an {@link AsyncCacheAccess}.
+ *
+ * A later update of the same entry makes an earlier one redundant, so an implementation may {@link #discard()} the earlier update instead of running it.
+ */
+interface CacheEntryUpdate extends Runnable {
+    /**
+     * The cache that contains the entry.
+     */
+    Object getCache();
+
+    /**
+     * The key of the entry.
+     */
+    Object getKey();
+
+    /**
+     * Called instead of {@link #run()} when a later update of the same entry has been run.
+     */
+    void discard();
+}
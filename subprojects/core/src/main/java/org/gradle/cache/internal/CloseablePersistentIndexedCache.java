@@ -0,0 +1,29 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.cache.PersistentIndexedCache;
+
+/**
+ * A {@link PersistentIndexedCache} backed by files that are held open until the cache is closed.
+ */
+public interface CloseablePersistentIndexedCache<K, V> extends PersistentIndexedCache<K, V> {
+    /**
+     * Writes any pending changes and releases the files of this cache.
+     */
+    void close();
+}
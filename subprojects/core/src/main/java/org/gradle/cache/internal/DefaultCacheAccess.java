@@ -15,6 +15,7 @@
  */
 package org.gradle.cache.internal;
 
+import com.google.common.io.Files;
 import net.jcip.annotations.ThreadSafe;
 import org.gradle.api.Action;
 import org.gradle.api.logging.Logger;
@@ -23,6 +24,7 @@ import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.cache.internal.filelock.LockOptions;
+import org.gradle.cache.internal.logstructured.LogStructuredPersistentIndexedCache;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
@@ -54,6 +56,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
 
     private StoppableExecutor cacheUpdateExecutor;
     private CacheAccessWorker cacheAccessWorker;
+    private final CacheAccessWorkerStatistics workerStatistics = new CacheAccessWorkerStatistics();
 
     private final Lock lock = new ReentrantLock(); // protects the following state
     private final Condition condition = lock.newCondition();
@@ -104,13 +107,20 @@ public class DefaultCacheAccess implements CacheCoordinator {
 
     private synchronized AsyncCacheAccess getCacheAccessWorker() {
         if (cacheAccessWorker == null) {
-            cacheAccessWorker = new CacheAccessWorker(cacheDisplayName, this);
+            cacheAccessWorker = new CacheAccessWorker(cacheDisplayName, this, workerStatistics);
             cacheUpdateExecutor = executorFactory.create("Cache update executor");
             cacheUpdateExecutor.execute(cacheAccessWorker);
         }
         return cacheAccessWorker;
     }
 
+    /**
+     * Returns the statistics of the operations run on behalf of the caches of this cache access, for as long as it has been open.
+     */
+    public CacheAccessWorkerStatistics getWorkerStatistics() {
+        return workerStatistics;
+    }
+
     public void open() {
         lock.lock();
         try {
@@ -313,8 +323,8 @@ public class DefaultCacheAccess implements CacheCoordinator {
     public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final PersistentIndexedCacheParameters<K, V> parameters) {
         final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
         LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-        Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-            public BTreePersistentIndexedCache<K, V> create() {
+        Factory<CloseablePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<CloseablePersistentIndexedCache<K, V>>() {
+            public CloseablePersistentIndexedCache<K, V> create() {
                 return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
             }
         };
@@ -352,7 +362,12 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    <K, V> CloseablePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (LogStructuredPersistentIndexedCache.isEnabled()) {
+            // Uses a different file, so that switching between implementations never reads a file in the other format
+            File logFile = new File(cacheFile.getParentFile(), Files.getNameWithoutExtension(cacheFile.getName()) + ".log");
+            return new LogStructuredPersistentIndexedCache<K, V>(logFile, keySerializer, valueSerializer);
+        }
         return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.os.OperatingSystem;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link BlockStore} that reads and writes blocks through memory mapped regions of the cache file, rather than seeking and reading for each block.
+ * Uses the same file format as {@link FileBackedBlockStore}.
+ *
+ * <p>
+ *     The file is mapped in regions of a fixed size, which are mapped as blocks in them are first accessed. Reading only maps the part of a region
+ *     that lies within the file, read-only, so that reading never changes the file. Writing a block maps the whole region for writing, which grows the
+ *     file by a whole region when writing beyond its end. The unused end of the last region is removed when the store is closed. Blocks that lie
+ *     within a single region are read directly from a slice of the mapped region, without copying them.
+ * </p>
+ * <p>
+ *     At most {@value #MAX_MAPPED_REGIONS} regions are mapped at a time, and the least recently used region is released when another one is
+ *     mapped. Mapped regions are released explicitly where the JVM allows it, and otherwise once they have been garbage collected. Windows does not
+ *     allow a file to be truncated while parts of it are mapped, so this store is only used when enabled via the {@value #ENABLED_PROPERTY} system
+ *     property, and never on Windows. The size of the regions can be set via the {@value #REGION_SIZE_PROPERTY} system property.
+ * </p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    public static final String ENABLED_PROPERTY = "org.gradle.cache.internal.btree.mapped";
+    public static final String REGION_SIZE_PROPERTY = "org.gradle.cache.internal.btree.mappedRegionSize";
+    static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+    static final int MAX_MAPPED_REGIONS = 32;
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final int maxMappedRegions;
+    // By region index, least recently used first
+    private final Map<Long, Region> regions = new LinkedHashMap<Long, Region>(16, 0.75f, true);
+    private final RegionOutputStream output = new RegionOutputStream();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+    // The length of the file, including the unused end of the last region mapped for writing
+    private long fileLength;
+
+    public MappedFileBlockStore(File cacheFile, int regionSize) {
+        this(cacheFile, regionSize, MAX_MAPPED_REGIONS);
+    }
+
+    MappedFileBlockStore(File cacheFile, int regionSize, int maxMappedRegions) {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("Region size must be positive, but was " + regionSize);
+        }
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+        this.maxMappedRegions = maxMappedRegions;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) && !OperatingSystem.current().isWindows();
+    }
+
+    public static int getConfiguredRegionSize() {
+        return Integer.getInteger(REGION_SIZE_PROPERTY, DEFAULT_REGION_SIZE);
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            currentFileSize = file.length();
+            fileLength = currentFileSize;
+            nextBlock = currentFileSize;
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        unmapAll();
+        try {
+            try {
+                // Remove the unused end of the last region. Truncating a file while parts of it are still mapped is allowed on the platforms
+                // this store is used on, in case the regions could not be released explicitly. They are never accessed again.
+                if (file.length() > currentFileSize) {
+                    file.setLength(currentFileSize);
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        unmapAll();
+        try {
+            file.setLength(0);
+            currentFileSize = 0;
+            fileLength = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(new BlockPointer(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Returns the mapped region containing the given position. A region mapped for reading only covers the part of the region within the file.
+     * A region mapped for writing covers the whole region, which grows the file when the region lies beyond its end.
+     */
+    private ByteBuffer region(long pos, boolean forWrite) throws IOException {
+        long index = pos / regionSize;
+        long regionStart = index * regionSize;
+        Region region = regions.get(index);
+        if (region != null && (forWrite ? !region.writable : region.buffer.capacity() <= pos - regionStart)) {
+            regions.remove(index);
+            unmap(region.buffer);
+            region = null;
+        }
+        if (region == null) {
+            if (regions.size() >= maxMappedRegions) {
+                Iterator<Region> iterator = regions.values().iterator();
+                Region leastRecentlyUsed = iterator.next();
+                iterator.remove();
+                unmap(leastRecentlyUsed.buffer);
+            }
+            if (forWrite) {
+                region = new Region(channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize), true);
+                fileLength = Math.max(fileLength, regionStart + regionSize);
+            } else {
+                long size = Math.min(regionSize, fileLength - regionStart);
+                if (size <= 0) {
+                    throw new IllegalArgumentException("Position " + pos + " is beyond the end of " + this);
+                }
+                region = new Region(channel.map(FileChannel.MapMode.READ_ONLY, regionStart, size), false);
+            }
+            regions.put(index, region);
+        }
+        return region.buffer;
+    }
+
+    /**
+     * Returns the given range of the file. The returned buffer is a slice of a mapped region when the range lies within a single region, and a copy
+     * otherwise. It must not be used once another region has been mapped, as that may release the region it was sliced from.
+     */
+    private ByteBuffer readBytes(long pos, int length) throws IOException {
+        ByteBuffer region = region(pos, false).duplicate();
+        int offset = (int) (pos % regionSize);
+        if (offset + length <= region.capacity()) {
+            region.position(offset);
+            region.limit(offset + length);
+            return region.slice();
+        }
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            ByteBuffer buffer = region(pos + copied, false).duplicate();
+            buffer.position((int) ((pos + copied) % regionSize));
+            int count = Math.min(length - copied, buffer.remaining());
+            buffer.get(bytes, copied, count);
+            copied += count;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private void unmapAll() {
+        for (Region region : regions.values()) {
+            unmap(region.buffer);
+        }
+        regions.clear();
+    }
+
+    /**
+     * Releases the given mapped region right away, rather than once it has been garbage collected. The region must not be accessed afterwards.
+     * Does nothing when the JVM does not allow this.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            // Java 8 and earlier
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+            return;
+        } catch (Exception e) {
+            // Try the next option
+        }
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafeField.get(null), buffer);
+        } catch (Exception e) {
+            // Released once garbage collected
+        }
+    }
+
+    private static final class Region {
+        final MappedByteBuffer buffer;
+        final boolean writable;
+
+        Region(MappedByteBuffer buffer, boolean writable) {
+            this.buffer = buffer;
+            this.writable = writable;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private final class RegionOutputStream extends OutputStream {
+        private long pos;
+        private long start;
+
+        DataOutputStream start(long pos) {
+            this.pos = pos;
+            this.start = pos;
+            return new DataOutputStream(this);
+        }
+
+        long getBytesWritten() {
+            return pos - start;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            region(pos, true).put((int) (pos % regionSize), (byte) value);
+            pos++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ByteBuffer buffer = region(pos, true).duplicate();
+                buffer.position((int) (pos % regionSize));
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                pos += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = new BlockPointer(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            DataOutputStream outputStream = output.start(pos);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            long bytesWritten = output.getBytesWritten();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+
+            if (currentFileSize < finalSize) {
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            ByteBuffer header = readBytes(pos, HEADER_SIZE);
+            byte type = header.get();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = header.getInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            ByteBuffer body = readBytes(pos + HEADER_SIZE, payloadSize + TAIL_SIZE);
+            payload.read(new DataInputStream(new ByteBufferInputStream(body)));
+
+            // Read and verify count
+            long actualCount = HEADER_SIZE + body.position();
+            if (body.remaining() < TAIL_SIZE || body.getInt() != actualCount) {
+                throw blockCorruptedException();
+            }
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.CloseablePersistentIndexedCache;
+import org.gradle.internal.io.RandomAccessFileInputStream;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent indexed cache that appends each change to a log file, and keeps an index from the serialized form of each key to the location of
+ * its latest value in memory.
+ *
+ * <p>
+ *     Each record in the log holds a serialized key, its serialized value or a marker for a removed entry, and a checksum. Records are only ever
+ *     appended, so changes are written sequentially and in batches. When the cache is closed, the index is written to a separate file along with
+ *     the length of the log it covers. Opening the cache loads this index and then replays the records appended after it, for example by another
+ *     process or a process that crashed. Replaying stops at the first incomplete or damaged record, and the log is truncated there. As replaying
+ *     is cheap, the index is only written again once the records appended since it was last written make up a noticeable part of the log, so
+ *     that closing the cache does not rewrite the whole index each time the cache lock is released.
+ * </p>
+ * <p>
+ *     When most records in the log have been replaced or removed, the live records are copied to a new log when the cache is closed. The new log
+ *     replaces the old one by renaming it, and gets a new generation number, so that an index written for the old log is never used with it.
+ *     Compaction does not run on a background thread, as the files of a cache may only be accessed while holding its lock.
+ * </p>
+ * <p>
+ *     This cache is only used when enabled via the {@value #ENABLED_PROPERTY} system property.
+ * </p>
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements CloseablePersistentIndexedCache<K, V> {
+    public static final String ENABLED_PROPERTY = "org.gradle.cache.internal.logstructured";
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+
+    private static final int LOG_MAGIC = 0x47524C47;
+    private static final int INDEX_MAGIC = 0x47524958;
+    private static final int VERSION = 1;
+    private static final int INDEX_VERSION = 2;
+    private static final int LOG_HEADER_SIZE = 4 + 4 + 8; // magic, version, generation
+    private static final int RECORD_HEADER_SIZE = 4 + 4; // key length, value length
+    private static final int RECORD_TAIL_SIZE = 4; // checksum
+    private static final int REMOVED = -1;
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+    private static final long MIN_LOG_SIZE_FOR_COMPACTION = 1024 * 1024;
+    // The index is written when more than 1/8 of the log is not covered by it
+    private static final int MAX_UNINDEXED_FRACTION = 8;
+
+    private final File logFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Map<Key, Long> index = new HashMap<Key, Long>();
+    private final PendingRecords pending = new PendingRecords();
+    private RandomAccessFile file;
+    private long generation;
+    private long flushedLength;
+    // The length of the log covered by the index file, or 0 when the index file does not match the log
+    private long indexedLength;
+    private int recordCount;
+
+    public LogStructuredPersistentIndexedCache(File logFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.logFile = logFile;
+        this.indexFile = new File(logFile.getPath() + ".idx");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + logFile.getName() + " (" + logFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        logFile.getParentFile().mkdirs();
+        file = new RandomAccessFile(logFile, "rw");
+        long length = file.length();
+        if (!readLogHeader(length)) {
+            startNewLog();
+            return;
+        }
+        long replayFrom = loadIndex(length);
+        replay(replayFrom, length);
+    }
+
+    private boolean readLogHeader(long length) throws IOException {
+        if (length < LOG_HEADER_SIZE) {
+            return false;
+        }
+        file.seek(0);
+        if (file.readInt() != LOG_MAGIC || file.readInt() != VERSION) {
+            LOGGER.debug("{} has an unexpected format. Discarding.", this);
+            return false;
+        }
+        generation = file.readLong();
+        return true;
+    }
+
+    private void startNewLog() throws IOException {
+        index.clear();
+        recordCount = 0;
+        indexedLength = 0;
+        generation = new Random().nextLong();
+        file.setLength(0);
+        file.seek(0);
+        file.writeInt(LOG_MAGIC);
+        file.writeInt(VERSION);
+        file.writeLong(generation);
+        flushedLength = LOG_HEADER_SIZE;
+    }
+
+    /**
+     * Loads the index written when the log was last closed, if it belongs to the current log. Returns the position of the first record not covered by the index.
+     */
+    private long loadIndex(long length) {
+        if (!indexFile.isFile()) {
+            return LOG_HEADER_SIZE;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION || input.readLong() != generation) {
+                    return LOG_HEADER_SIZE;
+                }
+                long indexedLength = input.readLong();
+                if (indexedLength < LOG_HEADER_SIZE || indexedLength > length) {
+                    return LOG_HEADER_SIZE;
+                }
+                int indexedRecords = input.readInt();
+                int entries = input.readInt();
+                for (int i = 0; i < entries; i++) {
+                    byte[] key = new byte[input.readInt()];
+                    input.readFully(key);
+                    index.put(new Key(key), input.readLong());
+                }
+                recordCount = indexedRecords;
+                this.indexedLength = indexedLength;
+                return indexedLength;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read index of {}, replaying the whole log.", this, e);
+            index.clear();
+            recordCount = 0;
+            return LOG_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Replays the records in the given range of the log into the index, truncating the log at the first incomplete or damaged record.
+     */
+    private void replay(long from, long length) throws IOException {
+        file.seek(from);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new RandomAccessFileInputStream(file)));
+        long pos = from;
+        while (pos + RECORD_HEADER_SIZE + RECORD_TAIL_SIZE <= length) {
+            int keyLength = input.readInt();
+            int valueLength = input.readInt();
+            if (keyLength < 0 || valueLength < REMOVED) {
+                break;
+            }
+            long recordSize = recordSize(keyLength, valueLength);
+            if (pos + recordSize > length) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            input.readFully(key);
+            byte[] value = valueLength == REMOVED ? null : new byte[valueLength];
+            if (value != null) {
+                input.readFully(value);
+            }
+            if (input.readInt() != checksum(key, value)) {
+                break;
+            }
+            if (value == null) {
+                index.remove(new Key(key));
+            } else {
+                index.put(new Key(key), pos);
+            }
+            recordCount++;
+            pos += recordSize;
+        }
+        if (pos < length) {
+            LOGGER.debug("{} ends with an incomplete record. Discarding the end of the log.", this);
+            file.setLength(pos);
+        }
+        flushedLength = pos;
+    }
+
+    public V get(K key) {
+        try {
+            Key indexKey = new Key(serialize(keySerializer, key));
+            Long pos = index.get(indexKey);
+            if (pos == null) {
+                return null;
+            }
+            Record record = readRecord(pos);
+            if (record == null || !Arrays.equals(record.key, indexKey.bytes)) {
+                LOGGER.warn("{} contains a corrupt entry. Discarding it.", this);
+                index.remove(indexKey);
+                return null;
+            }
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(record.value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    public void put(K key, V value) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            long pos = append(keyBytes, serialize(valueSerializer, value));
+            index.put(new Key(keyBytes), pos);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    public void remove(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            if (index.remove(new Key(keyBytes)) != null) {
+                append(keyBytes, null);
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            try {
+                flushPending();
+                if (flushedLength > MIN_LOG_SIZE_FOR_COMPACTION && index.size() * 2 < recordCount) {
+                    compact();
+                }
+                if (indexedLength == 0 || (flushedLength - indexedLength) * MAX_UNINDEXED_FRACTION > flushedLength) {
+                    writeIndex();
+                }
+            } finally {
+                file.close();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not close %s.", this), e);
+        }
+    }
+
+    private long append(byte[] key, byte[] value) throws IOException {
+        long pos = flushedLength + pending.size();
+        DataOutputStream output = new DataOutputStream(pending);
+        output.writeInt(key.length);
+        output.writeInt(value == null ? REMOVED : value.length);
+        output.write(key);
+        if (value != null) {
+            output.write(value);
+        }
+        output.writeInt(checksum(key, value));
+        recordCount++;
+        if (pending.size() >= MAX_PENDING_BYTES) {
+            flushPending();
+        }
+        return pos;
+    }
+
+    private void flushPending() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        file.seek(flushedLength);
+        pending.writeTo(file);
+        flushedLength += pending.size();
+        pending.reset();
+    }
+
+    private Record readRecord(long pos) throws IOException {
+        if (pos >= flushedLength) {
+            flushPending();
+        }
+        if (pos + RECORD_HEADER_SIZE + RECORD_TAIL_SIZE > flushedLength) {
+            return null;
+        }
+        byte[] header = new byte[RECORD_HEADER_SIZE];
+        file.seek(pos);
+        file.readFully(header);
+        DataInputStream headerInput = new DataInputStream(new ByteArrayInputStream(header));
+        int keyLength = headerInput.readInt();
+        int valueLength = headerInput.readInt();
+        if (keyLength < 0 || valueLength < 0 || pos + recordSize(keyLength, valueLength) > flushedLength) {
+            return null;
+        }
+        byte[] body = new byte[(int) recordSize(keyLength, valueLength) - RECORD_HEADER_SIZE];
+        file.readFully(body);
+        DataInputStream bodyInput = new DataInputStream(new ByteArrayInputStream(body));
+        byte[] key = new byte[keyLength];
+        bodyInput.readFully(key);
+        byte[] value = new byte[valueLength];
+        bodyInput.readFully(value);
+        if (bodyInput.readInt() != checksum(key, value)) {
+            return null;
+        }
+        return new Record(key, value);
+    }
+
+    /**
+     * Copies the live records to a new log, which then replaces the current log.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}, {} of {} records are live.", this, index.size(), recordCount);
+        List<Map.Entry<Key, Long>> entries = new ArrayList<Map.Entry<Key, Long>>(index.entrySet());
+        // Read the log sequentially
+        Collections.sort(entries, new Comparator<Map.Entry<Key, Long>>() {
+            @Override
+            public int compare(Map.Entry<Key, Long> left, Map.Entry<Key, Long> right) {
+                return left.getValue().compareTo(right.getValue());
+            }
+        });
+
+        long newGeneration = new Random().nextLong();
+        Map<Key, Long> newIndex = new HashMap<Key, Long>(index.size() * 2);
+        File compactedFile = new File(logFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile)));
+        long pos = LOG_HEADER_SIZE;
+        try {
+            output.writeInt(LOG_MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(newGeneration);
+            for (Map.Entry<Key, Long> entry : entries) {
+                Record record = readRecord(entry.getValue());
+                if (record == null) {
+                    continue;
+                }
+                output.writeInt(record.key.length);
+                output.writeInt(record.value.length);
+                output.write(record.key);
+                output.write(record.value);
+                output.writeInt(checksum(record.key, record.value));
+                newIndex.put(entry.getKey(), pos);
+                pos += recordSize(record.key.length, record.value.length);
+            }
+        } finally {
+            output.close();
+        }
+
+        file.close();
+        if (!compactedFile.renameTo(logFile) && !(logFile.delete() && compactedFile.renameTo(logFile))) {
+            throw new IOException("Could not replace " + logFile + " with compacted log.");
+        }
+        file = new RandomAccessFile(logFile, "rw");
+        generation = newGeneration;
+        index.clear();
+        index.putAll(newIndex);
+        recordCount = index.size();
+        flushedLength = pos;
+        indexedLength = 0;
+    }
+
+    private void writeIndex() throws IOException {
+        File tmpIndexFile = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndexFile)));
+        try {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(INDEX_VERSION);
+            output.writeLong(generation);
+            output.writeLong(flushedLength);
+            output.writeInt(recordCount);
+            output.writeInt(index.size());
+            for (Map.Entry<Key, Long> entry : index.entrySet()) {
+                byte[] key = entry.getKey().bytes;
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeLong(entry.getValue());
+            }
+        } finally {
+            output.close();
+        }
+        if (!tmpIndexFile.renameTo(indexFile) && !(indexFile.delete() && tmpIndexFile.renameTo(indexFile))) {
+            LOGGER.debug("Could not write index of {}.", this);
+            return;
+        }
+        indexedLength = flushedLength;
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(output);
+        serializer.write(encoder, value);
+        encoder.flush();
+        return output.toByteArray();
+    }
+
+    private static int checksum(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        } else {
+            crc.update(REMOVED);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static long recordSize(int keyLength, int valueLength) {
+        return RECORD_HEADER_SIZE + (long) keyLength + Math.max(valueLength, 0) + RECORD_TAIL_SIZE;
+    }
+
+    /**
+     * A serialized key. The index holds the whole key rather than a hash of it, so that keys with the same hash never replace each other.
+     */
+    private static class Key {
+        final byte[] bytes;
+        final int hashCode;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(bytes, ((Key) obj).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class Record {
+        final byte[] key;
+        final byte[] value;
+
+        Record(byte[] key, byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static class PendingRecords extends ByteArrayOutputStream {
+        void writeTo(RandomAccessFile file) throws IOException {
+            file.write(buf, 0, count);
+        }
+    }
+}
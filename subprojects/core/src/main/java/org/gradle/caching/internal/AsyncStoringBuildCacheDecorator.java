@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.caching.BuildCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores cache entries in the background, so that uploading to a (remote) cache does not hold up the calling thread.
+ *
+ * <p>
+ *     The entry is packed into a temporary file on the calling thread, so that it always reflects the state of the outputs
+ *     at the time {@link #store(BuildCacheKey, BuildCacheEntryWriter)} was called. Only the transfer of the temporary file
+ *     to the delegate happens in the background. At most {@code maxPendingStores} entries can be queued, after which
+ *     {@code store()} blocks until a pending store has completed.
+ * </p>
+ * <p>
+ *     Failures of background stores never fail the build, they are reported when the pending stores are flushed via
+ *     {@link #flush()} or when the cache is closed. A {@link BuildCacheException} is expected to be logged by the delegate,
+ *     for example by a {@link LoggingBuildCacheDecorator}, so only other failures are logged as they happen. Failures while
+ *     packing the entry are thrown from {@code store()}, in the same way as when the entry is stored synchronously.
+ * </p>
+ */
+public class AsyncStoringBuildCacheDecorator implements BuildCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncStoringBuildCacheDecorator.class);
+
+    private final StoppableExecutor executor;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final BuildCache delegate;
+    private final int maxPendingStores;
+    private final Semaphore pendingStores;
+    private final AtomicInteger failedStores = new AtomicInteger();
+
+    public AsyncStoringBuildCacheDecorator(StoppableExecutor executor, TemporaryFileProvider temporaryFileProvider, int maxPendingStores, BuildCache delegate) {
+        if (maxPendingStores < 1) {
+            throw new IllegalArgumentException("Maximum number of pending stores must be at least 1, but was " + maxPendingStores);
+        }
+        this.executor = executor;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.delegate = delegate;
+        this.maxPendingStores = maxPendingStores;
+        this.pendingStores = new Semaphore(maxPendingStores);
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        return delegate.load(key, reader);
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        final File entryFile = temporaryFileProvider.createTemporaryFile("build-cache-entry", ".bin");
+        try {
+            writeEntry(writer, entryFile);
+        } catch (RuntimeException e) {
+            deleteEntry(entryFile);
+            throw e;
+        }
+
+        pendingStores.acquireUninterruptibly();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        delegate.store(key, new BuildCacheEntryWriter() {
+                            @Override
+                            public void writeTo(OutputStream output) {
+                                try {
+                                    InputStream input = new FileInputStream(entryFile);
+                                    try {
+                                        ByteStreams.copy(input, output);
+                                    } finally {
+                                        input.close();
+                                    }
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }
+                        });
+                    } catch (BuildCacheException e) {
+                        // Reported by the delegate already
+                        failedStores.incrementAndGet();
+                        LOGGER.debug("Could not store cache entry for cache key {} in {}", key, getDescription(), e);
+                    } catch (Exception e) {
+                        failedStores.incrementAndGet();
+                        LOGGER.warn("Could not store cache entry for cache key {} in {}", key, getDescription(), e);
+                    } finally {
+                        deleteEntry(entryFile);
+                        pendingStores.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            deleteEntry(entryFile);
+            pendingStores.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until all pending stores have completed, and reports stores that have failed since the last flush.
+     */
+    public void flush() {
+        pendingStores.acquireUninterruptibly(maxPendingStores);
+        pendingStores.release(maxPendingStores);
+        int failures = failedStores.getAndSet(0);
+        if (failures > 0) {
+            LOGGER.warn("{} entries could not be stored in {}.", failures, getDescription());
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            executor.stop();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    private static void writeEntry(BuildCacheEntryWriter writer, File entryFile) {
+        try {
+            Closer closer = Closer.create();
+            OutputStream output = closer.register(new FileOutputStream(entryFile));
+            try {
+                writer.writeTo(output);
+            } finally {
+                closer.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteEntry(File entryFile) {
+        if (!entryFile.delete() && entryFile.exists()) {
+            LOGGER.debug("Could not delete temporary build cache entry {}", entryFile);
+        }
+    }
+}
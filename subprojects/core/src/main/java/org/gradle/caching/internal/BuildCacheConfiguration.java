@@ -31,11 +31,13 @@ public interface BuildCacheConfiguration {
     /**
      * Use the default local directory cache. The cache directory path defaults to {@code $GRADLE_HOME/task-cache}.
      * It can also be overridden via the {@code org.gradle.cache.tasks.directory} system property.
+     * Least recently used entries are removed when the cache grows beyond the size in megabytes given by the
+     * {@code org.gradle.cache.tasks.directory.targetSize} system property, which defaults to 5 GB. A target size of {@code 0} disables clean up.
      */
     void useLocalCache();
 
     /**
-     * Use a local directory cache in the given directory.
+     * Use a local directory cache in the given directory. The cache is cleaned up the same way as the default local directory cache.
      */
     void useLocalCache(File directory);
 
@@ -43,4 +45,12 @@ public interface BuildCacheConfiguration {
      * Use the give build cache factory.
      */
     void useCacheFactory(BuildCacheFactory factory);
+
+    /**
+     * Use the default local directory cache in front of the build cache created by the given factory.
+     *
+     * <p>Entries are loaded from the local cache first. Entries only found in the remote cache are copied to the local cache.
+     * New entries are stored in both caches. Stores to the remote cache can be made asynchronous via the {@code org.gradle.cache.tasks.push.async} system property.</p>
+     */
+    void useLocalCacheInFrontOf(BuildCacheFactory remoteFactory);
 }
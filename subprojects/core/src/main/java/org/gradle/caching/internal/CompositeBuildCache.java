@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BuildCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A build cache that puts a local cache in front of a remote cache.
+ *
+ * <p>
+ *     Entries are loaded from the local cache if possible. When an entry is only found in the remote cache, it is copied into
+ *     the local cache first, so that subsequent loads of the same entry do not need to go to the remote cache again. If the
+ *     local cache cannot store the entry, it is loaded from the remote cache again instead.
+ * </p>
+ * <p>
+ *     Entries are stored in both caches. The entry is written to the local cache first, and the remote cache receives a copy
+ *     of the local entry, so that the task outputs only need to be packed once.
+ * </p>
+ */
+public class CompositeBuildCache implements BuildCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeBuildCache.class);
+
+    private final BuildCache local;
+    private final BuildCache remote;
+
+    public CompositeBuildCache(BuildCache local, BuildCache remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
+    @Override
+    public boolean load(final BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        if (local.load(key, reader)) {
+            return true;
+        }
+        final AtomicBoolean storedLocally = new AtomicBoolean();
+        boolean foundRemotely = remote.load(key, new BuildCacheEntryReader() {
+            @Override
+            public void readFrom(final InputStream input) {
+                try {
+                    local.store(key, new BuildCacheEntryWriter() {
+                        @Override
+                        public void writeTo(OutputStream output) {
+                            copy(input, output);
+                        }
+                    });
+                    storedLocally.set(true);
+                } catch (RuntimeException e) {
+                    // Do not lose the remote hit because the local cache is broken
+                    LOGGER.warn("Could not store cache entry for cache key {} in {}", key, local.getDescription(), e);
+                }
+            }
+        });
+        if (!foundRemotely) {
+            return false;
+        }
+        // The local cache may have failed to store the entry, so read it from the remote cache directly in that case
+        return (storedLocally.get() && local.load(key, reader)) || remote.load(key, reader);
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, final BuildCacheEntryWriter writer) throws BuildCacheException {
+        local.store(key, writer);
+        remote.store(key, new BuildCacheEntryWriter() {
+            @Override
+            public void writeTo(final OutputStream output) {
+                boolean copied = local.load(key, new BuildCacheEntryReader() {
+                    @Override
+                    public void readFrom(InputStream input) {
+                        copy(input, output);
+                    }
+                });
+                if (!copied) {
+                    writer.writeTo(output);
+                }
+            }
+        });
+    }
+
+    @Override
+    public String getDescription() {
+        return local.getDescription() + " backed by " + remote.getDescription();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Closer closer = Closer.create();
+        closer.register(remote);
+        closer.register(local);
+        closer.close();
+    }
+
+    private static void copy(InputStream input, OutputStream output) {
+        try {
+            ByteStreams.copy(input, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
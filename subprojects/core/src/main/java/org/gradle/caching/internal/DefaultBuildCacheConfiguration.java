@@ -17,27 +17,59 @@
 package org.gradle.caching.internal;
 
 import org.gradle.StartParameter;
+import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.cache.CacheRepository;
 import org.gradle.caching.BuildCache;
+import org.gradle.initialization.BuildCompletionListener;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.Stoppable;
 
 import java.io.File;
 
-public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationInternal, Stoppable {
+public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationInternal, BuildCompletionListener, Stoppable {
+    private static final int MAX_PENDING_ASYNC_STORES = 64;
+    private static final int ASYNC_STORE_THREADS = 4;
+    private static final String TARGET_SIZE_PROPERTY = "org.gradle.cache.tasks.directory.targetSize";
+
     private final boolean pullAllowed;
     private final boolean pushAllowed;
+    private final boolean asyncPush;
     private final CacheRepository cacheRepository;
+    private final ExecutorFactory executorFactory;
+    private final TemporaryFileProvider temporaryFileProvider;
     private final StartParameter startParameter;
+    private final long localCacheTargetSizeInMB;
     private BuildCacheFactory factory;
+    private boolean factoryStoresAsynchronously;
     private BuildCache cache;
+    private AsyncStoringBuildCacheDecorator asyncStoringCache;
 
-    public DefaultBuildCacheConfiguration(CacheRepository cacheRepository, StartParameter startParameter) {
+    public DefaultBuildCacheConfiguration(CacheRepository cacheRepository, ExecutorFactory executorFactory, TemporaryFileProvider temporaryFileProvider, StartParameter startParameter) {
         this.cacheRepository = cacheRepository;
+        this.executorFactory = executorFactory;
+        this.temporaryFileProvider = temporaryFileProvider;
         this.startParameter = startParameter;
+        this.localCacheTargetSizeInMB = parseTargetSize(System.getProperty(TARGET_SIZE_PROPERTY));
         useLocalCache();
         this.pullAllowed = "true".equalsIgnoreCase(System.getProperty("org.gradle.cache.tasks.pull", "true").trim());
         this.pushAllowed = "true".equalsIgnoreCase(System.getProperty("org.gradle.cache.tasks.push", "true").trim());
+        this.asyncPush = "true".equalsIgnoreCase(System.getProperty("org.gradle.cache.tasks.push.async", "false").trim());
+    }
+
+    private static long parseTargetSize(String value) {
+        if (value == null) {
+            return LocalDirectoryBuildCache.DEFAULT_TARGET_SIZE_IN_MB;
+        }
+        try {
+            long targetSize = Long.parseLong(value.trim());
+            if (targetSize >= 0) {
+                return targetSize;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(String.format("Value '%s' given for %s system property is invalid (must be a non-negative integer, the size in MB)", value, TARGET_SIZE_PROPERTY));
     }
 
     @Override
@@ -45,10 +77,7 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
         setFactory(new BuildCacheFactory() {
             @Override
             public BuildCache createCache(StartParameter startParameter) {
-                String cacheDirectoryPath = System.getProperty("org.gradle.cache.tasks.directory");
-                return cacheDirectoryPath != null
-                    ? new LocalDirectoryBuildCache(cacheRepository, new File(cacheDirectoryPath))
-                    : new LocalDirectoryBuildCache(cacheRepository, "task-cache");
+                return createDefaultLocalCache();
             }
         });
     }
@@ -58,7 +87,7 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
         setFactory(new BuildCacheFactory() {
             @Override
             public BuildCache createCache(StartParameter startParameter) {
-                return new LocalDirectoryBuildCache(cacheRepository, directory);
+                return new LocalDirectoryBuildCache(cacheRepository, directory, localCacheTargetSizeInMB);
             }
         });
     }
@@ -68,22 +97,70 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
         setFactory(factory);
     }
 
-    private void setFactory(final BuildCacheFactory factory) {
+    @Override
+    public void useLocalCacheInFrontOf(final BuildCacheFactory remoteFactory) {
+        setFactory(new BuildCacheFactory() {
+            @Override
+            public BuildCache createCache(StartParameter startParameter) {
+                // Failures of the remote cache should not disable the local cache.
+                // Only stores to the remote cache are slow enough to be worth running in the background.
+                BuildCache remote = decorate(remoteFactory.createCache(startParameter), asyncPush);
+                return new CompositeBuildCache(createDefaultLocalCache(), remote);
+            }
+        }, true);
+    }
+
+    private BuildCache createDefaultLocalCache() {
+        String cacheDirectoryPath = System.getProperty("org.gradle.cache.tasks.directory");
+        return cacheDirectoryPath != null
+            ? new LocalDirectoryBuildCache(cacheRepository, new File(cacheDirectoryPath), localCacheTargetSizeInMB)
+            : new LocalDirectoryBuildCache(cacheRepository, "task-cache", localCacheTargetSizeInMB);
+    }
+
+    private void setFactory(BuildCacheFactory factory) {
+        setFactory(factory, false);
+    }
+
+    /**
+     * @param storesAsynchronously whether the caches created by the factory already take care of storing entries asynchronously.
+     */
+    private void setFactory(BuildCacheFactory factory, boolean storesAsynchronously) {
         this.factory = factory;
+        this.factoryStoresAsynchronously = storesAsynchronously;
     }
 
     @Override
     public BuildCache getCache() {
         // TODO:LPTR Instantiate this as a service instead
         if (cache == null) {
-            this.cache = new LenientBuildCacheDecorator(
-                new ShortCircuitingErrorHandlerBuildCacheWrapper(3,
-                    new LoggingBuildCacheDecorator(
-                        factory.createCache(startParameter))));
+            cache = decorate(factory.createCache(startParameter), asyncPush && !factoryStoresAsynchronously);
         }
         return cache;
     }
 
+    private BuildCache decorate(BuildCache cache, boolean storeAsynchronously) {
+        BuildCache decorated = new ShortCircuitingErrorHandlerBuildCacheWrapper(3,
+            new LoggingBuildCacheDecorator(cache));
+        if (storeAsynchronously) {
+            // Wrapped by the lenient decorator, so that failed background stores reach the decorator and are counted
+            asyncStoringCache = new AsyncStoringBuildCacheDecorator(
+                executorFactory.create("Build cache store", ASYNC_STORE_THREADS),
+                temporaryFileProvider,
+                MAX_PENDING_ASYNC_STORES,
+                decorated);
+            decorated = asyncStoringCache;
+        }
+        return new LenientBuildCacheDecorator(decorated);
+    }
+
+    @Override
+    public void completed() {
+        // Make sure all entries from this build have been stored before the build finishes
+        if (asyncStoringCache != null) {
+            asyncStoringCache.flush();
+        }
+    }
+
     @Override
     public boolean isPullAllowed() {
         return pullAllowed;
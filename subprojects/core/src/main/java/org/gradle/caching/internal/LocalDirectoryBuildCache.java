@@ -16,8 +16,12 @@
 
 package org.gradle.caching.internal;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Closer;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
@@ -27,32 +31,72 @@ import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.internal.Factory;
+import org.gradle.util.GFileUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.gradle.cache.internal.FileLockManager.LockMode.None;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
+/**
+ * A build cache that stores entries as files in a local directory.
+ *
+ * <p>Entries are written to a temporary file first and then moved into place, so that a partially written entry is never visible to {@link #load(BuildCacheKey, BuildCacheEntryReader)}.
+ * The timestamp of an entry is updated whenever it is loaded, and entries are evicted in least-recently-used order when the cache is closed and its size exceeds the target size.
+ * Listing the whole cache directory is too slow to do at the end of every build, so the cache is cleaned up at most once a day, which is recorded in a marker file in the cache directory.</p>
+ */
 public class LocalDirectoryBuildCache implements BuildCache {
+    public static final long DEFAULT_TARGET_SIZE_IN_MB = 5 * 1024;
+
+    private static final Logger LOGGER = Logging.getLogger(LocalDirectoryBuildCache.class);
+    private static final String TEMP_FILE_SUFFIX = ".part";
+    private static final long STALE_TEMP_FILE_AGE = TimeUnit.HOURS.toMillis(1);
+    private static final String CLEANUP_MARKER = "gc.properties";
+    private static final long CLEANUP_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
     private final PersistentCache persistentCache;
+    private final long targetSizeInBytes;
 
     public LocalDirectoryBuildCache(CacheRepository cacheRepository, File directory) {
-        this(cacheRepository.cache(checkDirectory(directory)));
+        this(cacheRepository, directory, DEFAULT_TARGET_SIZE_IN_MB);
     }
 
     public LocalDirectoryBuildCache(CacheRepository cacheRepository, String cacheKey) {
-        this(cacheRepository.cache(cacheKey));
+        this(cacheRepository, cacheKey, DEFAULT_TARGET_SIZE_IN_MB);
     }
 
-    private LocalDirectoryBuildCache(CacheBuilder cacheBuilder) {
+    /**
+     * Creates a cache in the given directory that is cleaned up to the given size when closed, at most once a day. A target size of {@code 0} disables clean up.
+     */
+    public LocalDirectoryBuildCache(CacheRepository cacheRepository, File directory, long targetSizeInMB) {
+        this(cacheRepository.cache(checkDirectory(directory)), targetSizeInMB);
+    }
+
+    /**
+     * Creates a cache with the given key that is cleaned up to the given size when closed, at most once a day. A target size of {@code 0} disables clean up.
+     */
+    public LocalDirectoryBuildCache(CacheRepository cacheRepository, String cacheKey, long targetSizeInMB) {
+        this(cacheRepository.cache(cacheKey), targetSizeInMB);
+    }
+
+    private LocalDirectoryBuildCache(CacheBuilder cacheBuilder, long targetSizeInMB) {
+        if (targetSizeInMB < 0) {
+            throw new IllegalArgumentException(String.format("Target size of the build cache must not be negative, but was %d MB", targetSizeInMB));
+        }
         this.persistentCache = cacheBuilder
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .open();
+        this.targetSizeInBytes = targetSizeInMB * 1024 * 1024;
     }
 
     private static File checkDirectory(File directory) {
@@ -86,13 +130,15 @@ public class LocalDirectoryBuildCache implements BuildCache {
                         FileInputStream stream = closer.register(new FileInputStream(file));
                         try {
                             reader.readFrom(stream);
-                            return true;
                         } finally {
                             closer.close();
                         }
                     } catch (IOException ex) {
                         throw new UncheckedIOException(ex);
                     }
+                    // Mark the entry as recently used, so it is evicted last
+                    file.setLastModified(System.currentTimeMillis());
+                    return true;
                 }
                 return false;
             }
@@ -104,22 +150,125 @@ public class LocalDirectoryBuildCache implements BuildCache {
         persistentCache.useCache("store build cache entry", new Runnable() {
             @Override
             public void run() {
-                File file = getFile(key.getHashCode());
+                String hashCode = key.getHashCode();
+                File file = getFile(hashCode);
+                File tempFile;
                 try {
-                    Closer closer = Closer.create();
-                    OutputStream output = closer.register(new FileOutputStream(file));
-                    try {
-                        result.writeTo(output);
-                    } finally {
-                        closer.close();
-                    }
+                    tempFile = File.createTempFile(hashCode + "-", TEMP_FILE_SUFFIX, persistentCache.getBaseDir());
                 } catch (IOException ex) {
                     throw new UncheckedIOException(ex);
                 }
+                try {
+                    try {
+                        Closer closer = Closer.create();
+                        OutputStream output = closer.register(new FileOutputStream(tempFile));
+                        try {
+                            result.writeTo(output);
+                        } finally {
+                            closer.close();
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    moveIntoPlace(tempFile, file);
+                } finally {
+                    if (tempFile.exists() && !tempFile.delete()) {
+                        LOGGER.debug("Could not delete temporary build cache file {}", tempFile);
+                    }
+                }
+            }
+        });
+    }
+
+    private static void moveIntoPlace(File tempFile, File file) {
+        if (tempFile.renameTo(file)) {
+            return;
+        }
+        // Some file systems do not allow replacing an existing file via a rename
+        if (file.isFile() && file.delete() && tempFile.renameTo(file)) {
+            return;
+        }
+        // Another process may have stored the same entry in the meantime, in which case its contents are identical
+        if (!file.isFile()) {
+            throw new UncheckedIOException(String.format("Could not move temporary build cache file %s to %s", tempFile, file));
+        }
+    }
+
+    private void cleanup() {
+        persistentCache.useCache("clean up build cache", new Runnable() {
+            @Override
+            public void run() {
+                File marker = new File(persistentCache.getBaseDir(), CLEANUP_MARKER);
+                long now = System.currentTimeMillis();
+                if (marker.lastModified() + CLEANUP_INTERVAL > now) {
+                    // Cleaned up recently, possibly by another build
+                    return;
+                }
+                GFileUtils.touch(marker);
+                File[] files = persistentCache.getBaseDir().listFiles();
+                if (files == null) {
+                    return;
+                }
+                List<File> entries = Lists.newArrayListWithCapacity(files.length);
+                // Read each timestamp once, as sorting compares every entry several times
+                final Map<File, Long> lastModified = Maps.newHashMapWithExpectedSize(files.length);
+                long totalSize = 0;
+                for (File file : files) {
+                    if (!file.isFile()) {
+                        continue;
+                    }
+                    String name = file.getName();
+                    if (name.endsWith(TEMP_FILE_SUFFIX)) {
+                        // Left behind by a build that was killed while storing an entry
+                        if (now - file.lastModified() > STALE_TEMP_FILE_AGE) {
+                            deleteEntry(file);
+                        }
+                        continue;
+                    }
+                    if (name.indexOf('.') >= 0) {
+                        // Cache properties, clean up marker and lock files
+                        continue;
+                    }
+                    entries.add(file);
+                    lastModified.put(file, file.lastModified());
+                    totalSize += file.length();
+                }
+                if (totalSize <= targetSizeInBytes) {
+                    return;
+                }
+                // Least recently used first
+                Collections.sort(entries, new Comparator<File>() {
+                    @Override
+                    public int compare(File o1, File o2) {
+                        long timestamp1 = lastModified.get(o1);
+                        long timestamp2 = lastModified.get(o2);
+                        return timestamp1 < timestamp2 ? -1 : (timestamp1 == timestamp2 ? 0 : 1);
+                    }
+                });
+                int removedEntries = 0;
+                for (File entry : entries) {
+                    if (totalSize <= targetSizeInBytes) {
+                        break;
+                    }
+                    long length = entry.length();
+                    if (deleteEntry(entry)) {
+                        totalSize -= length;
+                        removedEntries++;
+                    }
+                }
+                LOGGER.info("Removed {} entries from {}", removedEntries, getDescription());
             }
         });
     }
 
+    private static boolean deleteEntry(File file) {
+        if (file.delete()) {
+            return true;
+        }
+        LOGGER.debug("Could not delete build cache entry {}", file);
+        return false;
+    }
+
     private File getFile(String key) {
         return new File(persistentCache.getBaseDir(), key);
     }
@@ -131,6 +280,12 @@ public class LocalDirectoryBuildCache implements BuildCache {
 
     @Override
     public void close() throws IOException {
-        persistentCache.close();
+        try {
+            if (targetSizeInBytes > 0) {
+                cleanup();
+            }
+        } finally {
+            persistentCache.close();
+        }
     }
 }
@@ -20,8 +20,10 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.*;
+import com.google.common.primitives.Longs;
 import org.gradle.api.*;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
 import org.gradle.api.logging.Logger;
@@ -50,6 +52,8 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static org.gradle.internal.time.Clock.prettyTime;
+
 /**
  * A reusable implementation of TaskExecutionPlan. The {@link #addToTaskGraph(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these
  * methods.
@@ -66,7 +70,20 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskDependencyGraph graph = new TaskDependencyGraph();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final Map<TaskInfo, Integer> planPositions = Maps.newHashMap();
+    private final Map<TaskInfo, Long> criticalPathLengths = Maps.newHashMap();
+    private final SetMultimap<TaskInfo, TaskInfo> dependents = HashMultimap.create();
+    private final TreeSet<TaskInfo> runnableTasks = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        @Override
+        public int compare(TaskInfo first, TaskInfo second) {
+            int result = Longs.compare(criticalPathLength(second), criticalPathLength(first));
+            if (result != 0) {
+                return result;
+            }
+            return planPositions.get(first).compareTo(planPositions.get(second));
+        }
+    });
+    private int tasksWaitingToStart;
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
 
@@ -307,8 +324,82 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
-        executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        scheduleExecutionPlan();
+    }
+
+    /**
+     * Prepares the bookkeeping that lets workers pick the next task without scanning the whole plan. Every task that has not started
+     * yet is counted, and the tasks whose dependencies are all complete are kept in plan order. When a task completes, only the tasks
+     * that depend on it or must run after it are checked again.
+     */
+    private void scheduleExecutionPlan() {
+        planPositions.clear();
+        dependents.clear();
+        int position = 0;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            planPositions.put(taskInfo, position++);
+            for (TaskInfo dependency : Iterables.concat(taskInfo.getMustSuccessors(), taskInfo.getDependencySuccessors())) {
+                dependents.put(dependency, taskInfo);
+            }
+        }
+        rescheduleAllTasks();
+    }
+
+    /**
+     * Prefers tasks with the longest chain of work depending on them, estimated from the durations of previous executions, over tasks that come first in the plan.
+     * Tasks without a previous execution are estimated to take no time, so the plan order is used when there is no history at all.
+     */
+    public void prioritiseCriticalPath(TaskDurationHistory durationHistory) {
+        lock.lock();
+        try {
+            runnableTasks.clear();
+            criticalPathLengths.clear();
+            List<TaskInfo> tasksInReverseOrder = new ArrayList<TaskInfo>(executionPlan.values());
+            Collections.reverse(tasksInReverseOrder);
+            long longestPath = 0;
+            for (TaskInfo taskInfo : tasksInReverseOrder) {
+                Long duration = durationHistory.getPreviousDuration(taskInfo.getTask());
+                long longestDependentPath = 0;
+                for (TaskInfo dependent : dependents.get(taskInfo)) {
+                    longestDependentPath = Math.max(longestDependentPath, criticalPathLength(dependent));
+                }
+                long pathLength = (duration == null ? 0 : duration) + longestDependentPath;
+                criticalPathLengths.put(taskInfo, pathLength);
+                longestPath = Math.max(longestPath, pathLength);
+            }
+            LOGGER.info("Prioritising tasks by their critical path, the longest path is estimated to take {}.", prettyTime(longestPath));
+            rescheduleAllTasks();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long criticalPathLength(TaskInfo taskInfo) {
+        Long length = criticalPathLengths.get(taskInfo);
+        return length == null ? 0 : length;
+    }
+
+    private void rescheduleAllTasks() {
+        runnableTasks.clear();
+        tasksWaitingToStart = 0;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            if (taskInfo.isReady()) {
+                tasksWaitingToStart++;
+                maybeMakeRunnable(taskInfo);
+            }
+        }
+    }
+
+    private void maybeMakeRunnable(TaskInfo taskInfo) {
+        if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && planPositions.containsKey(taskInfo)) {
+            runnableTasks.add(taskInfo);
+        }
+    }
+
+    private void dependencyComplete(TaskInfo taskInfo) {
+        for (TaskInfo dependent : dependents.get(taskInfo)) {
+            maybeMakeRunnable(dependent);
+        }
     }
 
     private void maybeRemoveProcessedShouldRunAfterEdge(Stack<GraphEdge> walkedShouldRunAfterEdges, TaskInfo taskNode) {
@@ -451,7 +542,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             graph.clear();
             entryTasks.clear();
             executionPlan.clear();
-            executionQueue.clear();
+            runnableTasks.clear();
+            planPositions.clear();
+            criticalPathLengths.clear();
+            dependents.clear();
+            tasksWaitingToStart = 0;
             failures.clear();
             projectsWithRunningTasks.clear();
             projectsWithRunningNonParallelizableTasks.clear();
@@ -484,21 +579,22 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         tasksCancelled = true;
                     }
                 }
+                if (tasksWaitingToStart == 0) {
+                    return null;
+                }
                 TaskInfo nextMatching = null;
-                boolean allTasksComplete = true;
-                Iterator<TaskInfo> iterator = executionQueue.iterator();
+                Iterator<TaskInfo> iterator = runnableTasks.iterator();
                 while (iterator.hasNext()) {
                     TaskInfo taskInfo = iterator.next();
-                    allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
+                    if (!taskInfo.isReady() || !taskInfo.allDependenciesComplete()) {
+                        // A dependency has been enforced since this task became runnable. The task becomes runnable again when the dependency completes
+                        iterator.remove();
+                    } else if (canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
                         nextMatching = taskInfo;
                         iterator.remove();
                         break;
                     }
                 }
-                if (allTasksComplete) {
-                    return null;
-                }
                 if (nextMatching == null) {
                     try {
                         condition.await();
@@ -506,12 +602,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         throw new RuntimeException(e);
                     }
                 } else {
+                    tasksWaitingToStart--;
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
                         recordTaskStarted(nextMatching);
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
+                        dependencyComplete(nextMatching);
                         condition.signalAll();
                     }
                 }
@@ -661,6 +759,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
             taskInfo.finishExecution();
             recordTaskCompleted(taskInfo);
+            dependencyComplete(taskInfo);
             condition.signalAll();
         } finally {
             lock.unlock();
@@ -687,7 +786,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 candidateNodes.addAll(node.getDependencySuccessors());
 
                 if (node.isMustNotRun() || node.isRequired()) {
+                    if (node.isMustNotRun() && planPositions.containsKey(node)) {
+                        tasksWaitingToStart++;
+                    }
                     node.enforceRun();
+                    maybeMakeRunnable(node);
                 }
             }
         }
@@ -722,6 +825,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 aborted = true;
             }
         }
+        if (aborted) {
+            rescheduleAllTasks();
+        }
         return aborted;
     }
 
@@ -757,12 +863,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean allTasksComplete() {
-        for (TaskInfo taskInfo : executionPlan.values()) {
-            if (!taskInfo.isComplete()) {
-                return false;
-            }
-        }
-        return true;
+        return tasksWaitingToStart == 0 && runningTasks.isEmpty();
     }
 
     private static class GraphEdge {
@@ -18,6 +18,7 @@ package org.gradle.execution.taskgraph;
 
 import groovy.lang.Closure;
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionAdapter;
 import org.gradle.api.execution.TaskExecutionGraph;
@@ -27,6 +28,7 @@ import org.gradle.api.execution.internal.InternalTaskExecutionListener;
 import org.gradle.api.execution.internal.TaskOperationDescriptor;
 import org.gradle.api.execution.internal.TaskOperationInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.internal.tasks.execution.DefaultTaskExecutionContext;
@@ -68,11 +70,24 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final InternalTaskExecutionListener internalTaskListener;
     private final DefaultTaskExecutionPlan taskExecutionPlan;
     private final BuildOperationExecutor buildOperationExecutor;
+    // Lazy for the same reason as the task executer
+    private final Factory<? extends TaskDurationHistory> taskDurationHistory;
+    private final boolean prioritiseCriticalPath;
     private TaskGraphState taskGraphState = TaskGraphState.EMPTY;
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor) {
+        this(listenerManager, taskPlanExecutor, taskExecuter, null, false, cancellationToken, buildOperationExecutor);
+    }
+
+    /**
+     * @param taskDurationHistory records how long tasks take, if not null.
+     * @param prioritiseCriticalPath whether tasks are prioritised by their critical path according to the recorded durations. Only useful when tasks are executed in parallel.
+     */
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, @Nullable Factory<? extends TaskDurationHistory> taskDurationHistory, boolean prioritiseCriticalPath, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor) {
         this.taskPlanExecutor = taskPlanExecutor;
         this.taskExecuter = taskExecuter;
+        this.taskDurationHistory = taskDurationHistory;
+        this.prioritiseCriticalPath = prioritiseCriticalPath;
         this.buildOperationExecutor = buildOperationExecutor;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
@@ -110,7 +125,11 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
 
         graphListeners.getSource().graphPopulated(this);
         try {
-            taskPlanExecutor.process(taskExecutionPlan, new EventFiringTaskWorker(taskExecuter.create(), buildOperationExecutor.getCurrentOperation()));
+            TaskDurationHistory durationHistory = taskDurationHistory == null ? null : taskDurationHistory.create();
+            if (durationHistory != null && prioritiseCriticalPath) {
+                taskExecutionPlan.prioritiseCriticalPath(durationHistory);
+            }
+            taskPlanExecutor.process(taskExecutionPlan, new EventFiringTaskWorker(taskExecuter.create(), durationHistory, buildOperationExecutor.getCurrentOperation()));
             LOGGER.debug("Timing: Executing the DAG took " + clock.getElapsed());
         } finally {
             taskExecutionPlan.clear();
@@ -214,10 +233,12 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
      */
     private class EventFiringTaskWorker implements Action<TaskInternal> {
         private final TaskExecuter taskExecuter;
+        private final TaskDurationHistory durationHistory;
         private final BuildOperationExecutor.Operation parentOperation;
 
-        EventFiringTaskWorker(TaskExecuter taskExecuter, BuildOperationExecutor.Operation parentOperation) {
+        EventFiringTaskWorker(TaskExecuter taskExecuter, @Nullable TaskDurationHistory durationHistory, BuildOperationExecutor.Operation parentOperation) {
             this.taskExecuter = taskExecuter;
+            this.durationHistory = durationHistory;
             this.parentOperation = parentOperation;
         }
 
@@ -233,12 +254,21 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                     internalTaskListener.beforeExecute(legacyOperation, new OperationStartEvent(0));
                     TaskStateInternal state = task.getState();
                     taskListeners.getSource().beforeExecute(task);
+                    Timer timer = Timers.startTimer();
                     taskExecuter.execute(task, state, new DefaultTaskExecutionContext());
+                    recordDuration(task, state, timer.getElapsedMillis());
                     taskListeners.getSource().afterExecute(task, state);
                     buildOperationContext.failed(state.getFailure());
                     internalTaskListener.afterExecute(legacyOperation, new OperationResult(0, 0, state.getFailure()));
                 }
             });
         }
+
+        private void recordDuration(TaskInternal task, TaskStateInternal state, long durationMillis) {
+            // Only actual executions tell how long the task takes when it needs to do its work
+            if (durationHistory != null && !state.getSkipped() && state.getFailure() == null) {
+                durationHistory.recordDuration(task, durationMillis);
+            }
+        }
     }
 }
@@ -23,6 +23,7 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.logging.StandardOutputListener;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.caching.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.internal.tasks.TaskExecutionStatisticsEventAdapter;
 import org.gradle.configuration.BuildConfigurer;
 import org.gradle.deployment.internal.DeploymentRegistry;
@@ -131,6 +132,7 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
         }
 
         if (startParameter.isTaskOutputCacheEnabled()) {
+            listenerManager.addListener(sessionScopeServices.get(BuildCacheConfigurationInternal.class));
             listenerManager.addListener(serviceRegistry.get(TaskExecutionStatisticsEventAdapter.class));
             listenerManager.addListener(new CacheStatisticsReporter(serviceRegistry.get(StyledTextOutputFactory.class)));
         }
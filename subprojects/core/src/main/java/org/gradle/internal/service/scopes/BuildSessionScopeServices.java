@@ -111,8 +111,8 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
         return new WorkerProcessClassPathProvider(cacheRepository);
     }
 
-    BuildCacheConfigurationInternal createBuildCacheConfiguration(CacheRepository cacheRepository, StartParameter startParameter) {
-        return new DefaultBuildCacheConfiguration(cacheRepository, startParameter);
+    BuildCacheConfigurationInternal createBuildCacheConfiguration(CacheRepository cacheRepository, ExecutorFactory executorFactory, TemporaryFileProvider temporaryFileProvider, StartParameter startParameter) {
+        return new DefaultBuildCacheConfiguration(cacheRepository, executorFactory, temporaryFileProvider, startParameter);
     }
 
     GeneratedGradleJarCache createGeneratedGradleJarCache(CacheRepository cacheRepository) {
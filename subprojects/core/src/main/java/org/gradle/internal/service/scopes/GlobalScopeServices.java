@@ -31,6 +31,7 @@ import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
 import org.gradle.api.internal.changedetection.state.ShortLivedProcessInMemoryTaskArtifactCache;
+import org.gradle.api.internal.changedetection.state.WatchedFileHashCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
@@ -375,6 +376,10 @@ public class GlobalScopeServices {
         return new DefaultFileWatcherFactory(executorFactory, fileSystem);
     }
 
+    WatchedFileHashCache createWatchedFileHashCache(FileWatcherFactory fileWatcherFactory) {
+        return new WatchedFileHashCache(fileWatcherFactory);
+    }
+
     StringInterner createStringInterner() {
         return new StringInterner();
     }
@@ -24,6 +24,7 @@ import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.DefaultTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.ShortCircuitTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.CacheBackedFileSnapshotRepository;
+import org.gradle.api.internal.changedetection.state.CacheBackedTaskDurationHistory;
 import org.gradle.api.internal.changedetection.state.CacheBackedTaskHistoryRepository;
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.ClasspathSnapshotter;
@@ -34,14 +35,19 @@ import org.gradle.api.internal.changedetection.state.DefaultTaskHistoryStore;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshot;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotterRegistry;
+import org.gradle.api.internal.changedetection.state.FileSystemMirror;
 import org.gradle.api.internal.changedetection.state.GenericFileCollectionSnapshotter;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
 import org.gradle.api.internal.changedetection.state.OutputFilesSnapshotter;
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory;
 import org.gradle.api.internal.changedetection.state.TaskHistoryRepository;
 import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
+import org.gradle.api.internal.changedetection.state.WatchedFileHashCache;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.hash.DefaultFileHasher;
+import org.gradle.api.internal.hash.FileHashingAlgorithm;
+import org.gradle.api.internal.hash.ParallelFileHasher;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.execution.CatchExceptionTaskExecuter;
@@ -116,6 +122,7 @@ public class TaskExecutionServices {
                                             createVerifyNoInputChangesExecuterIfNecessary(
                                                 startParameter,
                                                 repository,
+                                                taskOutputsGenerationListener,
                                                 new ExecuteActionsTaskExecuter(
                                                     taskOutputsGenerationListener,
                                                     listenerManager.getBroadcaster(TaskActionListener.class)
@@ -140,9 +147,9 @@ public class TaskExecutionServices {
         }
     }
 
-    private static TaskExecuter createVerifyNoInputChangesExecuterIfNecessary(StartParameter startParameter, TaskArtifactStateRepository repository, TaskExecuter delegate) {
+    private static TaskExecuter createVerifyNoInputChangesExecuterIfNecessary(StartParameter startParameter, TaskArtifactStateRepository repository, TaskOutputsGenerationListener taskOutputsGenerationListener, TaskExecuter delegate) {
         if (Boolean.getBoolean("org.gradle.tasks.verifyinputs")) {
-            return new VerifyNoInputChangesTaskExecuter(repository, delegate);
+            return new VerifyNoInputChangesTaskExecuter(repository, taskOutputsGenerationListener, delegate);
         } else {
             return delegate;
         }
@@ -152,18 +159,35 @@ public class TaskExecutionServices {
         return new DefaultTaskHistoryStore(gradle, cacheRepository, inMemoryTaskArtifactCache);
     }
 
-    CachingFileHasher createFileSnapshotter(TaskHistoryStore cacheAccess, StringInterner stringInterner) {
-        return new CachingFileHasher(new DefaultFileHasher(), cacheAccess, stringInterner);
+    TaskDurationHistory createTaskDurationHistory(TaskHistoryStore cacheAccess) {
+        return new CacheBackedTaskDurationHistory(cacheAccess);
     }
 
-    GenericFileCollectionSnapshotter createGenericFileCollectionSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, ListenerManager listenerManager) {
-        DefaultGenericFileCollectionSnapshotter snapshotter = new DefaultGenericFileCollectionSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory);
+    CachingFileHasher createFileSnapshotter(TaskHistoryStore cacheAccess, StringInterner stringInterner, WatchedFileHashCache watchedFileHashCache) {
+        FileHashingAlgorithm algorithm = FileHashingAlgorithm.fromSystemProperties();
+        if (WatchedFileHashCache.isEnabled()) {
+            watchedFileHashCache.beginBuild(algorithm);
+            return new CachingFileHasher(new DefaultFileHasher(algorithm), cacheAccess, stringInterner, watchedFileHashCache);
+        }
+        return new CachingFileHasher(new DefaultFileHasher(algorithm), cacheAccess, stringInterner);
+    }
+
+    ParallelFileHasher createParallelFileHasher(ExecutorFactory executorFactory, StartParameter startParameter) {
+        return new ParallelFileHasher(executorFactory, startParameter.getMaxWorkerCount());
+    }
+
+    FileSystemMirror createFileSystemMirror() {
+        return new FileSystemMirror();
+    }
+
+    GenericFileCollectionSnapshotter createGenericFileCollectionSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, ListenerManager listenerManager) {
+        DefaultGenericFileCollectionSnapshotter snapshotter = new DefaultGenericFileCollectionSnapshotter(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
         listenerManager.addListener(snapshotter);
         return snapshotter;
     }
 
-    ClasspathSnapshotter createClasspathSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, ListenerManager listenerManager) {
-        DefaultClasspathSnapshotter snapshotter = new DefaultClasspathSnapshotter(hasher, stringInterner, fileSystem, directoryFileTreeFactory);
+    ClasspathSnapshotter createClasspathSnapshotter(FileHasher hasher, ParallelFileHasher parallelFileHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, ListenerManager listenerManager) {
+        DefaultClasspathSnapshotter snapshotter = new DefaultClasspathSnapshotter(hasher, parallelFileHasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
         listenerManager.addListener(snapshotter);
         return snapshotter;
     }
@@ -357,6 +357,7 @@ public class DefaultTaskArtifactStateRepositoryTest extends AbstractProjectBuild
         when:
         TaskArtifactState state = repository.getStateFor(task1)
         state.isUpToDate([])
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
         outputDirFile.createFile()
         state.afterTask()
 
@@ -374,6 +375,7 @@ public class DefaultTaskArtifactStateRepositoryTest extends AbstractProjectBuild
         !state.isUpToDate([])
 
         when:
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
         outputDirFile2.createFile()
         state.afterTask()
 
@@ -486,10 +488,12 @@ public class DefaultTaskArtifactStateRepositoryTest extends AbstractProjectBuild
         !state.isUpToDate([])
 
         when:
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
         task.execute()
         otherFile.write("new content")
         state.afterTask()
         otherFile.delete()
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
 
         then:
         def stateAfter = repository.getStateFor(task)
@@ -508,6 +512,7 @@ public class DefaultTaskArtifactStateRepositoryTest extends AbstractProjectBuild
 
         when:
         outputDirFile.write("ignore me")
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
 
         then:
         def stateAfter = repository.getStateFor(task)
@@ -569,12 +574,16 @@ public class DefaultTaskArtifactStateRepositoryTest extends AbstractProjectBuild
     }
 
     private void outOfDate(TaskInternal task) {
+        // reset state
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
         final state = repository.getStateFor(task)
         assert !state.isUpToDate([])
         assert !state.inputChanges.incremental
     }
 
     def inputsOutOfDate(TaskInternal task) {
+        // reset state
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
         final state = repository.getStateFor(task)
         assert !state.isUpToDate([])
 
@@ -607,6 +616,8 @@ public class DefaultTaskArtifactStateRepositoryTest extends AbstractProjectBuild
     }
 
     private void upToDate(TaskInternal task) {
+        // reset state
+        fileCollectionSnapshotter.beforeTaskOutputsGenerated()
         final state = repository.getStateFor(task)
         assert state.isUpToDate([])
     }
@@ -17,12 +17,17 @@ package org.gradle.api.internal.changedetection.state
 
 import com.google.common.collect.Iterators
 import org.gradle.api.file.FileCollection
+import org.gradle.api.file.FileVisitor
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.changedetection.rules.ChangeType
 import org.gradle.api.internal.changedetection.rules.FileChange
 import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.FileTreeAdapter
 import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.hash.DefaultFileHasher
+import org.gradle.api.internal.hash.ParallelFileHasher
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.ChangeListener
@@ -180,6 +185,7 @@ public class AbstractFileCollectionSnapshotterTest extends Specification {
 
         when:
         FileCollectionSnapshot snapshot = snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE)
+        snapshotter.beforeTaskOutputsGenerated([file])
         file.delete()
         file.createDir()
         changes(snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE), snapshot, listener)
@@ -221,6 +227,7 @@ public class AbstractFileCollectionSnapshotterTest extends Specification {
 
         when:
         FileCollectionSnapshot snapshot = snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE)
+        snapshotter.beforeTaskOutputsGenerated([dir])
         dir.deleteDir()
         dir.createFile()
         changes(snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE), snapshot, listener)
@@ -248,6 +255,7 @@ public class AbstractFileCollectionSnapshotterTest extends Specification {
 
         when:
         FileCollectionSnapshot snapshot = snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE)
+        snapshotter.beforeTaskOutputsGenerated([file])
         file.createFile()
         changes(snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE), snapshot, listener)
 
@@ -262,6 +270,7 @@ public class AbstractFileCollectionSnapshotterTest extends Specification {
 
         when:
         FileCollectionSnapshot snapshot = snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE)
+        snapshotter.beforeTaskOutputsGenerated([file])
         file.delete()
         changes(snapshotter.snapshot(fileCollection, UNORDERED, ABSOLUTE), snapshot, listener)
 
@@ -325,6 +334,77 @@ public class AbstractFileCollectionSnapshotterTest extends Specification {
         0 * listener._
     }
 
+    def "reuses directory trees until outputs overlapping with them are generated"() {
+        def root = tmpDir.createDir('root')
+        def dir = root.createDir('dir')
+        def other = tmpDir.createDir('other')
+        dir.createFile('file')
+
+        given:
+        def snapshot = snapshotter.snapshot(files(root), UNORDERED, ABSOLUTE)
+
+        when:
+        def added = dir.createFile('added')
+        snapshotter.beforeTaskOutputsGenerated([other])
+        changes(snapshotter.snapshot(files(root), UNORDERED, ABSOLUTE), snapshot, listener)
+
+        then:
+        0 * listener._
+
+        when:
+        snapshotter.beforeTaskOutputsGenerated([dir])
+        changes(snapshotter.snapshot(files(root), UNORDERED, ABSOLUTE), snapshot, listener)
+
+        then:
+        1 * listener.added(added.absolutePath)
+        0 * listener._
+    }
+
+    def "applies patterns to a directory tree that has been walked before in the same way as walking it"() {
+        def dir = tmpDir.createDir('dir')
+        dir.createFile('a.txt')
+        dir.createFile('b.class')
+        dir.createFile('sub/c.txt')
+        dir.createFile('skipped/d.txt')
+        dir.createFile('skipped/nested/e.txt')
+        def patterns = new PatternSet().include('*.txt', 'sub/**')
+        def directoryTree = TestFiles.directoryFileTreeFactory().create(dir, patterns)
+        def walked = []
+        directoryTree.visit({ walked << it.file.absolutePath } as FileVisitor)
+
+        when:
+        snapshotter.snapshot(files(dir), ORDERED, ABSOLUTE)
+        def snapshot = snapshotter.snapshot(new FileTreeAdapter(directoryTree), ORDERED, ABSOLUTE)
+
+        then:
+        snapshot.files as Set == [dir.file('a.txt'), dir.file('sub/c.txt')] as Set
+        snapshot.snapshots.keySet() as List == walked
+    }
+
+    def "hashing files in parallel produces the same snapshot as hashing them sequentially"() {
+        given:
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelSnapshotter = new AbstractFileCollectionSnapshotter(new DefaultFileHasher(), new ParallelFileHasher(executorFactory, 4), stringInterner, TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory()) {
+            @Override
+            Class<? extends FileCollectionSnapshotter> getRegisteredType() {
+                FileCollectionSnapshotter
+            }
+        }
+        def dir = tmpDir.createDir('dir')
+        def contents = (1..500).collect { dir.createFile("sub${it % 7}/file$it") << "content $it" }
+
+        when:
+        def sequential = snapshotter.snapshot(files(dir, contents[3], contents[42]), ORDERED, ABSOLUTE)
+        def parallel = parallelSnapshotter.snapshot(files(dir, contents[3], contents[42]), ORDERED, ABSOLUTE)
+
+        then:
+        parallel.snapshots.keySet() as List == sequential.snapshots.keySet() as List
+        parallel.snapshots.keySet().every { path -> parallel.snapshots[path].snapshot.isContentAndMetadataUpToDate(sequential.snapshots[path].snapshot) }
+
+        cleanup:
+        executorFactory.stop()
+    }
+
     private static void changes(FileCollectionSnapshot newSnapshot, FileCollectionSnapshot oldSnapshot, ChangeListener<String> listener) {
         newSnapshot.iterateContentChangesSince(oldSnapshot, "TYPE").each { FileChange change ->
             switch (change.type) {
@@ -18,9 +18,15 @@ package org.gradle.api.internal.changedetection.state
 
 import com.google.common.base.Charsets
 import com.google.common.hash.Hashing
+import org.gradle.api.file.FileTreeElement
 import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.hash.DefaultFileHasher
 import org.gradle.api.internal.hash.FileHasher
+import org.gradle.api.internal.hash.FileHashingAlgorithm
+import org.gradle.api.internal.hash.ParallelFileHasher
 import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.internal.MapBackedInMemoryStore
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.resource.TextResource
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -30,7 +36,9 @@ import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
 class CachingFileHasherTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
-    def target = Mock(FileHasher)
+    def target = Mock(FileHasher) {
+        getAlgorithm() >> FileHashingAlgorithm.MD5
+    }
     def cache = Mock(PersistentIndexedCache)
     def cacheAccess = Mock(TaskHistoryStore)
     def hash = Hashing.md5().hashString("hello", Charsets.UTF_8)
@@ -43,6 +51,42 @@ class CachingFileHasherTest extends Specification {
         hasher = new CachingFileHasher(target, cacheAccess, new StringInterner());
     }
 
+    def keepsHashesOfOtherAlgorithmsInSeparateCache() {
+        def murmurHasher = Mock(FileHasher) {
+            getAlgorithm() >> FileHashingAlgorithm.MURMUR3
+        }
+
+        when:
+        new CachingFileHasher(murmurHasher, cacheAccess, new StringInterner())
+
+        then:
+        1 * cacheAccess.createCache("fileHashes-murmur3", _, _) >> cache
+    }
+
+    def canHashFilesFromMultipleThreads() {
+        def delegate = Spy(DefaultFileHasher)
+        def hasher = new CachingFileHasher(delegate, new MapBackedInMemoryStore(), new StringInterner())
+        def parallelHasher = new ParallelFileHasher(new DefaultExecutorFactory(), 8)
+        def files = (0..<ParallelFileHasher.MIN_FILES_FOR_PARALLEL_HASHING * 4).collect { index ->
+            def file = tmpDir.createFile("files/file-$index")
+            file.text = "content-${index % 10}"
+            element(file)
+        }
+        def expected = files.collect { new DefaultFileHasher().hash(it.file) }
+
+        when:
+        def hashed = parallelHasher.hash(hasher, files)
+        def cached = parallelHasher.hash(hasher, files + files.reverse())
+
+        then:
+        hashed == expected
+        cached == expected + expected.reverse()
+        files.size() * delegate.hash(_ as File)
+
+        cleanup:
+        parallelHasher.stop()
+    }
+
     def hashesFileWhenHashNotCached() {
         when:
         def result = hasher.hash(file)
@@ -138,4 +182,12 @@ class CachingFileHasherTest extends Specification {
         1 * target.hash(resource) >> hash
         0 * _._
     }
+
+    private FileTreeElement element(File file) {
+        Stub(FileTreeElement) {
+            getFile() >> file
+            getSize() >> file.length()
+            getLastModified() >> file.lastModified()
+        }
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class CompactInMemoryStoreTest extends Specification {
+    def packer = new ValuePacker<Long>() {
+        @Override
+        int getSize() {
+            return 1
+        }
+
+        @Override
+        boolean pack(Long value, long[] target, int offset) {
+            if (value < 0) {
+                return false
+            }
+            target[offset] = value
+            return true
+        }
+
+        @Override
+        Long unpack(long[] source, int offset) {
+            return source[offset]
+        }
+    }
+    def loader = Mock(Factory)
+    def store = new CompactInMemoryStore<Long>(packer, 1000)
+
+    def "loads value once"() {
+        when:
+        def first = store.get("key", loader)
+        def second = store.get("key", loader)
+
+        then:
+        first == 12
+        second == 12
+        1 * loader.create() >> 12L
+    }
+
+    def "keeps absent value"() {
+        when:
+        def first = store.get("key", loader)
+        def second = store.get("key", loader)
+
+        then:
+        first == null
+        second == null
+        1 * loader.create() >> null
+    }
+
+    def "uses value that was put"() {
+        when:
+        store.put("key", 1L)
+        store.put("key", 2L)
+        store.put("other", null)
+
+        then:
+        store.get("key", loader) == 2
+        store.get("other", loader) == null
+        store.size() == 2
+        0 * loader._
+    }
+
+    def "loads value again when it cannot be packed"() {
+        given:
+        store.put("key", 1L)
+
+        when:
+        store.put("key", -1L)
+        def result = store.get("key", loader)
+
+        then:
+        result == 3
+        1 * loader.create() >> 3L
+    }
+
+    def "does not keep loaded value when the key is updated while loading"() {
+        when:
+        def result = store.get("key", loader)
+
+        then:
+        result == 1
+        1 * loader.create() >> {
+            store.put("key", 2L)
+            1L
+        }
+
+        when:
+        result = store.get("key", loader)
+
+        then:
+        result == 2
+        0 * loader._
+    }
+
+    def "loads values again after invalidation"() {
+        given:
+        store.put("key", 1L)
+
+        when:
+        store.invalidateAll()
+        def result = store.get("key", loader)
+
+        then:
+        result == 4
+        store.size() == 1
+        1 * loader.create() >> 4L
+    }
+
+    def "evicts entries when full and keeps entries that are still used"() {
+        given:
+        def maxSize = 16 * 4
+        def store = new CompactInMemoryStore<Long>(packer, maxSize)
+
+        when:
+        (0..<10000).each { index ->
+            store.put("key-$index".toString(), index as Long)
+            // Keep using the first key
+            assert store.get("key-0", loader) == 0
+        }
+
+        then:
+        store.size() <= maxSize
+        store.get("key-9999", loader) == 9999
+        0 * loader._
+    }
+
+    def "is consistent with a map after many random updates"() {
+        given:
+        def store = new CompactInMemoryStore<Long>(packer, 100)
+        def values = [:]
+        def random = new Random(42)
+
+        expect:
+        100000.times {
+            def key = "key-${random.nextInt(500)}".toString()
+            if (random.nextInt(3) == 0) {
+                def value = random.nextInt(10) == 0 ? null : random.nextInt(100) - 5L
+                values[key] = value
+                store.put(key, value)
+            } else {
+                assert store.get(key, { values[key] } as Factory) == values[key]
+            }
+        }
+    }
+}
@@ -62,4 +62,55 @@ class DefaultFileCollectionSnapshotSerializerTest extends SerializerSpec {
         then:
         out.snapshots.keySet() as List == ['/3', '/2', '/1']
     }
+
+    def "reads and writes all kinds of normalized snapshots"() {
+        when:
+        def hash = Hashing.md5().hashString("foo", Charsets.UTF_8)
+        DefaultFileCollectionSnapshot out = serialize(new DefaultFileCollectionSnapshot([
+            "/dir": new NonNormalizedFileSnapshot("/dir", DirSnapshot.getInstance()),
+            "/dir/file": new IndexedNormalizedFileSnapshot("/dir/file", 5, new FileHashSnapshot(hash)),
+            "/dir/other": new DefaultNormalizedFileSnapshot("dir/other", MissingFileSnapshot.getInstance()),
+            "/dir/renamed": new DefaultNormalizedFileSnapshot("unrelated", new FileHashSnapshot(hash)),
+            "/elsewhere": new IgnoredPathFileSnapshot(new FileHashSnapshot(hash))
+        ], ORDERED, false), serializer)
+
+        then:
+        out.snapshots.keySet() as List == ['/dir', '/dir/file', '/dir/other', '/dir/renamed', '/elsewhere']
+        out.snapshots['/dir'] instanceof NonNormalizedFileSnapshot
+        out.snapshots['/dir'].normalizedPath == "/dir"
+        out.snapshots['/dir/file'] instanceof IndexedNormalizedFileSnapshot
+        out.snapshots['/dir/file'].normalizedPath == "file"
+        out.snapshots['/dir/file'].snapshot.hash == hash
+        out.snapshots['/dir/other'].normalizedPath == "dir/other"
+        out.snapshots['/dir/renamed'].normalizedPath == "unrelated"
+        out.snapshots['/elsewhere'] instanceof IgnoredPathFileSnapshot
+        out.snapshots['/elsewhere'].snapshot.hash == hash
+        !out.pathIsAbsolute
+    }
+
+    def "writes snapshot that has been read without decoding it"() {
+        given:
+        def hash = Hashing.md5().hashString("foo", Charsets.UTF_8)
+        def original = new DefaultFileCollectionSnapshot([
+            "/1": new DefaultNormalizedFileSnapshot("1", new FileHashSnapshot(hash))
+        ], UNORDERED, true)
+        def serializedOnce = toBytes(original, serializer)
+
+        when:
+        DefaultFileCollectionSnapshot read = fromBytes(serializedOnce, serializer)
+        def serializedTwice = toBytes(read, serializer)
+
+        then:
+        !read.empty
+        read.hash == original.hash
+        read.encodedSnapshots != null
+        serializedTwice == serializedOnce
+
+        when:
+        def snapshots = read.snapshots
+
+        then:
+        snapshots.keySet() == ["/1"] as Set
+        read.encodedSnapshots == null
+    }
 }
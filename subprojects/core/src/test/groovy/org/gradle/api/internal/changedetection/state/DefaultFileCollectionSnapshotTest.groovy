@@ -82,4 +82,26 @@ class DefaultFileCollectionSnapshotTest extends Specification {
         1 * builder.putBytes(HashCode.fromInt(123).asBytes())
         0 * _
     }
+
+    def "snapshots with the same contents have the same hash"() {
+        def snapshot = new DefaultFileCollectionSnapshot([
+            "/dir/file1.txt": new DefaultNormalizedFileSnapshot("file1.txt", new FileHashSnapshot(HashCode.fromInt(123))),
+            "/dir/file2.txt": new DefaultNormalizedFileSnapshot("file2.txt", new FileHashSnapshot(HashCode.fromInt(234))),
+        ], UNORDERED, false)
+        def reordered = new DefaultFileCollectionSnapshot([
+            "/other/file2.txt": new DefaultNormalizedFileSnapshot("file2.txt", new FileHashSnapshot(HashCode.fromInt(234))),
+            "/other/file1.txt": new DefaultNormalizedFileSnapshot("file1.txt", new FileHashSnapshot(HashCode.fromInt(123))),
+        ], UNORDERED, false)
+        def changed = new DefaultFileCollectionSnapshot([
+            "/dir/file1.txt": new DefaultNormalizedFileSnapshot("file1.txt", new FileHashSnapshot(HashCode.fromInt(123))),
+            "/dir/file2.txt": new DefaultNormalizedFileSnapshot("file2.txt", new FileHashSnapshot(HashCode.fromInt(345))),
+        ], UNORDERED, false)
+
+        expect:
+        snapshot.hash == reordered.hash
+        !snapshot.iterateContentChangesSince(reordered, "Input").hasNext()
+        snapshot.hash != changed.hash
+        changed.iterateContentChangesSince(snapshot, "Input").next().message == "Input file /dir/file2.txt has changed."
+        snapshot.hash != new DefaultFileCollectionSnapshot(reordered.snapshots, ORDERED, false).hash
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import com.google.common.hash.HashCode
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
 import org.gradle.cache.internal.AsyncCacheAccess
 import org.gradle.cache.internal.CrossProcessCacheAccess
 import org.gradle.cache.internal.MultiProcessSafePersistentIndexedCache
@@ -160,4 +162,33 @@ class InMemoryTaskArtifactCacheTest extends Specification {
         0 * target._
     }
 
+    def "keeps file hashes in compact in-memory cache"() {
+        def lock = Mock(Runnable)
+        def hash = HashCode.fromBytes((0..<16).collect { it as byte } as byte[])
+
+        given:
+        def cache = cacheFactory.decorate("path/fileHashes-murmur3.bin", "fileHashes-murmur3", target, crossProcessCacheAccess, asyncCacheAccess)
+
+        when:
+        cache.put("file", new FileInfo(hash, 12, 34))
+
+        then:
+        1 * crossProcessCacheAccess.acquireFileLock() >> lock
+        1 * asyncCacheAccess.enqueue(_) >> { Runnable action -> action.run() }
+        1 * target.put("file", _)
+        1 * lock.run()
+        0 * _._
+
+        when:
+        def result = cache.get("file")
+
+        then:
+        result.hash == hash
+        result.length == 12
+        result.timestamp == 34
+
+        and:
+        1 * crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        0 * target._
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import com.google.common.hash.HashCode
+import org.gradle.api.Action
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
+import org.gradle.api.internal.hash.FileHashingAlgorithm
+import org.gradle.internal.Factory
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class WatchedFileHashCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def watcher = Mock(FileWatcher)
+    def fileWatcherFactory = Mock(FileWatcherFactory)
+    def cache = new WatchedFileHashCache(fileWatcherFactory)
+    def dir = tmpDir.createDir("dir")
+    def file = dir.createFile("file")
+    def info = new FileInfo(HashCode.fromInt(1), 1, 1)
+    def snapshotter = Mock(Factory)
+    FileWatcherListener listener
+
+    def setup() {
+        fileWatcherFactory.watch(_, _) >> { Action onError, FileWatcherListener listener ->
+            this.listener = listener
+            watcher
+        }
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+    }
+
+    def "trusts hash of watched file until it changes"() {
+        when:
+        def first = cache.get(file, snapshotter)
+        def second = cache.get(file, snapshotter)
+
+        then:
+        first == info
+        second == info
+        1 * watcher.watch({ it.contains(file) })
+        1 * snapshotter.create() >> info
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.modify(file))
+        cache.get(file, snapshotter)
+
+        then:
+        1 * snapshotter.create() >> info
+        0 * watcher._
+    }
+
+    def "does not watch directories below a watched directory again"() {
+        def nested = dir.createFile("nested/file")
+        watch()
+
+        when:
+        cache.get(nested, snapshotter)
+        cache.get(nested, snapshotter)
+
+        then:
+        1 * snapshotter.create() >> info
+        0 * watcher.watch(_)
+    }
+
+    def "discards all hashes when events were lost"() {
+        def other = dir.createFile("other")
+        watch()
+        cache.get(other, { info } as Factory)
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.undefined())
+        cache.get(other, snapshotter)
+
+        then:
+        1 * watcher.stop()
+        1 * snapshotter.create() >> info
+    }
+
+    def "discards all hashes when a directory changed without notice between builds"() {
+        watch()
+
+        when:
+        dir.lastModified = dir.lastModified() - 10000
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+        cache.get(file, snapshotter)
+
+        then:
+        1 * watcher.stop()
+        1 * snapshotter.create() >> info
+    }
+
+    def "keeps trusting hashes when other files are added to a directory"() {
+        watch()
+        def added = dir.createFile("added")
+        dir.lastModified = dir.lastModified() + 10000
+
+        when:
+        listener.onChange(watcher, FileWatcherEvent.create(added))
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+        def result = cache.get(file, snapshotter)
+
+        then:
+        result == info
+        0 * snapshotter.create()
+        0 * watcher.stop()
+    }
+
+    def "does not trust hash when file changes while it is hashed"() {
+        watch()
+        def other = dir.createFile("other")
+
+        when:
+        cache.get(other, snapshotter)
+        cache.get(other, snapshotter)
+
+        then:
+        1 * snapshotter.create() >> {
+            listener.onChange(watcher, FileWatcherEvent.modify(other))
+            info
+        }
+        1 * snapshotter.create() >> info
+    }
+
+    def "discards all hashes when hashing algorithm changes"() {
+        watch()
+
+        when:
+        cache.beginBuild(FileHashingAlgorithm.MURMUR3)
+        cache.get(file, snapshotter)
+
+        then:
+        1 * watcher.stop()
+        1 * snapshotter.create() >> info
+    }
+
+    def "discards hashes of least recently used directories when too many hashes are kept"() {
+        def cache = new WatchedFileHashCache(fileWatcherFactory, 2, 10)
+        def a = tmpDir.createFile("a/file")
+        def b = tmpDir.createFile("b/file")
+        def c = tmpDir.createFile("c/file")
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+
+        when:
+        [a, b, c].each { cache.get(it, { info } as Factory) }
+        cache.get(c, snapshotter)
+        cache.get(b, snapshotter)
+        cache.get(a, snapshotter)
+
+        then:
+        1 * snapshotter.create() >> info
+        0 * watcher.stop()
+    }
+
+    def "does not watch more directories than allowed and stops watching unused ones at the start of the next build"() {
+        def cache = new WatchedFileHashCache(fileWatcherFactory, 10, 2)
+        def a = tmpDir.createFile("a/file")
+        def b = tmpDir.createFile("b/file")
+        def c = tmpDir.createFile("c/file")
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+
+        when:
+        [a, b].each { cache.get(it, { info } as Factory) }
+        cache.get(c, snapshotter)
+        cache.get(c, snapshotter)
+
+        then:
+        2 * snapshotter.create() >> info
+        0 * watcher.watch({ it.contains(c) })
+
+        when:
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+        cache.get(a, snapshotter)
+
+        then:
+        0 * snapshotter.create()
+        0 * watcher.stop()
+
+        when:
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+        cache.get(c, snapshotter)
+        cache.get(c, snapshotter)
+
+        then:
+        1 * watcher.stop()
+        1 * watcher.watch({ it.contains(c) })
+        1 * snapshotter.create() >> info
+    }
+
+    def "counts the directories below a watched directory towards the limit"() {
+        def cache = new WatchedFileHashCache(fileWatcherFactory, 10, 3)
+        def parent = tmpDir.createFile("parent/file")
+        def nested = tmpDir.createFile("parent/a/file")
+        tmpDir.createDir("parent/b")
+        tmpDir.createDir("parent/c")
+        cache.beginBuild(FileHashingAlgorithm.MD5)
+
+        when:
+        cache.get(parent, snapshotter)
+        cache.get(parent, snapshotter)
+
+        then:
+        2 * snapshotter.create() >> info
+        0 * watcher.watch(_)
+
+        when:
+        cache.get(nested, snapshotter)
+        cache.get(nested, snapshotter)
+
+        then:
+        1 * snapshotter.create() >> info
+        1 * watcher.watch({ it.contains(nested) })
+    }
+
+    private void watch() {
+        cache.get(file, { info } as Factory)
+    }
+}
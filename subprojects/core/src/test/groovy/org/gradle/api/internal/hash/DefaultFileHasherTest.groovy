@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.base.Charsets
+import com.google.common.hash.Hashing
+import org.gradle.api.InvalidUserDataException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DefaultFileHasherTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    @Rule SetSystemProperties systemProperties = new SetSystemProperties()
+
+    def "MD5 hashes are compatible with previous versions"() {
+        def file = tmpDir.file("file.txt")
+        file.text = "some content"
+        def expected = Hashing.md5().newHasher()
+            .putBytes(Hashing.md5().hashString(DefaultFileHasher.name, Charsets.UTF_8).asBytes())
+            .putBytes(file.bytes)
+            .hash()
+
+        expect:
+        new DefaultFileHasher().hash(file) == expected
+    }
+
+    @Unroll
+    def "hashes files of size #size with #algorithm"() {
+        def file = tmpDir.file("file.bin")
+        def contents = new byte[size]
+        new Random(size).nextBytes(contents)
+        file.bytes = contents
+        def hasher = new DefaultFileHasher(algorithm)
+        def copy = tmpDir.file("copy.bin")
+        copy.bytes = contents
+
+        when:
+        def hash = hasher.hash(file)
+
+        then:
+        hash.bits() == 128
+        hash == hasher.hash(copy)
+
+        where:
+        [algorithm, size] << [FileHashingAlgorithm.values(), [0, 1, 1000, 64 * 1024, 200 * 1024 + 17]].combinations()
+    }
+
+    @Unroll
+    def "hashes content the same way as a file with that content using #algorithm"() {
+        def file = tmpDir.file("file.bin")
+        def contents = new byte[1000]
+        new Random(1000).nextBytes(contents)
+        file.bytes = contents
+        def hasher = new DefaultFileHasher(algorithm)
+
+        expect:
+        hasher.hash(contents) == hasher.hash(file)
+
+        where:
+        algorithm << FileHashingAlgorithm.values()
+    }
+
+    def "different algorithms produce different hashes for the same content"() {
+        def file = tmpDir.file("file.txt")
+        file.text = "some content"
+
+        expect:
+        new DefaultFileHasher(FileHashingAlgorithm.MD5).hash(file) != new DefaultFileHasher(FileHashingAlgorithm.MURMUR3).hash(file)
+    }
+
+    def "selects algorithm via system property"() {
+        expect:
+        FileHashingAlgorithm.fromSystemProperties() == FileHashingAlgorithm.MD5
+
+        when:
+        System.setProperty(FileHashingAlgorithm.SYSTEM_PROPERTY, "murmur3")
+
+        then:
+        FileHashingAlgorithm.fromSystemProperties() == FileHashingAlgorithm.MURMUR3
+
+        when:
+        System.setProperty(FileHashingAlgorithm.SYSTEM_PROPERTY, "unknown")
+        FileHashingAlgorithm.fromSystemProperties()
+
+        then:
+        def e = thrown(InvalidUserDataException)
+        e.message.startsWith("Unknown file hashing algorithm 'unknown'")
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.hash.HashCode
+import org.gradle.api.file.FileTreeElement
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+class ParallelFileHasherTest extends ConcurrentSpec {
+    def hasher = Mock(FileHasher)
+
+    def "hashes small batches on calling thread"() {
+        def executorFactory = Mock(ExecutorFactory)
+        def parallelHasher = new ParallelFileHasher(executorFactory, 4)
+        def files = elements(ParallelFileHasher.MIN_FILES_FOR_PARALLEL_HASHING - 1)
+        def callingThread = Thread.currentThread()
+
+        when:
+        def hashes = parallelHasher.hash(hasher, files)
+
+        then:
+        hashes == files.collect { hashOf(it) }
+        files.size() * hasher.hash(_ as FileTreeElement) >> { FileTreeElement element ->
+            assert Thread.currentThread() == callingThread
+            hashOf(element)
+        }
+        0 * executorFactory._
+    }
+
+    def "hashes large batches using workers and keeps order of files"() {
+        def parallelHasher = new ParallelFileHasher(executorFactory, 4)
+        def files = elements(ParallelFileHasher.MIN_FILES_FOR_PARALLEL_HASHING * 4 + 7)
+        def threads = Collections.synchronizedSet(new HashSet<Thread>())
+        hasher.hash(_ as FileTreeElement) >> { FileTreeElement element ->
+            threads << Thread.currentThread()
+            hashOf(element)
+        }
+
+        when:
+        def hashes = parallelHasher.hash(hasher, files)
+
+        then:
+        hashes == files.collect { hashOf(it) }
+        !threads.contains(Thread.currentThread())
+
+        cleanup:
+        parallelHasher.stop()
+    }
+
+    def "propagates failure to hash a file"() {
+        def parallelHasher = new ParallelFileHasher(executorFactory, 4)
+        def files = elements(ParallelFileHasher.MIN_FILES_FOR_PARALLEL_HASHING)
+        def failure = new RuntimeException("broken")
+        hasher.hash(_ as FileTreeElement) >> { FileTreeElement element ->
+            if (element.path == "file-100") {
+                throw failure
+            }
+            hashOf(element)
+        }
+
+        when:
+        parallelHasher.hash(hasher, files)
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure
+
+        cleanup:
+        parallelHasher.stop()
+    }
+
+    private List<FileTreeElement> elements(int count) {
+        (0..<count).collect { index ->
+            Stub(FileTreeElement) {
+                getPath() >> "file-$index".toString()
+            }
+        }
+    }
+
+    private static HashCode hashOf(FileTreeElement element) {
+        HashCode.fromInt(element.path.hashCode())
+    }
+}
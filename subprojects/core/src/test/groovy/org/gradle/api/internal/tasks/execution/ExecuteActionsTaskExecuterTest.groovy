@@ -17,6 +17,8 @@ package org.gradle.api.internal.tasks.execution
 
 import org.gradle.api.execution.TaskActionListener
 import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.ContextAwareTaskAction
 import org.gradle.api.internal.tasks.TaskExecutionContext
@@ -33,6 +35,7 @@ import static java.util.Collections.emptyList
 
 public class ExecuteActionsTaskExecuterTest extends Specification {
     private final TaskInternal task = Mock(TaskInternal);
+    private final TaskOutputsInternal outputs = Mock(TaskOutputsInternal)
     private final ContextAwareTaskAction action1 = Mock(ContextAwareTaskAction)
     private final ContextAwareTaskAction action2 = Mock(ContextAwareTaskAction)
     private final TaskStateInternal state = new TaskStateInternal("<task>")
@@ -49,6 +52,7 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         task.getState() >> state
         project.getBuildScriptSource() >> scriptSource
         task.getStandardOutputCapture() >> standardOutputCapture
+        task.getOutputs() >> outputs
     }
 
     void noMoreInteractions() {
@@ -225,6 +229,41 @@ public class ExecuteActionsTaskExecuterTest extends Specification {
         noMoreInteractions()
     }
 
+    def notifiesListenerOfOutputRootsWhenCacheableTaskDeclaresOutputs() {
+        given:
+        def outputFiles = new SimpleFileCollection(new File("out"))
+        task.getTaskActions() >> [action1]
+        outputs.hasDeclaredOutputs() >> true
+        outputs.isCacheAllowed() >> true
+        outputs.isCacheEnabled() >> true
+        outputs.getFiles() >> outputFiles
+
+        when:
+        executer.execute(task, state, executionContext)
+
+        then:
+        1 * internalListener.beforeTaskOutputsGenerated(outputFiles)
+        0 * internalListener.beforeTaskOutputsGenerated()
+        1 * action1.execute(task)
+    }
+
+    def notifiesListenerThatAnyFileCanChangeWhenTaskWithDeclaredOutputsIsNotCacheable() {
+        given:
+        task.getTaskActions() >> [action1]
+        outputs.hasDeclaredOutputs() >> true
+        outputs.isCacheAllowed() >> true
+        outputs.isCacheEnabled() >> false
+        outputs.getFiles() >> new SimpleFileCollection(new File("out"))
+
+        when:
+        executer.execute(task, state, executionContext)
+
+        then:
+        1 * internalListener.beforeTaskOutputsGenerated()
+        0 * internalListener.beforeTaskOutputsGenerated(_)
+        1 * action1.execute(task)
+    }
+
     def skipsActionWhichThrowsStopActionException() {
         given:
         task.getTaskActions() >> [action1, action2]
@@ -18,6 +18,7 @@ package org.gradle.api.internal.tasks.execution
 
 import org.gradle.api.GradleException
 import org.gradle.api.Project
+import org.gradle.api.file.FileCollection
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.changedetection.TaskArtifactState
@@ -47,6 +48,7 @@ class SkipCachedTaskExecuterTest extends Specification {
     def cacheKey = Mock(BuildCacheKey)
     def taskOutputOriginFactory = Mock(TaskOutputOriginFactory)
     def internalTaskExecutionListener = Mock(TaskOutputsGenerationListener)
+    def outputFiles = Mock(FileCollection)
 
     def executer = new SkipCachedTaskExecuter(taskOutputOriginFactory, buildCacheConfiguration, taskOutputPacker, internalTaskExecutionListener, delegate)
 
@@ -74,7 +76,8 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * buildCache.load(cacheKey, _) >> true
         1 * taskState.setOutcome(TaskExecutionOutcome.FROM_CACHE)
         1 * taskState.setCacheable(true)
-        1 * internalTaskExecutionListener.beforeTaskOutputsGenerated()
+        1 * outputs.getFiles() >> outputFiles
+        1 * internalTaskExecutionListener.beforeTaskOutputsGenerated(outputFiles)
         0 * _
     }
 
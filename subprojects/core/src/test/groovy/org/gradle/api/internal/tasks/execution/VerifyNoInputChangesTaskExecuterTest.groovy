@@ -37,7 +37,8 @@ class VerifyNoInputChangesTaskExecuterTest extends Specification {
     private TaskArtifactState after = Mock()
     private TaskStateInternal state = new TaskStateInternal("task")
     private TaskExecutionContext context = Mock()
-    private VerifyNoInputChangesTaskExecuter executer = new VerifyNoInputChangesTaskExecuter(repository, delegate)
+    private TaskOutputsGenerationListener outputsGenerationListener = Mock()
+    private VerifyNoInputChangesTaskExecuter executer = new VerifyNoInputChangesTaskExecuter(repository, outputsGenerationListener, delegate)
 
     def 'no exception if inputs do not change'() {
         when:
@@ -49,6 +50,9 @@ class VerifyNoInputChangesTaskExecuterTest extends Specification {
         then:
         1 * delegate.execute(task, state, context)
 
+        then:
+        1 * outputsGenerationListener.beforeTaskOutputsGenerated()
+
         then:
         1 * repository.getStateFor(task) >> after
         1 * after.calculateCacheKey() >> cacheKey(hashKeyBefore)
@@ -77,6 +81,9 @@ class VerifyNoInputChangesTaskExecuterTest extends Specification {
         then:
         1 * delegate.execute(task, state, context)
 
+        then:
+        1 * outputsGenerationListener.beforeTaskOutputsGenerated()
+
         then:
         1 * repository.getStateFor(task) >> after
         1 * after.calculateCacheKey() >> cacheKey(hashKeyAfter)
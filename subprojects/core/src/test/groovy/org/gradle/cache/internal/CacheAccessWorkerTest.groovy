@@ -198,4 +198,80 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         def e = thrown(RuntimeException)
         e == failure
     }
+
+    def "runs only the last of consecutive updates of the same entry"() {
+        given:
+        def backingCache = Mock(MultiProcessSafePersistentIndexedCache)
+        def cache = new AsyncCacheAccessDecoratedCache(cacheAccessWorker, backingCache)
+        def completion = Mock(Runnable)
+        cache.putLater("a", "1", completion)
+        cache.putLater("b", "1", completion)
+        cache.putLater("a", "2", completion)
+        cache.removeLater("b", completion)
+        cache.putLater("a", "3", completion)
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        1 * backingCache.put("a", "3")
+        1 * backingCache.remove("b")
+        0 * backingCache.put(_, _)
+        5 * completion.run()
+
+        and:
+        cacheAccessWorker.statistics.coalescedUpdates == 3
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "does not coalesce updates across reads of the cache"() {
+        given:
+        def backingCache = Mock(MultiProcessSafePersistentIndexedCache)
+        def cache = new AsyncCacheAccessDecoratedCache(cacheAccessWorker, backingCache)
+        def completion = Mock(Runnable)
+        start(cacheAccessWorker)
+
+        when:
+        cache.putLater("a", "1", completion)
+        def result = cache.get("a")
+        cache.putLater("a", "2", completion)
+        cacheAccessWorker.flush()
+
+        then:
+        result == "1"
+        1 * backingCache.put("a", "1")
+
+        then:
+        1 * backingCache.get("a") >> "1"
+
+        then:
+        1 * backingCache.put("a", "2")
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
+
+    def "runs queued operations in a single batch"() {
+        given:
+        def counter = 0
+        100.times {
+            cacheAccessWorker.enqueue { counter++ }
+        }
+
+        when:
+        start(cacheAccessWorker)
+        cacheAccessWorker.flush()
+
+        then:
+        counter == 100
+        cacheAccessWorker.statistics.batches == 1
+        cacheAccessWorker.statistics.operations == 101
+        cacheAccessWorker.statistics.maxQueueDepth >= 100
+
+        cleanup:
+        cacheAccessWorker?.stop()
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheFile = tmpDir.file("cache.bin")
+    def factory = { Class type -> new TestPayload() } as BlockStore.Factory
+
+    def "reads blocks that span regions"() {
+        def store = open(new MappedFileBlockStore(cacheFile, 16))
+        def blocks = (1..10).collect { payload("value-$it" * it) }
+
+        when:
+        blocks.each { write(store, it) }
+
+        then:
+        blocks.each { assert store.read(it.pos, TestPayload).value == it.value }
+
+        cleanup:
+        store.close()
+    }
+
+    def "reads and writes blocks when only a few regions may be mapped at a time"() {
+        def store = open(new MappedFileBlockStore(cacheFile, 16, 2))
+        def blocks = (1..10).collect { payload("value-$it" * it) }
+
+        when:
+        blocks.each { write(store, it) }
+
+        then:
+        blocks.reverse().each { assert store.read(it.pos, TestPayload).value == it.value }
+
+        cleanup:
+        store.close()
+    }
+
+    def "reading does not grow the file"() {
+        def fileStore = open(new FileBackedBlockStore(cacheFile))
+        def blocks = (1..5).collect { payload("value-$it") }
+        blocks.each { write(fileStore, it) }
+        fileStore.close()
+        def length = cacheFile.length()
+
+        when:
+        def store = open(new MappedFileBlockStore(cacheFile, 1024))
+        blocks.each { assert store.read(it.pos, TestPayload).value == it.value }
+
+        then:
+        cacheFile.length() == length
+
+        cleanup:
+        store.close()
+    }
+
+    def "removes unused end of last region when closed"() {
+        def store = open(new MappedFileBlockStore(cacheFile, 1024))
+        def block = payload("value")
+        write(store, block)
+
+        expect:
+        cacheFile.length() == 1024
+
+        when:
+        store.close()
+
+        then:
+        cacheFile.length() == block.block.size
+    }
+
+    def "reads blocks written by file backed store"() {
+        def fileStore = open(new FileBackedBlockStore(cacheFile))
+        def blocks = (1..5).collect { payload("value-$it") }
+        blocks.each { write(fileStore, it) }
+        fileStore.close()
+
+        when:
+        def store = open(new MappedFileBlockStore(cacheFile, 16))
+
+        then:
+        blocks.each { assert store.read(it.pos, TestPayload).value == it.value }
+
+        cleanup:
+        store.close()
+    }
+
+    def "blocks written by mapped store can be read by file backed store"() {
+        def store = open(new MappedFileBlockStore(cacheFile, 16))
+        def blocks = (1..5).collect { payload("value-$it") }
+        blocks.each { write(store, it) }
+        store.close()
+
+        when:
+        def fileStore = open(new FileBackedBlockStore(cacheFile))
+
+        then:
+        blocks.each { assert fileStore.read(it.pos, TestPayload).value == it.value }
+
+        cleanup:
+        fileStore.close()
+    }
+
+    def "reports block beyond end of file as corrupted"() {
+        def store = open(new MappedFileBlockStore(cacheFile, 1024))
+        write(store, payload("value"))
+
+        when:
+        store.read(new BlockPointer(100), TestPayload)
+
+        then:
+        thrown(CorruptedCacheException)
+
+        cleanup:
+        store.close()
+    }
+
+    def "can write blocks again after store is cleared"() {
+        def store = open(new MappedFileBlockStore(cacheFile, 16))
+        write(store, payload("some long value that spans regions"))
+
+        when:
+        store.clear()
+        def block = payload("value")
+        write(store, block)
+
+        then:
+        block.pos.pos == 0
+        store.read(block.pos, TestPayload).value == "value"
+
+        when:
+        store.close()
+
+        then:
+        cacheFile.length() == block.block.size
+    }
+
+    private BlockStore open(BlockStore store) {
+        store.open({} as Runnable, factory)
+        return store
+    }
+
+    private static void write(BlockStore store, TestPayload block) {
+        store.attach(block)
+        store.write(block)
+    }
+
+    private static TestPayload payload(String value) {
+        def payload = new TestPayload()
+        payload.value = value
+        return payload
+    }
+
+    static class TestPayload extends BlockPayload {
+        String value = ""
+
+        @Override
+        protected int getSize() {
+            return 2 + value.length()
+        }
+
+        @Override
+        protected byte getType() {
+            return (byte) 0x77
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            value = inputStream.readUTF()
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeUTF(value)
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstructured
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def logFile = tmpDir.file("cache.log")
+    def indexFile = tmpDir.file("cache.log.idx")
+    LogStructuredPersistentIndexedCache<String, Long> cache
+
+    def setup() {
+        cache = open()
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "can add, replace and remove entries"() {
+        when:
+        cache.put("a", 1L)
+        cache.put("b", 2L)
+        cache.put("a", 3L)
+        cache.remove("b")
+
+        then:
+        cache.get("a") == 3
+        cache.get("b") == null
+        cache.get("c") == null
+    }
+
+    def "entries are visible after reopening"() {
+        given:
+        (0..<1000).each { cache.put("key-$it".toString(), it as Long) }
+        (0..<1000).step(2).each { cache.remove("key-$it".toString()) }
+
+        when:
+        reopen()
+
+        then:
+        (0..<1000).every { cache.get("key-$it".toString()) == (it % 2 == 0 ? null : it) }
+    }
+
+    def "replays whole log when index is missing"() {
+        given:
+        cache.put("a", 1L)
+        cache.put("b", 2L)
+        cache.remove("a")
+        cache.close()
+        indexFile.delete()
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("a") == null
+        cache.get("b") == 2
+    }
+
+    def "replays records appended after index was written"() {
+        given:
+        cache.put("a", 1L)
+        reopen()
+        def indexContent = indexFile.bytes
+        cache.put("b", 2L)
+        cache.remove("a")
+        cache.close()
+        // Simulate a process that appended records and crashed before writing the index
+        indexFile.bytes = indexContent
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("a") == null
+        cache.get("b") == 2
+    }
+
+    def "only writes index again when a noticeable part of the log is not covered by it"() {
+        given:
+        (0..<100).each { cache.put("key-$it".toString(), it as Long) }
+        reopen()
+        def indexContent = indexFile.bytes
+
+        when:
+        cache.put("key-0", -1L)
+        reopen()
+
+        then:
+        indexFile.bytes == indexContent
+        cache.get("key-0") == -1
+        cache.get("key-99") == 99
+
+        when:
+        (0..<100).each { cache.put("key-$it".toString(), -it as Long) }
+        reopen()
+
+        then:
+        indexFile.bytes != indexContent
+        cache.get("key-0") == 0
+        cache.get("key-99") == -99
+    }
+
+    def "discards incomplete record at end of log"() {
+        given:
+        cache.put("a", 1L)
+        cache.put("b", 2L)
+        cache.close()
+        indexFile.delete()
+        def length = logFile.length()
+        truncate(length - 2)
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == null
+
+        when:
+        cache.put("c", 3L)
+        reopen()
+
+        then:
+        cache.get("a") == 1
+        cache.get("c") == 3
+    }
+
+    def "discards log with unexpected format"() {
+        given:
+        cache.close()
+        logFile.text = "not a log"
+
+        when:
+        cache = open()
+        cache.put("a", 1L)
+        reopen()
+
+        then:
+        cache.get("a") == 1
+    }
+
+    def "compacts log when most records are no longer live"() {
+        given:
+        def value = 0L
+        10.times {
+            (0..<10000).each { cache.put("key-$it".toString(), value++) }
+        }
+
+        when:
+        cache.close()
+
+        then:
+        // Each record takes at least 20 bytes, so the log would take 2 MB without compaction
+        logFile.length() < 10000 * 50
+
+        when:
+        cache = open()
+
+        then:
+        (0..<10000).every { cache.get("key-$it".toString()) == 90000 + it }
+
+        when:
+        cache.put("key-0", -1L)
+        indexFile.delete()
+        reopen()
+
+        then:
+        cache.get("key-0") == -1
+        cache.get("key-9999") == 99999
+    }
+
+    private LogStructuredPersistentIndexedCache<String, Long> open() {
+        new LogStructuredPersistentIndexedCache<String, Long>(logFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.LONG_SERIALIZER)
+    }
+
+    private void reopen() {
+        cache.close()
+        cache = open()
+    }
+
+    private void truncate(long length) {
+        def file = new RandomAccessFile(logFile, "rw")
+        try {
+            file.setLength(length)
+        } finally {
+            file.close()
+        }
+    }
+}
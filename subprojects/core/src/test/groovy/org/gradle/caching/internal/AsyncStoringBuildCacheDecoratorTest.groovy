@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider
+import org.gradle.caching.BuildCache
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class AsyncStoringBuildCacheDecoratorTest extends ConcurrentSpec {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def key = Stub(BuildCacheKey)
+    def delegate = Mock(BuildCache)
+    def temporaryFileProvider = new DefaultTemporaryFileProvider({ tmpDir.testDirectory } as Factory)
+    def decorator = new AsyncStoringBuildCacheDecorator(executorFactory.create("test"), temporaryFileProvider, 2, delegate)
+
+    def "stores entry in background"() {
+        def stored = new ByteArrayOutputStream()
+        delegate.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            thread.blockUntil.stored
+            writer.writeTo(stored)
+            instant.uploaded
+        }
+
+        when:
+        async {
+            decorator.store(key, { output -> output.write("data".bytes) } as BuildCacheEntryWriter)
+            instant.stored
+            decorator.flush()
+            instant.flushed
+        }
+
+        then:
+        instant.flushed > instant.uploaded
+        stored.toString() == "data"
+        tmpDir.testDirectory.listFiles().length == 0
+    }
+
+    def "packs entry on calling thread"() {
+        def failure = new RuntimeException()
+
+        when:
+        decorator.store(key, { output -> throw failure } as BuildCacheEntryWriter)
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure
+        0 * delegate.store(_, _)
+        tmpDir.testDirectory.listFiles().length == 0
+    }
+
+    def "blocks when too many stores are pending"() {
+        delegate.store(key, _) >> {
+            thread.blockUntil.released
+        }
+
+        when:
+        async {
+            start {
+                3.times {
+                    decorator.store(key, { output -> output.write(it) } as BuildCacheEntryWriter)
+                }
+                instant.storedAll
+            }
+            thread.block()
+            instant.released
+        }
+
+        then:
+        instant.storedAll > instant.released
+    }
+
+    def "does not propagate failures of background stores"() {
+        delegate.store(key, _) >> { throw failure }
+
+        when:
+        decorator.store(key, { output -> output.write(1) } as BuildCacheEntryWriter)
+        decorator.flush()
+
+        then:
+        noExceptionThrown()
+
+        where:
+        failure << [new BuildCacheException("broken"), new RuntimeException("broken")]
+    }
+
+    def "loads entries via delegate"() {
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def found = decorator.load(key, reader)
+
+        then:
+        found
+        1 * delegate.load(key, reader) >> true
+    }
+
+    def "waits for pending stores before closing delegate"() {
+        delegate.store(key, _) >> {
+            thread.block()
+            instant.uploaded
+        }
+        delegate.close() >> {
+            instant.closed
+        }
+
+        when:
+        async {
+            decorator.store(key, { output -> output.write(1) } as BuildCacheEntryWriter)
+            decorator.close()
+        }
+
+        then:
+        instant.closed > instant.uploaded
+    }
+}
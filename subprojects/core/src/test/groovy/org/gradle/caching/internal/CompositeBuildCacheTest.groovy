@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.MapBasedBuildCache
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class CompositeBuildCacheTest extends Specification {
+    def localEntries = new ConcurrentHashMap<String, byte[]>()
+    def remoteEntries = new ConcurrentHashMap<String, byte[]>()
+    def local = Spy(MapBasedBuildCache, constructorArgs: ["local", localEntries])
+    def remote = Spy(MapBasedBuildCache, constructorArgs: ["remote", remoteEntries])
+    def cache = new CompositeBuildCache(local, remote)
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+    }
+
+    def "loads entry from local cache without going to remote cache"() {
+        localEntries[key.hashCode] = "local".bytes
+
+        when:
+        def result = load()
+
+        then:
+        result == "local"
+        0 * remote.load(_, _)
+    }
+
+    def "copies entry from remote cache to local cache"() {
+        remoteEntries[key.hashCode] = "remote".bytes
+
+        when:
+        def result = load()
+
+        then:
+        result == "remote"
+        new String(localEntries[key.hashCode]) == "remote"
+
+        when:
+        result = load()
+
+        then:
+        result == "remote"
+        0 * remote.load(_, _)
+    }
+
+    def "loads entry from remote cache when local cache cannot store it"() {
+        remoteEntries[key.hashCode] = "remote".bytes
+
+        when:
+        def result = load()
+
+        then:
+        result == "remote"
+        1 * local.load(_, _)
+        1 * local.store(_, _) >> { throw new org.gradle.api.UncheckedIOException(new IOException("broken")) }
+        2 * remote.load(_, _)
+    }
+
+    def "reports miss when entry is in neither cache"() {
+        expect:
+        load() == null
+        localEntries.isEmpty()
+    }
+
+    def "stores entry in both caches while packing outputs once"() {
+        def writer = Mock(BuildCacheEntryWriter)
+
+        when:
+        cache.store(key, writer)
+
+        then:
+        1 * writer.writeTo(_) >> { OutputStream output -> output.write("data".bytes) }
+        new String(localEntries[key.hashCode]) == "data"
+        new String(remoteEntries[key.hashCode]) == "data"
+    }
+
+    def "closes both caches"() {
+        when:
+        cache.close()
+
+        then:
+        1 * local.close()
+        1 * remote.close()
+    }
+
+    private String load() {
+        String result = null
+        def found = cache.load(key, { input -> result = input.text } as BuildCacheEntryReader)
+        assert found == (result != null)
+        return result
+    }
+}
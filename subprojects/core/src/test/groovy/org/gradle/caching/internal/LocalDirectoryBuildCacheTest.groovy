@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal
+
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class LocalDirectoryBuildCacheTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        useCache(_, _) >> { String operationName, Object action ->
+            action instanceof Factory ? action.create() : action.run()
+        }
+    }
+    def cacheBuilder = Stub(CacheBuilder) {
+        withDisplayName(_) >> { cacheBuilder }
+        withLockOptions(_) >> { cacheBuilder }
+        open() >> { persistentCache }
+    }
+    def cacheRepository = Stub(CacheRepository) {
+        cache(cacheDir) >> cacheBuilder
+    }
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+    }
+
+    def "stores entry via temporary file"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+
+        when:
+        cache.store(key, { output ->
+            assert cacheDir.listFiles()*.name.every { it.endsWith(".part") }
+            output.write("data".bytes)
+        } as BuildCacheEntryWriter)
+
+        then:
+        cacheDir.listFiles()*.name == ["0123456789abcdef"]
+        cacheDir.file("0123456789abcdef").text == "data"
+    }
+
+    def "does not leave partial entry behind when store fails"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        def failure = new IOException("broken")
+
+        when:
+        cache.store(key, { output ->
+            output.write("partial".bytes)
+            throw failure
+        } as BuildCacheEntryWriter)
+
+        then:
+        def e = thrown(org.gradle.api.UncheckedIOException)
+        e.cause == failure
+        cacheDir.listFiles().length == 0
+
+        and:
+        !cache.load(key, Mock(BuildCacheEntryReader))
+    }
+
+    def "loading an entry marks it as recently used"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir)
+        def entry = cacheDir.file("0123456789abcdef").createFile()
+        entry.lastModified = 0
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def found = cache.load(key, reader)
+
+        then:
+        found
+        1 * reader.readFrom(_)
+        entry.lastModified() > 0
+    }
+
+    def "removes least recently used entries when closed and cache is over target size"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 1)
+        def oldest = entry("aaaa", 600 * 1024, 1000)
+        def old = entry("bbbb", 600 * 1024, 2000)
+        def newest = entry("cccc", 600 * 1024, 3000)
+        def properties = cacheDir.file("cache.properties").createFile()
+
+        when:
+        cache.close()
+
+        then:
+        !oldest.exists()
+        !old.exists()
+        newest.exists()
+        properties.exists()
+        1 * persistentCache.close()
+    }
+
+    def "removes stale temporary files when closed"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 1)
+        def stale = entry("aaaa-1.part", 10, 1000)
+        def current = cacheDir.file("bbbb-2.part").createFile()
+
+        when:
+        cache.close()
+
+        then:
+        !stale.exists()
+        current.exists()
+    }
+
+    def "cleans up at most once a day"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 1)
+        def marker = cacheDir.file("gc.properties").createFile()
+        def oldest = entry("aaaa", 2 * 1024 * 1024, 1000)
+
+        when:
+        cache.close()
+
+        then:
+        oldest.exists()
+
+        when:
+        marker.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)
+        cache.close()
+
+        then:
+        !oldest.exists()
+        marker.lastModified() > System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)
+    }
+
+    def "does not clean up when target size is zero"() {
+        def cache = new LocalDirectoryBuildCache(cacheRepository, cacheDir, 0)
+        def oldest = entry("aaaa", 2 * 1024 * 1024, 1000)
+
+        when:
+        cache.close()
+
+        then:
+        oldest.exists()
+        0 * persistentCache.useCache(_, _)
+        1 * persistentCache.close()
+    }
+
+    private TestFile entry(String name, int size, long timestamp) {
+        def file = cacheDir.file(name)
+        file.bytes = new byte[size]
+        file.lastModified = timestamp
+        return file
+    }
+}
@@ -19,6 +19,8 @@ package org.gradle.execution.taskgraph
 import org.gradle.api.DefaultTask
 import org.gradle.api.Project
 import org.gradle.api.Task
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationHistory
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.tasks.Delete
 import org.gradle.api.tasks.OutputDirectory
@@ -74,6 +76,12 @@ class DefaultTaskExecutionPlanParallelTaskHandlingTest extends AbstractProjectBu
         blockedThreads.clear()
     }
 
+    TaskDurationHistory durations(Map<String, Long> durations) {
+        Stub(TaskDurationHistory) {
+            getPreviousDuration(_) >> { TaskInternal task -> durations[task.name] }
+        }
+    }
+
     TestFile file(String path) {
         temporaryFolder.file(path)
     }
@@ -172,6 +180,57 @@ class DefaultTaskExecutionPlanParallelTaskHandlingTest extends AbstractProjectBu
         requestedTasksBecomeAvailableForExecution()
     }
 
+    def "tasks later in the plan are started while earlier tasks wait for their dependencies"() {
+        given:
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel).dependsOn(a)
+        Task c = root.task("c", type: Parallel)
+
+        when:
+        addToGraphAndPopulate(b, c)
+        startTasks(2)
+
+        then:
+        startedTasks*.task == [a, c]
+        noMoreTasksCurrentlyAvailableForExecution()
+
+        when:
+        completeAllStartedTasks()
+
+        then:
+        requestedTasksBecomeAvailableForExecution()
+    }
+
+    def "tasks with the longest critical path are started first"() {
+        given:
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel)
+        Task c = root.task("c", type: Parallel).dependsOn(b)
+        addToGraphAndPopulate(a, c)
+
+        when:
+        executionPlan.prioritiseCriticalPath(durations(a: 50L, b: 10L, c: 100L))
+        startTasks(2)
+
+        then:
+        startedTasks*.task == [b, a]
+    }
+
+    def "tasks are started in plan order when there are no previous durations"() {
+        given:
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel)
+        Task c = root.task("c", type: Parallel).dependsOn(b)
+        addToGraphAndPopulate(a, c)
+
+        when:
+        executionPlan.prioritiseCriticalPath(durations([:]))
+        startTasks(2)
+
+        then:
+        startedTasks*.task == [a, b]
+    }
+
     def "a parallelizable task with custom actions is not run in parallel"() {
         given:
         Task a = root.task("a", type: Parallel)
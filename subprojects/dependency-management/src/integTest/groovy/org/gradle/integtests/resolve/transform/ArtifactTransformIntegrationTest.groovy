@@ -590,6 +590,54 @@ class FileSizer extends ArtifactTransform {
         output.count("Transforming lib-2.jar to lib-2.jar.txt") == 1
     }
 
+    def "transform without output directory is reused by later builds until input file changes"() {
+        given:
+        executer.requireOwnGradleUserHomeDir()
+        buildFile << """
+            def a = file('a.jar')
+            if (!a.exists()) {
+                a.text = '1234'
+            }
+
+            dependencies {
+                compile files(a)
+            }
+
+            configurations {
+                compile {
+                    attributes artifactType: 'size'
+                    resolutionStrategy.registerTransform(FileSizer) { }
+                }
+            }
+
+            task resolve(type: Copy) {
+                from configurations.compile
+                into "\${buildDir}/libs"
+            }
+        """
+
+        when:
+        succeeds "resolve"
+
+        then:
+        output.count("Transforming a.jar to a.jar.txt") == 1
+        file("build/libs/a.jar.txt").text == "4"
+
+        when:
+        succeeds "resolve"
+
+        then:
+        output.count("Transforming a.jar to a.jar.txt") == 0
+
+        when:
+        file("a.jar").text = "12"
+        succeeds "resolve"
+
+        then:
+        output.count("Transforming a.jar to a.jar.txt") == 1
+        file("build/libs/a.jar.txt").text == "2"
+    }
+
     def "Transform is executed twice for the same file for two different targets"() {
         given:
         buildFile << """
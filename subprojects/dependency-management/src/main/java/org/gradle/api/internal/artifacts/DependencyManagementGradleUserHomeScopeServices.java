@@ -17,10 +17,19 @@
 package org.gradle.api.internal.artifacts;
 
 import org.gradle.api.internal.artifacts.ivyservice.DefaultArtifactCacheMetaData;
+import org.gradle.api.internal.artifacts.transform.DefaultTransformedFileCache;
+import org.gradle.api.internal.artifacts.transform.TransformedFileCache;
+import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.CacheScopeMapping;
+import org.gradle.cache.internal.FileLockManager;
 
 public class DependencyManagementGradleUserHomeScopeServices {
     DefaultArtifactCacheMetaData createArtifactCacheMetaData(CacheScopeMapping cacheScopeMapping) {
         return new DefaultArtifactCacheMetaData(cacheScopeMapping);
     }
+
+    TransformedFileCache createTransformedFileCache(CacheRepository cacheRepository, FileHasher fileHasher, FileLockManager fileLockManager) {
+        return new DefaultTransformedFileCache(cacheRepository, fileHasher, fileLockManager);
+    }
 }
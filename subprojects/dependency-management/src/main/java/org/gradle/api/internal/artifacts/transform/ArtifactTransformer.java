@@ -34,8 +34,10 @@ import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyIntern
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor;
 import org.gradle.api.internal.attributes.AttributeContainerInternal;
 import org.gradle.api.internal.attributes.DefaultAttributeContainer;
+import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.tasks.TaskDependency;
 import org.gradle.internal.Pair;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.component.local.model.ComponentFileArtifactIdentifier;
 import org.gradle.internal.component.model.DefaultIvyArtifactName;
 import org.gradle.internal.component.model.IvyArtifactName;
@@ -60,9 +62,10 @@ public class ArtifactTransformer {
         this.attributeMatcher = attributeMatcher;
     }
 
-    public ArtifactTransformer(ResolutionStrategyInternal resolutionStrategy, AttributesSchema attributesSchema) {
+    public ArtifactTransformer(ResolutionStrategyInternal resolutionStrategy, AttributesSchema attributesSchema,
+                               TransformedFileCache transformedFileCache, ClassLoaderHierarchyHasher classLoaderHierarchyHasher, FileHasher fileHasher) {
         this.attributeMatcher = new ArtifactAttributeMatcher(attributesSchema);
-        this.artifactTransforms = new InstantiatingArtifactTransforms(resolutionStrategy, this.attributeMatcher);
+        this.artifactTransforms = new InstantiatingArtifactTransforms(resolutionStrategy, this.attributeMatcher, transformedFileCache, classLoaderHierarchyHasher, fileHasher);
     }
 
     private boolean matchArtifactsAttributes(HasAttributes candidate, AttributeContainer requested) {
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.gradle.api.Transformer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.FileLock;
+import org.gradle.cache.internal.FileLockManager;
+import org.gradle.cache.internal.LockTimeoutException;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Stores the outputs of each transform in a directory of its own, named after a hash of the transform key and the content of the input file.
+ *
+ * <p>
+ *     Only one thread of one build runs the transform for a given entry at a time. Other threads of the same build wait for the running transform,
+ *     and other builds wait for the lock of the entry, after which they use the published result. The transform writes its outputs to a temporary
+ *     directory, which is renamed once the transform has completed, so a result directory only ever contains complete results.
+ * </p>
+ * <p>
+ *     The outputs of directory inputs are never published, as the content of a directory cannot be hashed cheaply. Each of these transforms writes
+ *     to a private directory of its own, which is never replaced while it may still be used.
+ * </p>
+ * <p>
+ *     At most once a day, entries that have not been used for {@value #MAX_UNUSED_DAYS} days are removed, together with private and temporary
+ *     directories left behind.
+ * </p>
+ */
+public class DefaultTransformedFileCache implements TransformedFileCache, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultTransformedFileCache.class);
+    private static final String OUTPUTS_DIR = "outputs";
+    private static final String RESULTS_FILE = "results.txt";
+    private static final String INPUT_ENTRY = "input";
+    private static final String OUTPUT_ENTRY_PREFIX = "output:";
+    private static final String LOCKS_DIR = "locks";
+    private static final String PRIVATE_DIR = "private";
+    private static final String TEMP_DIR_SUFFIX = ".tmp";
+    private static final String CLEAN_UP_MARKER = "gc.properties";
+    private static final int MAX_UNUSED_DAYS = 7;
+    private static final long CLEAN_UP_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    private static final long MARK_USED_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private final PersistentCache cache;
+    private final FileHasher fileHasher;
+    private final FileLockManager fileLockManager;
+    // Both by entry name
+    private final ConcurrentMap<String, TransformResult> results = new ConcurrentHashMap<String, TransformResult>();
+    private final ConcurrentMap<String, CountDownLatch> inFlight = new ConcurrentHashMap<String, CountDownLatch>();
+    private final List<File> privateDirs = new ArrayList<File>();
+    private volatile long nextCleanUp;
+
+    public DefaultTransformedFileCache(CacheRepository cacheRepository, FileHasher fileHasher, FileLockManager fileLockManager) {
+        this.cache = cacheRepository
+            .cache("transforms-1")
+            .withDisplayName("artifact transforms")
+            .withLockOptions(mode(FileLockManager.LockMode.None)) // Lock on demand
+            .open();
+        this.fileHasher = fileHasher;
+        this.fileLockManager = fileLockManager;
+        File marker = new File(cache.getBaseDir(), CLEAN_UP_MARKER);
+        this.nextCleanUp = marker.lastModified() + CLEAN_UP_INTERVAL;
+    }
+
+    @Override
+    public List<File> getResult(File input, HashCode transformKey, Transformer<List<File>, File> transform) {
+        maybeCleanUp();
+        if (!input.isFile()) {
+            return transformPrivately(input, transform);
+        }
+
+        String entryName = HashUtil.compactStringFor(Hashing.md5().newHasher()
+            .putBytes(transformKey.asBytes())
+            .putString(fileHasher.getAlgorithm().name(), Charsets.UTF_8)
+            .putBytes(fileHasher.hash(input).asBytes())
+            .putString(input.getName(), Charsets.UTF_8)
+            .hash());
+        while (true) {
+            TransformResult result = results.get(entryName);
+            if (result != null && result.entryDir.isDirectory()) {
+                result.markUsed();
+                return result.getFiles(input);
+            }
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch other = inFlight.putIfAbsent(entryName, running);
+            if (other != null) {
+                // Another thread is running the same transform, use its result once it has finished
+                await(other);
+                continue;
+            }
+            try {
+                return loadOrTransform(input, entryName, transform);
+            } finally {
+                inFlight.remove(entryName);
+                running.countDown();
+            }
+        }
+    }
+
+    private List<File> loadOrTransform(File input, String entryName, Transformer<List<File>, File> transform) {
+        File entryDir = new File(cache.getBaseDir(), entryName);
+        FileLock entryLock = lockEntry(entryName, "transform " + input.getName());
+        try {
+            TransformResult result = TransformResult.load(entryDir);
+            if (result == null) {
+                File tmpDir = new File(cache.getBaseDir(), entryName + "-" + UUID.randomUUID() + TEMP_DIR_SUFFIX);
+                try {
+                    File outputDir = new File(tmpDir, OUTPUTS_DIR);
+                    GFileUtils.mkdirs(outputDir);
+                    List<File> outputs = transform.transform(outputDir);
+                    List<String> entries = toEntries(input, outputDir, outputs);
+                    if (entries == null) {
+                        // Some outputs were not written to the directory provided by the cache, so the result cannot be reused
+                        return outputs;
+                    }
+                    result = publish(input, tmpDir, entryDir, entries);
+                } finally {
+                    GFileUtils.deleteDirectory(tmpDir);
+                }
+            } else {
+                result.markUsed();
+            }
+            results.put(entryName, result);
+            return result.getFiles(input);
+        } finally {
+            entryLock.close();
+        }
+    }
+
+    private static TransformResult publish(File input, File tmpDir, File entryDir, List<String> entries) {
+        try {
+            Files.write(Joiner.on('\n').join(entries), new File(tmpDir, RESULTS_FILE), Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write results of transforming " + input, e);
+        }
+        if (entryDir.exists()) {
+            // An incomplete entry, for example left behind by a clean up that was interrupted
+            GFileUtils.deleteDirectory(entryDir);
+        }
+        if (!tmpDir.renameTo(entryDir)) {
+            throw new UncheckedIOException("Could not move results of transform to " + entryDir);
+        }
+        return new TransformResult(entryDir, entries, System.currentTimeMillis());
+    }
+
+    private List<File> transformPrivately(File input, Transformer<List<File>, File> transform) {
+        File privateDir = new File(new File(cache.getBaseDir(), PRIVATE_DIR), UUID.randomUUID().toString());
+        File outputDir = new File(privateDir, OUTPUTS_DIR);
+        GFileUtils.mkdirs(outputDir);
+        synchronized (privateDirs) {
+            privateDirs.add(privateDir);
+        }
+        return transform.transform(outputDir);
+    }
+
+    /**
+     * Locks the given entry against other builds. Waits for as long as another build holds the lock, as running a transform can take a while.
+     */
+    private FileLock lockEntry(String entryName, String operationDisplayName) {
+        File lockTarget = new File(new File(cache.getBaseDir(), LOCKS_DIR), entryName);
+        while (true) {
+            try {
+                return fileLockManager.lock(lockTarget, mode(FileLockManager.LockMode.Exclusive), "artifact transform cache entry " + entryName, operationDisplayName);
+            } catch (LockTimeoutException e) {
+                LOGGER.info("Still waiting for another build to finish using artifact transform cache entry {}.", entryName);
+            }
+        }
+    }
+
+    private void maybeCleanUp() {
+        if (System.currentTimeMillis() < nextCleanUp) {
+            return;
+        }
+        synchronized (this) {
+            if (System.currentTimeMillis() < nextCleanUp) {
+                return;
+            }
+            cache.useCache("Clean up artifact transform cache", new Runnable() {
+                @Override
+                public void run() {
+                    File marker = new File(cache.getBaseDir(), CLEAN_UP_MARKER);
+                    long now = System.currentTimeMillis();
+                    if (marker.lastModified() + CLEAN_UP_INTERVAL > now) {
+                        // Cleaned up by another build in the meantime
+                        nextCleanUp = marker.lastModified() + CLEAN_UP_INTERVAL;
+                        return;
+                    }
+                    cleanUp(now);
+                    GFileUtils.touch(marker);
+                    nextCleanUp = now + CLEAN_UP_INTERVAL;
+                }
+            });
+        }
+    }
+
+    private void cleanUp(long now) {
+        long staleBefore = now - CLEAN_UP_INTERVAL;
+        File[] privateDirs = new File(cache.getBaseDir(), PRIVATE_DIR).listFiles();
+        if (privateDirs != null) {
+            for (File privateDir : privateDirs) {
+                if (privateDir.lastModified() < staleBefore) {
+                    GFileUtils.deleteQuietly(privateDir);
+                }
+            }
+        }
+        File[] files = cache.getBaseDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        long unusedBefore = now - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+        int removedEntries = 0;
+        for (File file : files) {
+            if (!file.isDirectory() || file.getName().equals(LOCKS_DIR) || file.getName().equals(PRIVATE_DIR)) {
+                continue;
+            }
+            if (file.getName().endsWith(TEMP_DIR_SUFFIX)) {
+                // Left behind by a build that was killed while running a transform
+                if (file.lastModified() < staleBefore) {
+                    GFileUtils.deleteQuietly(file);
+                }
+            } else if (file.lastModified() < unusedBefore && removeUnusedEntry(file, unusedBefore)) {
+                removedEntries++;
+            }
+        }
+        LOGGER.info("Removed {} unused entries from {}.", removedEntries, cache);
+    }
+
+    private boolean removeUnusedEntry(File entryDir, long unusedBefore) {
+        String entryName = entryDir.getName();
+        CountDownLatch removing = new CountDownLatch(1);
+        if (inFlight.putIfAbsent(entryName, removing) != null) {
+            // In use by this build
+            return false;
+        }
+        try {
+            FileLock entryLock = lockEntry(entryName, "remove unused entry");
+            try {
+                if (entryDir.lastModified() >= unusedBefore) {
+                    return false;
+                }
+                results.remove(entryName);
+                return GFileUtils.deleteQuietly(entryDir);
+            } finally {
+                entryLock.close();
+            }
+        } finally {
+            inFlight.remove(entryName);
+            removing.countDown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static List<String> toEntries(File input, File outputDir, List<File> outputs) {
+        String outputDirPath = outputDir.getAbsolutePath();
+        List<String> entries = new ArrayList<String>(outputs.size());
+        for (File output : outputs) {
+            String path = output.getAbsolutePath();
+            if (output.equals(input)) {
+                entries.add(INPUT_ENTRY);
+            } else if (path.equals(outputDirPath)) {
+                entries.add(OUTPUT_ENTRY_PREFIX);
+            } else if (path.startsWith(outputDirPath + File.separator)) {
+                entries.add(OUTPUT_ENTRY_PREFIX + path.substring(outputDirPath.length() + 1));
+            } else {
+                return null;
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() {
+        try {
+            // The builds of this process no longer use the outputs of their directory transforms
+            synchronized (privateDirs) {
+                for (File privateDir : privateDirs) {
+                    GFileUtils.deleteQuietly(privateDir);
+                }
+                privateDirs.clear();
+            }
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static class TransformResult {
+        private final File entryDir;
+        private final List<String> entries;
+        private volatile long markedUsed;
+
+        TransformResult(File entryDir, List<String> entries, long markedUsed) {
+            this.entryDir = entryDir;
+            this.entries = entries;
+            this.markedUsed = markedUsed;
+        }
+
+        static TransformResult load(File entryDir) {
+            File resultsFile = new File(entryDir, RESULTS_FILE);
+            if (!resultsFile.isFile()) {
+                return null;
+            }
+            try {
+                String content = Files.toString(resultsFile, Charsets.UTF_8);
+                List<String> entries = new ArrayList<String>();
+                if (!content.isEmpty()) {
+                    for (String entry : content.split("\n")) {
+                        entries.add(entry);
+                    }
+                }
+                return new TransformResult(entryDir, entries, 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read results of transform from " + entryDir, e);
+            }
+        }
+
+        /**
+         * Updates the timestamp of the entry, so that it is not removed as unused. Only done every now and then to avoid writing to the file system on every use.
+         */
+        void markUsed() {
+            long now = System.currentTimeMillis();
+            if (now - markedUsed >= MARK_USED_INTERVAL) {
+                entryDir.setLastModified(now);
+                markedUsed = now;
+            }
+        }
+
+        List<File> getFiles(File input) {
+            File outputDir = new File(entryDir, OUTPUTS_DIR);
+            List<File> files = new ArrayList<File>(entries.size());
+            for (String entry : entries) {
+                if (entry.equals(INPUT_ENTRY)) {
+                    files.add(input);
+                } else {
+                    String path = entry.substring(OUTPUT_ENTRY_PREFIX.length());
+                    files.add(path.isEmpty() ? outputDir : new File(outputDir, path));
+                }
+            }
+            return files;
+        }
+    }
+}
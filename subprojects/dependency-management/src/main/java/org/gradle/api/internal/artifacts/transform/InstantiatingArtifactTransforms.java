@@ -16,24 +16,50 @@
 
 package org.gradle.api.internal.artifacts.transform;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.Nullable;
 import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.transform.ArtifactTransform;
 import org.gradle.api.artifacts.transform.ArtifactTransformException;
+import org.gradle.api.attributes.Attribute;
 import org.gradle.api.attributes.AttributeContainer;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
 import org.gradle.internal.reflect.DirectInstantiator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 class InstantiatingArtifactTransforms implements ArtifactTransforms {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstantiatingArtifactTransforms.class);
+
     private final ResolutionStrategyInternal resolutionStrategy;
     private final ArtifactAttributeMatcher attributeMatcher;
+    private final TransformedFileCache transformedFileCache;
+    private final ClassLoaderHierarchyHasher classLoaderHierarchyHasher;
+    private final FileHasher fileHasher;
 
-    public InstantiatingArtifactTransforms(ResolutionStrategyInternal resolutionStrategy, ArtifactAttributeMatcher attributeMatcher) {
+    public InstantiatingArtifactTransforms(ResolutionStrategyInternal resolutionStrategy, ArtifactAttributeMatcher attributeMatcher,
+                                           TransformedFileCache transformedFileCache, ClassLoaderHierarchyHasher classLoaderHierarchyHasher,
+                                           FileHasher fileHasher) {
         this.resolutionStrategy = resolutionStrategy;
         this.attributeMatcher = attributeMatcher;
+        this.transformedFileCache = transformedFileCache;
+        this.classLoaderHierarchyHasher = classLoaderHierarchyHasher;
+        this.fileHasher = fileHasher;
     }
 
     @Override
@@ -50,7 +76,141 @@ class InstantiatingArtifactTransforms implements ArtifactTransforms {
     private Transformer<List<File>, File> createArtifactTransformer(ArtifactTransformRegistrations.ArtifactTransformRegistration registration) {
         ArtifactTransform artifactTransform = DirectInstantiator.INSTANCE.newInstance(registration.type);
         registration.config.execute(artifactTransform);
-        return new ArtifactFileTransformer(artifactTransform, registration.to);
+        ArtifactFileTransformer transformer = new ArtifactFileTransformer(artifactTransform, registration.to);
+        if (artifactTransform.getOutputDirectory() != null) {
+            // The outputs are expected in the configured location, so they cannot be kept in the cache
+            return transformer;
+        }
+        return new CachingArtifactFileTransformer(transformer, artifactTransform, registration.to);
+    }
+
+    /**
+     * Returns a hash of the implementation and the configured parameters of the given transform, or {@code null} when one of the parameters is of a type that cannot be hashed.
+     * File parameters are hashed by path and content.
+     */
+    @Nullable
+    private HashCode transformKeyFor(ArtifactTransform artifactTransform, AttributeContainer outputAttributes) {
+        Class<?> type = artifactTransform.getClass();
+        HashCode implementationHash = classLoaderHierarchyHasher.getClassLoaderHash(type.getClassLoader());
+        if (implementationHash == null) {
+            LOGGER.debug("Results of {} will not be cached, as its implementation cannot be hashed.", type.getName());
+            return null;
+        }
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(type.getName(), Charsets.UTF_8);
+        hasher.putBytes(implementationHash.asBytes());
+
+        SortedMap<String, Object> attributes = new TreeMap<String, Object>();
+        for (Attribute<?> attribute : outputAttributes.keySet()) {
+            attributes.put(attribute.getName(), outputAttributes.getAttribute(attribute));
+        }
+        if (!hashValue(attributes, hasher)) {
+            LOGGER.debug("Results of {} will not be cached, as its output attributes cannot be hashed.", type.getName());
+            return null;
+        }
+
+        for (Class<?> current = type; current != ArtifactTransform.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Object value;
+                try {
+                    value = field.get(artifactTransform);
+                } catch (IllegalAccessException e) {
+                    return null;
+                }
+                hasher.putString(current.getName() + "." + field.getName(), Charsets.UTF_8);
+                if (!hashValue(value, hasher)) {
+                    LOGGER.debug("Results of {} will not be cached, as the value of parameter '{}' cannot be hashed.", type.getName(), field.getName());
+                    return null;
+                }
+            }
+        }
+        return hasher.hash();
+    }
+
+    private boolean hashValue(@Nullable Object value, Hasher hasher) {
+        if (value == null) {
+            hasher.putString("null", Charsets.UTF_8);
+        } else if (value instanceof String || value instanceof Boolean || value instanceof Number || value instanceof Character || value instanceof Enum) {
+            hasher.putString(value.getClass().getName(), Charsets.UTF_8);
+            hasher.putString(value.toString(), Charsets.UTF_8);
+        } else if (value instanceof File) {
+            File file = (File) value;
+            hasher.putString(File.class.getName(), Charsets.UTF_8);
+            hasher.putString(file.getAbsolutePath(), Charsets.UTF_8);
+            if (file.isFile()) {
+                hasher.putBytes(fileHasher.hash(file).asBytes());
+            } else if (file.exists()) {
+                // The content of directories is not tracked
+                return false;
+            } else {
+                hasher.putString("missing", Charsets.UTF_8);
+            }
+        } else if (value instanceof Collection) {
+            hasher.putString(Collection.class.getName(), Charsets.UTF_8);
+            hasher.putInt(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                if (!hashValue(element, hasher)) {
+                    return false;
+                }
+            }
+        } else if (value instanceof Map) {
+            hasher.putString(Map.class.getName(), Charsets.UTF_8);
+            hasher.putInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!hashValue(entry.getKey(), hasher) || !hashValue(entry.getValue(), hasher)) {
+                    return false;
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private class CachingArtifactFileTransformer implements Transformer<List<File>, File> {
+        private final Transformer<List<File>, File> delegate;
+        private final ArtifactTransform artifactTransform;
+        private final AttributeContainer outputAttributes;
+        private boolean keyCalculated;
+        private HashCode transformKey;
+
+        private CachingArtifactFileTransformer(Transformer<List<File>, File> delegate, ArtifactTransform artifactTransform, AttributeContainer outputAttributes) {
+            this.delegate = delegate;
+            this.artifactTransform = artifactTransform;
+            this.outputAttributes = outputAttributes;
+        }
+
+        /**
+         * Calculates the key when the transform runs for the first time, as many transformers are only created to find out whether a transform exists.
+         */
+        @Nullable
+        private synchronized HashCode getTransformKey() {
+            if (!keyCalculated) {
+                transformKey = transformKeyFor(artifactTransform, outputAttributes);
+                keyCalculated = true;
+            }
+            return transformKey;
+        }
+
+        @Override
+        public List<File> transform(final File input) {
+            HashCode transformKey = getTransformKey();
+            if (transformKey == null) {
+                return delegate.transform(input);
+            }
+            return transformedFileCache.getResult(input, transformKey, new Transformer<List<File>, File>() {
+                @Override
+                public List<File> transform(File outputDirectory) {
+                    artifactTransform.setOutputDirectory(outputDirectory);
+                    return delegate.transform(input);
+                }
+            });
+        }
     }
 
     private static class ArtifactFileTransformer implements Transformer<List<File>, File> {
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform;
+
+import com.google.common.hash.HashCode;
+import org.gradle.api.Transformer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Keeps the results of artifact transforms in the Gradle user home, so that they can be reused by other resolutions, builds and projects.
+ */
+public interface TransformedFileCache {
+    /**
+     * Returns the result of applying a transform to the given file. The transform is only run when there is no result for a file with the same
+     * content and a transform with the same key, or when the input is not a regular file.
+     *
+     * @param input The file to transform.
+     * @param transformKey A hash of the transform implementation and its parameters.
+     * @param transform Receives the directory to write the outputs to, runs the transform and returns the output files.
+     */
+    List<File> getResult(File input, HashCode transformKey, Transformer<List<File>, File> transform);
+}
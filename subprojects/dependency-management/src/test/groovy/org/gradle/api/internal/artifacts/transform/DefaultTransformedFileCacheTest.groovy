@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform
+
+import com.google.common.hash.HashCode
+import org.gradle.api.Transformer
+import org.gradle.api.internal.hash.DefaultFileHasher
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.internal.DefaultFileLockManagerTestHelper
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testfixtures.internal.InMemoryCacheFactory
+import org.junit.Rule
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+class DefaultTransformedFileCacheTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheDir = tmpDir.file("cache")
+    def cacheBuilder = Stub(CacheBuilder)
+    def cacheRepository = Stub(CacheRepository)
+    // Shared by all caches, like the caches of different builds share the file system
+    def lockManager = DefaultFileLockManagerTestHelper.createDefaultFileLockManager()
+    def transformKey = HashCode.fromInt(123)
+    def input = tmpDir.createFile("input.jar") << "content"
+    def transform = Mock(Transformer)
+    DefaultTransformedFileCache cache
+
+    def setup() {
+        cacheRepository.cache("transforms-1") >> cacheBuilder
+        cacheBuilder.withDisplayName(_) >> cacheBuilder
+        cacheBuilder.withLockOptions(_) >> cacheBuilder
+        cacheBuilder.open() >> new InMemoryCacheFactory.InMemoryCache(cacheDir)
+        cache = newCache()
+    }
+
+    def "runs transform once and publishes outputs to the cache"() {
+        when:
+        def result = cache.getResult(input, transformKey, transform)
+
+        then:
+        1 * transform.transform(_) >> { File outputDir ->
+            [writeOutput(outputDir, "a.txt", "a"), writeOutput(outputDir, "nested/b.txt", "b")]
+        }
+        result.size() == 2
+        result.every { it.file && it.path.startsWith(cacheDir.path) && !it.path.contains(".tmp") }
+        result*.text == ["a", "b"]
+
+        when:
+        def second = cache.getResult(input, transformKey, transform)
+
+        then:
+        0 * transform._
+        second == result
+    }
+
+    def "reuses result published by another process"() {
+        cache.getResult(input, transformKey, { File outputDir -> [writeOutput(outputDir, "a.txt", "a")] } as Transformer)
+
+        when:
+        def result = newCache().getResult(input, transformKey, transform)
+
+        then:
+        0 * transform._
+        result*.text == ["a"]
+    }
+
+    def "runs transform again when input content or transform key changes"() {
+        cache.getResult(input, transformKey, { File outputDir -> [writeOutput(outputDir, "a.txt", "a")] } as Transformer)
+
+        when:
+        cache.getResult(input, HashCode.fromInt(456), transform)
+
+        then:
+        1 * transform.transform(_) >> { File outputDir -> [] }
+
+        when:
+        input.text = "changed"
+        cache.getResult(input, transformKey, transform)
+
+        then:
+        1 * transform.transform(_) >> { File outputDir -> [] }
+    }
+
+    def "input file can be part of the result"() {
+        cache.getResult(input, transformKey, { File outputDir -> [input] } as Transformer)
+        def renamed = tmpDir.createDir("other").file("input.jar") << "content"
+
+        expect:
+        newCache().getResult(renamed, transformKey, transform) == [renamed]
+    }
+
+    def "does not publish result of failed transform"() {
+        def failure = new RuntimeException("broken")
+
+        when:
+        cache.getResult(input, transformKey, transform)
+
+        then:
+        1 * transform.transform(_) >> { File outputDir ->
+            writeOutput(outputDir, "partial.txt", "partial")
+            throw failure
+        }
+        def e = thrown(RuntimeException)
+        e == failure
+        entries() == []
+
+        when:
+        def result = cache.getResult(input, transformKey, transform)
+
+        then:
+        1 * transform.transform(_) >> { File outputDir -> [writeOutput(outputDir, "a.txt", "a")] }
+        result*.text == ["a"]
+    }
+
+    def "does not reuse result with outputs outside of the cache"() {
+        def external = tmpDir.createFile("external.txt")
+
+        when:
+        def first = cache.getResult(input, transformKey, transform)
+        def second = cache.getResult(input, transformKey, transform)
+
+        then:
+        2 * transform.transform(_) >> [external]
+        first == [external]
+        second == [external]
+        entries() == []
+    }
+
+    def "waits for the same transform running in another thread and uses its result"() {
+        def results = new CopyOnWriteArrayList()
+
+        when:
+        async {
+            start {
+                results << cache.getResult(input, transformKey, { File outputDir ->
+                    instant.running
+                    thread.block()
+                    [writeOutput(outputDir, "a.txt", "a")]
+                } as Transformer)
+                instant.transformed
+            }
+            start {
+                thread.blockUntil.running
+                results << cache.getResult(input, transformKey, transform)
+                instant.reused
+            }
+        }
+
+        then:
+        0 * transform._
+        results.size() == 2
+        results[0] == results[1]
+        results[1]*.text == ["a"]
+        entries().size() == 1
+    }
+
+    def "always runs transform for directories in a private location"() {
+        def dir = tmpDir.createDir("classes")
+
+        when:
+        def first = cache.getResult(dir, transformKey, transform)
+        def second = cache.getResult(dir, transformKey, transform)
+
+        then:
+        1 * transform.transform(_) >> { File outputDir -> [writeOutput(outputDir, "a.txt", "a")] }
+        1 * transform.transform(_) >> { File outputDir -> [writeOutput(outputDir, "a.txt", "b")] }
+        first != second
+        first*.text == ["a"]
+        second*.text == ["b"]
+        entries() == []
+
+        when:
+        cache.close()
+
+        then:
+        !first[0].exists()
+        !second[0].exists()
+    }
+
+    def "removes entries that have not been used for a while"() {
+        def other = tmpDir.createFile("other.jar") << "other"
+        cache.getResult(input, transformKey, { File outputDir -> [writeOutput(outputDir, "a.txt", "a")] } as Transformer)
+        cache.getResult(other, transformKey, { File outputDir -> [writeOutput(outputDir, "b.txt", "b")] } as Transformer)
+        def unused = entries().find { new File(it, "outputs/a.txt").file }
+        unused.lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(8)
+        new File(cacheDir, "gc.properties").lastModified = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)
+
+        when:
+        newCache().getResult(other, transformKey, transform)
+
+        then:
+        0 * transform._
+        entries().size() == 1
+        !unused.exists()
+    }
+
+    private DefaultTransformedFileCache newCache() {
+        new DefaultTransformedFileCache(cacheRepository, new DefaultFileHasher(), lockManager)
+    }
+
+    private List<File> entries() {
+        cacheDir.listFiles().findAll { !(it.name in ["locks", "private", "gc.properties"]) }
+    }
+
+    private static File writeOutput(File outputDir, String path, String text) {
+        def file = new File(outputDir, path)
+        file.parentFile.mkdirs()
+        file.text = text
+        return file
+    }
+}
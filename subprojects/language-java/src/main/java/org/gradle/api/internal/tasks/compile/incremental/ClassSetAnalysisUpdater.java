@@ -16,22 +16,35 @@
 
 package org.gradle.api.internal.tasks.compile.incremental;
 
+import org.gradle.api.file.EmptyFileVisitor;
 import org.gradle.api.file.FileTree;
+import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.cache.Stash;
 import org.gradle.api.internal.file.FileOperations;
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.time.Timer;
 import org.gradle.internal.time.Timers;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class ClassSetAnalysisUpdater {
 
     private final static Logger LOG = Logging.getLogger(ClassSetAnalysisUpdater.class);
 
+    /**
+     * Class files modified this long before the compilation started are analyzed again as well, as some file systems only keep timestamps with a resolution of seconds.
+     */
+    static final long TIMESTAMP_TOLERANCE = 2000;
+
     private final Stash<ClassSetAnalysisData> stash;
     private final FileOperations fileOperations;
     private ClassDependenciesAnalyzer analyzer;
@@ -51,4 +64,65 @@ public class ClassSetAnalysisUpdater {
         stash.put(data);
         LOG.info("Class dependency analysis for incremental compilation took {}.", clock.getElapsed());
     }
+
+    /**
+     * Updates the analysis of the previous compilation after only some classes were recompiled. Only the class files written by
+     * the compilation are analyzed, everything else is taken over from the previous analysis.
+     *
+     * <p>The class files of the recompiled classes and of new classes are found by name. Timestamps are only used to also find other top level
+     * classes declared in the recompiled source files, so a clock that is off cannot cause recompiled classes to be missed.</p>
+     */
+    public void updateAnalysis(JavaCompileSpec spec, IncrementalCompilationResult result) {
+        Timer clock = Timers.startTimer();
+        final ClassSetAnalysisData previous = result.getPreviousAnalysis();
+        final Set<String> recompiledClasses = new HashSet<String>(result.getRecompiledClasses());
+        final long modifiedSince = result.getStartTime() - TIMESTAMP_TOLERANCE;
+        final List<FileVisitDetails> writtenClassFiles = new ArrayList<FileVisitDetails>();
+        fileOperations.fileTree(spec.getDestinationDir()).visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                if (!fileDetails.getName().endsWith(".class")) {
+                    return;
+                }
+                String className = ClassFilesAnalyzer.toClassName(fileDetails.getPath());
+                if (isRecompiled(className, recompiledClasses)
+                    || !previous.getClassNames().contains(className)
+                    || fileDetails.getLastModified() >= modifiedSince) {
+                    writtenClassFiles.add(fileDetails);
+                }
+            }
+        });
+
+        Set<String> removedClasses = new HashSet<String>();
+        for (String className : previous.getClassNames()) {
+            if (isRecompiled(className, recompiledClasses)) {
+                removedClasses.add(className);
+            }
+        }
+        for (FileVisitDetails classFile : writtenClassFiles) {
+            removedClasses.add(ClassFilesAnalyzer.toClassName(classFile.getPath()));
+        }
+
+        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer, new ClassDependentsAccumulator(previous, removedClasses));
+        for (FileVisitDetails classFile : writtenClassFiles) {
+            analyzer.visitFile(classFile);
+        }
+        stash.put(analyzer.getAnalysis());
+        LOG.info("Class dependency analysis of {} recompiled classes for incremental compilation took {}.", writtenClassFiles.size(), clock.getElapsed());
+    }
+
+    /**
+     * Checks whether the given class is one of the given recompiled classes or nested in one of them. These classes were deleted before compiling.
+     */
+    private static boolean isRecompiled(String className, Set<String> recompiledClasses) {
+        if (recompiledClasses.contains(className)) {
+            return true;
+        }
+        for (int i = className.indexOf('$'); i > 0; i = className.indexOf('$', i + 1)) {
+            if (recompiledClasses.contains(className.substring(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -38,7 +38,10 @@ class IncrementalCompilationFinalizer implements Compiler<JavaCompileSpec> {
     public WorkResult execute(JavaCompileSpec spec) {
         WorkResult out = delegate.execute(spec);
 
-        if (!(out instanceof RecompilationNotNecessary)) {
+        if (out instanceof IncrementalCompilationResult) {
+            //only the recompiled classes need to be analyzed again
+            updater.updateAnalysis(spec, (IncrementalCompilationResult) out);
+        } else if (!(out instanceof RecompilationNotNecessary)) {
             //if recompilation was skipped
             //there's no point in updating because we have exactly the same output classes)
             updater.updateAnalysis(spec);
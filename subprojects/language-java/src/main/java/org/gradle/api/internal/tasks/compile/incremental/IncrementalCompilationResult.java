@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.compile.incremental;
+
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.api.tasks.WorkResult;
+
+import java.util.Collection;
+
+/**
+ * The result of compiling only the stale classes. Keeps what is needed to update the class set analysis of the previous compilation,
+ * rather than analyzing all classes again.
+ */
+class IncrementalCompilationResult implements WorkResult {
+
+    private final WorkResult delegate;
+    private final ClassSetAnalysisData previousAnalysis;
+    private final Collection<String> recompiledClasses;
+    private final long startTime;
+
+    IncrementalCompilationResult(WorkResult delegate, ClassSetAnalysisData previousAnalysis, Collection<String> recompiledClasses, long startTime) {
+        this.delegate = delegate;
+        this.previousAnalysis = previousAnalysis;
+        this.recompiledClasses = recompiledClasses;
+        this.startTime = startTime;
+    }
+
+    @Override
+    public boolean getDidWork() {
+        return delegate.getDidWork();
+    }
+
+    public ClassSetAnalysisData getPreviousAnalysis() {
+        return previousAnalysis;
+    }
+
+    /**
+     * The names of the top level classes that were deleted and compiled again, if their source still exists.
+     */
+    public Collection<String> getRecompiledClasses() {
+        return recompiledClasses;
+    }
+
+    /**
+     * The time at which the compilation started. Class files modified since then were written by the compiler.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+}
@@ -59,6 +59,7 @@ class SelectiveCompiler implements org.gradle.language.base.internal.compile.Com
             return cleaningCompiler.execute(spec);
         }
 
+        long startTime = System.currentTimeMillis();
         incrementalCompilationInitilizer.initializeCompilation(spec, recompilationSpec.getClassNames());
         if (spec.getSource().isEmpty()) {
             LOG.lifecycle("None of the classes needs to be compiled! Analysis took {}. ", clock.getElapsed());
@@ -67,7 +68,8 @@ class SelectiveCompiler implements org.gradle.language.base.internal.compile.Com
 
         try {
             //use the original compiler to avoid cleaning up all the files
-            return cleaningCompiler.getCompiler().execute(spec);
+            WorkResult result = cleaningCompiler.getCompiler().execute(spec);
+            return new IncrementalCompilationResult(result, previousCompilation.getAnalysis().getData(), recompilationSpec.getClassNames(), startTime);
         } finally {
             LOG.lifecycle("Incremental compilation of {} classes completed in {}.", recompilationSpec.getClassNames().size(), clock.getElapsed());
         }
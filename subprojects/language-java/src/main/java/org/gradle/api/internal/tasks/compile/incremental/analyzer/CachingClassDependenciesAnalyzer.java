@@ -42,4 +42,14 @@ public class CachingClassDependenciesAnalyzer implements ClassDependenciesAnalyz
             }
         });
     }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(final String className, final byte[] classFile) {
+        HashCode hash = hasher.hash(classFile);
+        return cache.get(hash, new Factory<ClassAnalysis>() {
+            public ClassAnalysis create() {
+                return analyzer.getClassAnalysis(className, classFile);
+            }
+        });
+    }
 }
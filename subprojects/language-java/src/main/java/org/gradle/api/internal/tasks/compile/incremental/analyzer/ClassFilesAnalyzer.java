@@ -35,6 +35,10 @@ public class ClassFilesAnalyzer implements FileVisitor {
         this(analyzer, "", new ClassDependentsAccumulator(""));
     }
 
+    public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, ClassDependentsAccumulator accumulator) {
+        this(analyzer, "", accumulator);
+    }
+
     ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, String packagePrefix, ClassDependentsAccumulator accumulator) {
         this.analyzer = analyzer;
         this.packagePrefix = packagePrefix;
@@ -50,7 +54,7 @@ public class ClassFilesAnalyzer implements FileVisitor {
         if (!hasExtension(file, ".class")) {
             return;
         }
-        String className = fileDetails.getPath().replaceAll("/", ".").replaceAll("\\.class$", "");
+        String className = toClassName(fileDetails.getPath());
         if (!className.startsWith(packagePrefix)) {
             return;
         }
@@ -59,6 +63,25 @@ public class ClassFilesAnalyzer implements FileVisitor {
         accumulator.addClass(className, analysis.isDependencyToAll(), analysis.getClassDependencies());
     }
 
+    /**
+     * Analyzes a class file whose content has already been read, for example from a jar entry.
+     */
+    public void visitClassFile(String className, byte[] content) {
+        if (!className.startsWith(packagePrefix)) {
+            return;
+        }
+
+        ClassAnalysis analysis = analyzer.getClassAnalysis(className, content);
+        accumulator.addClass(className, analysis.isDependencyToAll(), analysis.getClassDependencies());
+    }
+
+    /**
+     * Converts the relative path of a class file, such as {@code org/gradle/Foo.class}, to the name of the class.
+     */
+    public static String toClassName(String classFilePath) {
+        return classFilePath.substring(0, classFilePath.length() - ".class".length()).replace('/', '.');
+    }
+
     public ClassSetAnalysisData getAnalysis() {
         return new ClassSetAnalysisData(accumulator.getDependentsMap());
     }
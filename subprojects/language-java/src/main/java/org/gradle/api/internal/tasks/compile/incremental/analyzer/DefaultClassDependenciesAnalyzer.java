@@ -32,8 +32,13 @@ import java.util.Set;
 public class DefaultClassDependenciesAnalyzer implements ClassDependenciesAnalyzer {
 
     public ClassAnalysis getClassAnalysis(String className, InputStream input) throws IOException {
+        return getClassAnalysis(className, ByteStreams.toByteArray(input));
+    }
+
+    @Override
+    public ClassAnalysis getClassAnalysis(String className, byte[] classFile) {
         ClassRelevancyFilter filter = new ClassRelevancyFilter(className);
-        ClassReader reader = new Java9ClassReader(ByteStreams.toByteArray(input));
+        ClassReader reader = new Java9ClassReader(classFile);
         ClassDependenciesVisitor visitor = new ClassDependenciesVisitor();
         reader.accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
 
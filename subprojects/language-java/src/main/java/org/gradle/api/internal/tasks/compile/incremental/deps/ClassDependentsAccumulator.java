@@ -16,8 +16,10 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.deps;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class ClassDependentsAccumulator {
 
@@ -28,6 +30,29 @@ public class ClassDependentsAccumulator {
         this.packagePrefix = packagePrefix;
     }
 
+    /**
+     * Creates an accumulator that starts out with the given analysis, minus everything that was learned from analyzing the given classes.
+     * Those classes can then be added again, for example after they were recompiled.
+     */
+    public ClassDependentsAccumulator(ClassSetAnalysisData previous, Set<String> removedClasses) {
+        this("");
+        for (Map.Entry<String, DependentsSet> entry : previous.dependents.entrySet()) {
+            String className = entry.getKey();
+            boolean removed = removedClasses.contains(className);
+            DefaultDependentsSet d = new DefaultDependentsSet(!removed && entry.getValue().isDependencyToAll(), Collections.<String>emptySet());
+            for (String dependent : entry.getValue().getDependentClasses()) {
+                if (!removedClasses.contains(dependent)) {
+                    d.addDependent(dependent);
+                }
+            }
+            if (removed && d.getDependentClasses().isEmpty()) {
+                // Nothing else refers to the class, it is remembered again if it still exists
+                continue;
+            }
+            dependents.put(className, d);
+        }
+    }
+
     public void addClass(String className, boolean dependencyToAll, Iterable<String> classDependencies) {
         if (className.startsWith(packagePrefix)) {
             rememberClass(className).setDependencyToAll(dependencyToAll);
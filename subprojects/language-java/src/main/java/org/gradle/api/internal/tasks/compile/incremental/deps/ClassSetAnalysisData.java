@@ -38,6 +38,10 @@ public class ClassSetAnalysisData {
         return dependents.get(className);
     }
 
+    public Set<String> getClassNames() {
+        return dependents.keySet();
+    }
+
     public static class Serializer implements org.gradle.internal.serialize.Serializer<ClassSetAnalysisData> {
 
         private final MapSerializer<String, DependentsSet> serializer = new MapSerializer<String, DependentsSet>(
@@ -16,8 +16,6 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
-import org.gradle.api.internal.file.FileOperations;
-
 import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
@@ -25,17 +23,11 @@ import java.util.List;
 import static org.gradle.internal.FileUtils.hasExtension;
 
 public class ClasspathJarFinder {
-    private final FileOperations fileOperations;
-
-    public ClasspathJarFinder(FileOperations fileOperations) {
-        this.fileOperations = fileOperations;
-    }
-
     public Iterable<JarArchive> findJarArchives(Iterable<File> classpath) {
         List<JarArchive> out = new LinkedList<JarArchive>();
         for (File file : classpath) {
             if (hasExtension(file, ".jar")) {
-                out.add(new JarArchive(file, fileOperations.zipTree(file), fileOperations.getFileResolver().getPatternSetFactory())); //TODO SF only create zip tree when needed, limit usages of JarArchive
+                out.add(new JarArchive(file));
             }
         }
         return out;
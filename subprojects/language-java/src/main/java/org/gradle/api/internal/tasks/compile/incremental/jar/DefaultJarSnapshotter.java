@@ -17,15 +17,23 @@ package org.gradle.api.internal.tasks.compile.incremental.jar;
 
 import com.google.common.collect.Maps;
 import com.google.common.hash.HashCode;
-import org.gradle.api.file.FileTree;
-import org.gradle.api.file.FileVisitDetails;
-import org.gradle.api.file.FileVisitor;
+import com.google.common.io.ByteStreams;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.hash.FileHasher;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+/**
+ * Snapshots a jar by streaming its class file entries straight into the hasher and the class analyzer, without extracting them.
+ */
 class DefaultJarSnapshotter {
 
     private final FileHasher hasher;
@@ -37,22 +45,30 @@ class DefaultJarSnapshotter {
     }
 
     public JarSnapshot createSnapshot(HashCode hash, JarArchive jarArchive) {
-        return createSnapshot(hash, jarArchive.contents, new ClassFilesAnalyzer(analyzer));
+        return createSnapshot(hash, jarArchive.file, new ClassFilesAnalyzer(analyzer));
     }
 
-    JarSnapshot createSnapshot(HashCode hash, FileTree classes, final ClassFilesAnalyzer analyzer) {
-        final Map<String, HashCode> hashes = Maps.newHashMap();
-        classes.visit(new FileVisitor() {
-            public void visitDir(FileVisitDetails dirDetails) {
-            }
-
-            public void visitFile(FileVisitDetails fileDetails) {
-                analyzer.visitFile(fileDetails);
-                String className = fileDetails.getPath().replaceAll("/", ".").replaceAll("\\.class$", "");
-                HashCode classHash = hasher.hash(fileDetails.getFile());
-                hashes.put(className, classHash);
+    JarSnapshot createSnapshot(HashCode hash, File jar, ClassFilesAnalyzer analyzer) {
+        Map<String, HashCode> hashes = Maps.newHashMap();
+        try {
+            ZipInputStream input = new ZipInputStream(new BufferedInputStream(new FileInputStream(jar)));
+            try {
+                ZipEntry entry;
+                while ((entry = input.getNextEntry()) != null) {
+                    if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                        continue;
+                    }
+                    byte[] content = ByteStreams.toByteArray(input);
+                    String className = ClassFilesAnalyzer.toClassName(entry.getName());
+                    analyzer.visitClassFile(className, content);
+                    hashes.put(className, hasher.hash(content));
+                }
+            } finally {
+                input.close();
             }
-        });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create snapshot of jar " + jar, e);
+        }
 
         return new JarSnapshot(new JarSnapshotData(hash, hashes, analyzer.getAnalysis()));
     }
@@ -16,30 +16,59 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
+import org.gradle.api.Nullable;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+/**
+ * Creates the snapshot of a classpath from the snapshots of its jars.
+ *
+ * <p>When an executor factory and more than one thread are given, the jars are snapshotted in parallel. The {@link JarSnapshotter} used must be safe to call from multiple threads then.</p>
+ */
 public class JarClasspathSnapshotFactory {
 
     private final JarSnapshotter jarSnapshotter;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
 
     public JarClasspathSnapshotFactory(JarSnapshotter jarSnapshotter) {
+        this(jarSnapshotter, null, 1);
+    }
+
+    /**
+     * @param maxThreads the number of threads to snapshot jars with, usually the maximum number of workers of the build.
+     */
+    public JarClasspathSnapshotFactory(JarSnapshotter jarSnapshotter, @Nullable ExecutorFactory executorFactory, int maxThreads) {
         this.jarSnapshotter = jarSnapshotter;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
     }
 
     JarClasspathSnapshot createSnapshot(Iterable<JarArchive> jarArchives) {
+        List<JarArchive> jars = Lists.newArrayList(jarArchives);
+        List<JarSnapshot> snapshots = createSnapshots(jars);
+
         Map<File, JarSnapshot> jarSnapshots = Maps.newHashMap();
         Map<File, HashCode> jarHashes = Maps.newHashMap();
         Set<String> allClasses = Sets.newHashSet();
         Set<String> duplicateClasses = Sets.newHashSet();
 
-        for (JarArchive jar : jarArchives) {
-            JarSnapshot snapshot = jarSnapshotter.createSnapshot(jar);
+        for (int i = 0; i < jars.size(); i++) {
+            JarArchive jar = jars.get(i);
+            JarSnapshot snapshot = snapshots.get(i);
             jarSnapshots.put(jar.file, snapshot);
             jarHashes.put(jar.file, snapshot.getHash());
             for (String c : snapshot.getClasses()) {
@@ -51,4 +80,37 @@ public class JarClasspathSnapshotFactory {
         JarClasspathSnapshotData jarClasspathSnapshotData = new JarClasspathSnapshotData(jarHashes, duplicateClasses);
         return new JarClasspathSnapshot(jarSnapshots, jarClasspathSnapshotData);
     }
+
+    private List<JarSnapshot> createSnapshots(List<JarArchive> jars) {
+        List<JarSnapshot> snapshots = Lists.newArrayListWithCapacity(jars.size());
+        if (executorFactory == null || maxThreads < 2 || jars.size() < 2) {
+            for (JarArchive jar : jars) {
+                snapshots.add(jarSnapshotter.createSnapshot(jar));
+            }
+            return snapshots;
+        }
+
+        StoppableExecutor executor = executorFactory.create("Jar snapshotting", Math.min(jars.size(), maxThreads));
+        try {
+            List<Future<JarSnapshot>> futures = Lists.newArrayListWithCapacity(jars.size());
+            for (final JarArchive jar : jars) {
+                futures.add(executor.submit(new Callable<JarSnapshot>() {
+                    @Override
+                    public JarSnapshot call() {
+                        return jarSnapshotter.createSnapshot(jar);
+                    }
+                }));
+            }
+            for (Future<JarSnapshot> future : futures) {
+                snapshots.add(future.get());
+            }
+            return snapshots;
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } finally {
+            executor.stop();
+        }
+    }
 }
@@ -51,4 +51,8 @@ public class PreviousCompilation {
     public DependentsSet getDependents(String className) {
         return analysis.getRelevantDependents(className);
     }
+
+    public ClassSetAnalysis getAnalysis() {
+        return analysis;
+    }
 }
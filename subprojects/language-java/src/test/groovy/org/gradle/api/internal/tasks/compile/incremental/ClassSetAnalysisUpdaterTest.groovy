@@ -17,10 +17,16 @@
 package org.gradle.api.internal.tasks.compile.incremental
 
 import org.gradle.api.file.ConfigurableFileTree
+import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.file.FileVisitor
 import org.gradle.api.internal.cache.Stash
 import org.gradle.api.internal.file.FileOperations
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysis
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
+import org.gradle.api.internal.tasks.compile.incremental.deps.DefaultDependentsSet
+import org.gradle.api.tasks.WorkResult
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -39,4 +45,86 @@ class ClassSetAnalysisUpdaterTest extends Specification {
         1 * operations.fileTree(_) >> Mock(ConfigurableFileTree)
         1 * stash.put(_)
     }
+
+    def "analyzes only class files written by incremental compilation"() {
+        // A -> C, B -> A, A$1 -> C
+        def previous = new ClassSetAnalysisData([
+            "C": DefaultDependentsSet.dependents("A", "A\$1"),
+            "A": DefaultDependentsSet.dependents("B"),
+            "B": DefaultDependentsSet.dependents(),
+            "A\$1": DefaultDependentsSet.dependents()
+        ])
+        def startTime = 100000
+        def tree = Mock(ConfigurableFileTree)
+        ClassSetAnalysisData data = null
+
+        when:
+        updater.updateAnalysis(Stub(JavaCompileSpec), new IncrementalCompilationResult(Stub(WorkResult), previous, ["A"], startTime))
+
+        then:
+        1 * operations.fileTree(_) >> tree
+        1 * tree.visit(_ as FileVisitor) >> { FileVisitor visitor ->
+            visitor.visitFile(classFile("A.class", startTime + 1))
+            visitor.visitFile(classFile("B.class", startTime - ClassSetAnalysisUpdater.TIMESTAMP_TOLERANCE - 1))
+            visitor.visitFile(classFile("A.properties", startTime + 1))
+            tree
+        }
+        1 * analyzer.getClassAnalysis("A", new File("A.class")) >> new ClassAnalysis(["D"] as Set, true)
+        1 * stash.put(_) >> { ClassSetAnalysisData d -> data = d }
+        0 * analyzer._
+
+        and:
+        data.classNames == ["A", "B", "C", "D"] as Set
+        data.getDependents("A").dependencyToAll
+        data.getDependents("A").dependentClasses == ["B"] as Set
+        data.getDependents("C").dependentClasses.isEmpty()
+        data.getDependents("D").dependentClasses == ["A"] as Set
+    }
+
+    def "finds class files of recompiled and new classes by name regardless of their timestamps"() {
+        // A -> C, B -> A, A$1 -> C
+        def previous = new ClassSetAnalysisData([
+            "C": DefaultDependentsSet.dependents("A", "A\$1"),
+            "A": DefaultDependentsSet.dependents("B"),
+            "B": DefaultDependentsSet.dependents(),
+            "A\$1": DefaultDependentsSet.dependents()
+        ])
+        def startTime = 100000
+        def old = startTime - ClassSetAnalysisUpdater.TIMESTAMP_TOLERANCE - 1
+        def tree = Mock(ConfigurableFileTree)
+        ClassSetAnalysisData data = null
+
+        when:
+        updater.updateAnalysis(Stub(JavaCompileSpec), new IncrementalCompilationResult(Stub(WorkResult), previous, ["A"], startTime))
+
+        then:
+        1 * operations.fileTree(_) >> tree
+        1 * tree.visit(_ as FileVisitor) >> { FileVisitor visitor ->
+            visitor.visitFile(classFile("A.class", old))
+            visitor.visitFile(classFile("A\$1.class", old))
+            visitor.visitFile(classFile("B.class", old))
+            visitor.visitFile(classFile("C.class", old))
+            visitor.visitFile(classFile("Other.class", old))
+            tree
+        }
+        1 * analyzer.getClassAnalysis("A", new File("A.class")) >> new ClassAnalysis(["C"] as Set, false)
+        1 * analyzer.getClassAnalysis("A\$1", new File("A\$1.class")) >> new ClassAnalysis(["C"] as Set, false)
+        1 * analyzer.getClassAnalysis("Other", new File("Other.class")) >> new ClassAnalysis(["A"] as Set, false)
+        1 * stash.put(_) >> { ClassSetAnalysisData d -> data = d }
+        0 * analyzer._
+
+        and:
+        data.classNames == ["A", "A\$1", "B", "C", "Other"] as Set
+        data.getDependents("A").dependentClasses == ["B", "Other"] as Set
+        data.getDependents("C").dependentClasses == ["A", "A\$1"] as Set
+    }
+
+    private FileVisitDetails classFile(String path, long lastModified) {
+        Stub(FileVisitDetails) {
+            getName() >> path
+            getPath() >> path
+            getFile() >> new File(path)
+            getLastModified() >> lastModified
+        }
+    }
 }
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.compile.incremental
 
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
 import org.gradle.api.internal.tasks.compile.incremental.jar.JarClasspathSnapshotWriter
 import org.gradle.api.tasks.WorkResult
 import org.gradle.language.base.internal.compile.Compiler
@@ -43,6 +44,19 @@ class IncrementalCompilationFinalizerTest extends Specification {
         0 * _
     }
 
+    def "updates analysis of recompiled classes after incremental compilation"() {
+        def result = new IncrementalCompilationResult(Mock(WorkResult), Stub(ClassSetAnalysisData), ["A"], 0)
+
+        when:
+        finalizer.execute(compileSpec)
+
+        then:
+        1 * compiler.execute(compileSpec) >> result
+        1 * infoUpdater.updateAnalysis(compileSpec, result)
+        1 * writer.storeJarSnapshots(_)
+        0 * _
+    }
+
     def "does not update if rebuild was not required"() {
         when:
         finalizer.execute(compileSpec)
@@ -96,6 +96,48 @@ class ClassDependentsAccumulatorTest extends Specification {
         accumulator.dependentsMap["org.gradle.Foo"].dependentClasses.isEmpty()
     }
 
+    def "starts from previous analysis without the removed classes"() {
+        // a -> c, b -> a, a$1 -> c, x -> y
+        def previous = new ClassSetAnalysisData([
+            "c": DefaultDependentsSet.dependents("a", "a\$1"),
+            "a": new DefaultDependentsSet(true, ["b"]),
+            "b": DefaultDependentsSet.dependents(),
+            "a\$1": DefaultDependentsSet.dependents(),
+            "y": DefaultDependentsSet.dependents("x"),
+            "x": new DefaultDependentsSet(true, [])
+        ])
+
+        when:
+        accumulator = new ClassDependentsAccumulator(previous, ["a", "a\$1", "x"] as Set)
+
+        then:
+        accumulator.dependentsMap.keySet() == ["a", "b", "c", "y"] as Set
+        accumulator.dependentsMap.a.dependentClasses == ["b"] as Set
+        !accumulator.dependentsMap.a.dependencyToAll
+        accumulator.dependentsMap.c.dependentClasses.isEmpty()
+        accumulator.dependentsMap.y.dependentClasses.isEmpty()
+
+        when:
+        accumulator.addClass("a", true, ["d"])
+
+        then:
+        accumulator.dependentsMap.a.dependencyToAll
+        accumulator.dependentsMap.a.dependentClasses == ["b"] as Set
+        accumulator.dependentsMap.d.dependentClasses == ["a"] as Set
+    }
+
+    def "does not change previous analysis"() {
+        def previous = new ClassSetAnalysisData(["a": DefaultDependentsSet.dependents("b"), "b": DefaultDependentsSet.dependents()])
+
+        when:
+        accumulator = new ClassDependentsAccumulator(previous, ["b"] as Set)
+        accumulator.addClass("c", false, ["a"])
+
+        then:
+        previous.getDependents("a").dependentClasses == ["b"] as Set
+        accumulator.dependentsMap.a.dependentClasses == ["c"] as Set
+    }
+
     def "filters out self dependencies"() {
         accumulator.addClass("a", false, ["a", "b"])
 
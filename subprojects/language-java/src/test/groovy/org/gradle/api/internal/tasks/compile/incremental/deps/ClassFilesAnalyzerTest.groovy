@@ -59,4 +59,24 @@ class ClassFilesAnalyzerTest extends Specification {
         1 * accumulator.addClass("org.foo.Foo", true, new HashSet(["A"]))
         0 * _
     }
+
+    def "accumulates dependencies of class file content"() {
+        def content = [1, 2, 3] as byte[]
+        when: analyzer.visitClassFile("org.foo.Foo", content)
+        then:
+        1 * classAnalyzer.getClassAnalysis("org.foo.Foo", content) >> new ClassAnalysis(new HashSet(["A"]), false)
+        1 * accumulator.addClass("org.foo.Foo", false, new HashSet(["A"]))
+        0 * _
+    }
+
+    def "is sensitive to package prefix for class file content"() {
+        when: analyzer.visitClassFile("com.foo.Foo", [1, 2, 3] as byte[])
+        then: 0 * _
+    }
+
+    def "converts class file path to class name"() {
+        expect:
+        ClassFilesAnalyzer.toClassName("Foo.class") == "Foo"
+        ClassFilesAnalyzer.toClassName("org/foo/Foo\$Inner.class") == "org.foo.Foo\$Inner"
+    }
 }
@@ -19,21 +19,21 @@
 package org.gradle.api.internal.tasks.compile.incremental.jar
 
 import com.google.common.base.Charsets
+import com.google.common.hash.HashCode
 import com.google.common.hash.Hashing
-import org.gradle.api.internal.file.TestFiles
-import org.gradle.api.internal.file.collections.DirectoryFileTree
-import org.gradle.api.internal.file.collections.FileTreeAdapter
 import org.gradle.api.internal.hash.FileHasher
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
+import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
-import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Subject
 
-@UsesNativeServices
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
 class DefaultJarSnapshotterTest extends Specification {
 
     @Rule TestNameTestDirectoryProvider temp = new TestNameTestDirectoryProvider()
@@ -42,29 +42,48 @@ class DefaultJarSnapshotterTest extends Specification {
     @Subject snapshotter = new DefaultJarSnapshotter(hasher, Mock(ClassDependenciesAnalyzer))
 
     def "creates snapshot for an empty jar"() {
+        def jar = jar("a.jar", [:])
+
         expect:
-        def snapshot = snapshotter.createSnapshot(Hashing.md5().hashString("foo", Charsets.UTF_8), new JarArchive(new File("a.jar"), new FileTreeAdapter(new DirectoryFileTree(new File("missing"))), TestFiles.resolver().getPatternSetFactory()))
+        def snapshot = snapshotter.createSnapshot(Hashing.md5().hashString("foo", Charsets.UTF_8), new JarArchive(jar))
         snapshot.hashes.isEmpty()
         snapshot.analysis
     }
 
     def "creates snapshot of a jar with classes"() {
-        def f1 = temp.createFile("foo/Foo.class")
-        def f2 = temp.createFile("foo/com/Foo2.class")
+        def jar = jar("a.jar", ["Foo.class": "foo", "com/": null, "com/Foo2.class": "foo2", "com/foo.properties": "props"])
         def analyzer = Mock(ClassFilesAnalyzer)
 
         when:
-        def snapshot = snapshotter.createSnapshot(Hashing.md5().hashString("foo", Charsets.UTF_8), new FileTreeAdapter(new DirectoryFileTree(temp.file("foo"))), analyzer)
+        def snapshot = snapshotter.createSnapshot(Hashing.md5().hashString("foo", Charsets.UTF_8), jar, analyzer)
 
         then:
-        2 * analyzer.visitFile(_)
-        1 * hasher.hash(f1)
-        1 * hasher.hash(f2)
+        1 * analyzer.visitClassFile("Foo", "foo".bytes)
+        1 * analyzer.visitClassFile("com.Foo2", "foo2".bytes)
+        1 * hasher.hash("foo".bytes) >> HashCode.fromInt(1)
+        1 * hasher.hash("foo2".bytes) >> HashCode.fromInt(2)
         1 * analyzer.getAnalysis() >> Stub(ClassSetAnalysisData)
         0 * _._
 
         and:
-        snapshot.hashes.keySet() == ["Foo", "com.Foo2"] as Set
+        snapshot.hashes == ["Foo": HashCode.fromInt(1), "com.Foo2": HashCode.fromInt(2)]
         snapshot.analysis
     }
+
+    private TestFile jar(String name, Map<String, String> entries) {
+        def jar = temp.file(name)
+        def output = new ZipOutputStream(new FileOutputStream(jar))
+        try {
+            entries.each { path, content ->
+                output.putNextEntry(new ZipEntry(path))
+                if (content != null) {
+                    output.write(content.bytes)
+                }
+                output.closeEntry()
+            }
+        } finally {
+            output.close()
+        }
+        jar
+    }
 }
@@ -17,8 +17,7 @@
 package org.gradle.api.internal.tasks.compile.incremental.jar
 
 import com.google.common.hash.HashCode
-import org.gradle.api.file.FileTree
-import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -47,8 +46,8 @@ class JarClasspathSnapshotFactoryTest extends Specification {
     }
 
     def "creates classpath snapshot with correct hashes"() {
-        def jar1 = new JarArchive(new File("f1"), Stub(FileTree), TestFiles.resolver().getPatternSetFactory())
-        def jar2 = new JarArchive(new File("f2"), Stub(FileTree), TestFiles.resolver().getPatternSetFactory())
+        def jar1 = new JarArchive(new File("f1"))
+        def jar2 = new JarArchive(new File("f2"))
 
         def sn1 = Stub(JarSnapshot) { getHash() >> HashCode.fromString("1234") }
         def sn2 = Stub(JarSnapshot) { getHash() >> HashCode.fromString("2345") }
@@ -64,4 +63,48 @@ class JarClasspathSnapshotFactoryTest extends Specification {
         s.data.jarHashes[new File("f1")] == HashCode.fromString("1234")
         s.data.jarHashes[new File("f2")] == HashCode.fromString("2345")
     }
+
+    def "snapshots jars in parallel when an executor factory is given"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelFactory = new JarClasspathSnapshotFactory(snapshotter, executorFactory, 4)
+        def jars = (1..5).collect { new JarArchive(new File("f$it")) }
+        def threads = Collections.synchronizedSet(new HashSet<Thread>())
+
+        when:
+        def s = parallelFactory.createSnapshot(jars)
+
+        then:
+        5 * snapshotter.createSnapshot(_) >> { JarArchive jar ->
+            threads << Thread.currentThread()
+            Stub(JarSnapshot) {
+                getHash() >> HashCode.fromInt(jar.file.name.hashCode())
+                getClasses() >> ["A", jar.file.name]
+            }
+        }
+        !threads.contains(Thread.currentThread())
+        threads.size() <= 4
+        s.data.jarHashes.size() == 5
+        jars.every { s.data.jarHashes[it.file] == HashCode.fromInt(it.file.name.hashCode()) }
+        s.data.duplicateClasses == ["A"] as Set
+
+        cleanup:
+        executorFactory.stop()
+    }
+
+    def "propagates failure to snapshot a jar"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelFactory = new JarClasspathSnapshotFactory(snapshotter, executorFactory, 4)
+        def failure = new RuntimeException("broken")
+        snapshotter.createSnapshot(_) >> { throw failure }
+
+        when:
+        parallelFactory.createSnapshot([new JarArchive(new File("f1")), new JarArchive(new File("f2"))])
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure
+
+        cleanup:
+        executorFactory.stop()
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.remote.internal.hub;
+
+import org.gradle.internal.dispatch.MethodInvocation;
+import org.gradle.internal.remote.internal.KryoBackedMessageSerializer;
+import org.gradle.internal.remote.internal.inet.SocketConnection;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.DefaultSerializerRegistry;
+import org.gradle.internal.serialize.SerializerRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+
+/**
+ * Measures how many method invocation messages per second can be sent over a loopback socket, using either the registered serializers or Java serialization for the arguments.
+ */
+@State(Scope.Thread)
+public class MethodInvocationMessagingBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"registry", "java"})
+    String serialization;
+
+    private ServerSocketChannel server;
+    private SocketConnection<MethodInvocation> sender;
+    private SocketConnection<MethodInvocation> receiver;
+    private Thread receiverThread;
+    private MethodInvocation invocation;
+
+    @Setup(Level.Trial)
+    public void connect() throws Exception {
+        DefaultSerializerRegistry registry = new DefaultSerializerRegistry();
+        registry.register(Long.class, BaseSerializerFactory.LONG_SERIALIZER);
+        registry.register(String.class, BaseSerializerFactory.STRING_SERIALIZER);
+        MethodArgsSerializer javaSerializer = new JavaSerializationBackedMethodArgsSerializer(getClass().getClassLoader());
+        MethodArgsSerializer argsSerializer = serialization.equals("registry")
+            ? new DefaultMethodArgsSerializer(Collections.<SerializerRegistry>singletonList(registry), javaSerializer)
+            : javaSerializer;
+        MethodInvocationSerializer serializer = new MethodInvocationSerializer(getClass().getClassLoader(), argsSerializer);
+
+        server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getByName(null), 0));
+        SocketChannel outgoing = SocketChannel.open(server.socket().getLocalSocketAddress());
+        SocketChannel incoming = server.accept();
+        sender = new SocketConnection<MethodInvocation>(outgoing, new KryoBackedMessageSerializer(), serializer);
+        receiver = new SocketConnection<MethodInvocation>(incoming, new KryoBackedMessageSerializer(), serializer);
+        receiverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (receiver.receive() != null) {
+                    // Discard
+                }
+            }
+        });
+        receiverThread.start();
+
+        invocation = new MethodInvocation(TestOutputListener.class.getMethod("output", Long.class, String.class), new Object[]{12L, "some output from a test"});
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws InterruptedException, IOException {
+        sender.stop();
+        receiverThread.join();
+        receiver.stop();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void dispatch() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sender.dispatch(invocation);
+        }
+        sender.flush();
+    }
+
+    public interface TestOutputListener {
+        void output(Long testId, String message);
+    }
+}
@@ -40,7 +40,7 @@ class DefaultMethodArgsSerializer implements MethodArgsSerializer {
         }
         SerializerRegistry selected = null;
         for (SerializerRegistry serializerRegistry : serializerRegistries) {
-            if (serializerRegistry.canSerialize(types[0])) {
+            if (canSerializeAll(serializerRegistry, types)) {
                 selected = serializerRegistry;
                 break;
             }
@@ -57,6 +57,16 @@ class DefaultMethodArgsSerializer implements MethodArgsSerializer {
         return new ArraySerializer(serializers);
     }
 
+    private static boolean canSerializeAll(SerializerRegistry serializerRegistry, Class<?>[] types) {
+        // Check every parameter, so that a method is only handed to the default serializer when no registry covers all of its parameters
+        for (Class<?> type : types) {
+            if (!serializerRegistry.canSerialize(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static class ArraySerializer implements Serializer<Object[]> {
         private final Serializer<Object>[] serializers;
 
@@ -36,6 +36,10 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class SocketConnection<T> implements RemoteConnection<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnection.class);
@@ -202,14 +206,23 @@ public class SocketConnection<T> implements RemoteConnection<T> {
 
     private static class SocketOutputStream extends OutputStream {
         private static final int RETRIES_WHEN_BUFFER_FULL = 2;
+        private static final int BUFFER_SIZE = 32 * 1024;
+        // Direct buffers are expensive to allocate and are only released by the garbage collector, so reuse them across connections
+        private static final Queue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<ByteBuffer>(16);
         private Selector selector;
         private final SocketChannel socket;
-        private final ByteBuffer buffer;
+        private ByteBuffer buffer;
+        private final ByteBuffer[] buffers = new ByteBuffer[2];
         private final byte[] writeBuffer = new byte[1];
+        private final Lock lock = new ReentrantLock();
 
         public SocketOutputStream(SocketChannel socket) throws IOException {
             this.socket = socket;
-            buffer = ByteBuffer.allocateDirect(32 * 1024);
+            buffer = BUFFER_POOL.poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            buffers[0] = buffer;
         }
 
         @Override
@@ -220,43 +233,68 @@ public class SocketConnection<T> implements RemoteConnection<T> {
 
         @Override
         public void write(byte[] src, int offset, int max) throws IOException {
-            int remaining = max;
-            int currentPos = offset;
-            while (remaining > 0) {
-                int count = Math.min(remaining, buffer.remaining());
-                if (count > 0) {
-                    buffer.put(src, currentPos, count);
-                    remaining -= count;
-                    currentPos += count;
+            lock.lock();
+            try {
+                if (buffer == null) {
+                    throw new IOException("Socket output stream has been closed.");
                 }
-                while (buffer.remaining() == 0) {
-                    writeBufferToChannel();
+                if (max <= buffer.remaining()) {
+                    buffer.put(src, offset, max);
+                    return;
+                }
+                // Does not fit: send the buffered bytes and the new bytes together using a gathering write, instead of
+                // copying the new bytes through the buffer one chunk at a time. Any tail that the socket does not accept is buffered.
+                ByteBuffer bytes = ByteBuffer.wrap(src, offset, max);
+                buffers[1] = bytes;
+                buffer.flip();
+                try {
+                    while (buffer.hasRemaining() || bytes.remaining() > buffer.capacity()) {
+                        writeBuffersToChannel();
+                    }
+                } finally {
+                    buffers[1] = null;
+                    buffer.compact();
                 }
+                buffer.put(bytes);
+            } finally {
+                lock.unlock();
             }
         }
 
         @Override
         public void flush() throws IOException {
-            while (buffer.position() > 0) {
-                writeBufferToChannel();
+            lock.lock();
+            try {
+                if (buffer == null) {
+                    return;
+                }
+                buffer.flip();
+                try {
+                    while (buffer.hasRemaining()) {
+                        writeBuffersToChannel();
+                    }
+                } finally {
+                    buffer.compact();
+                }
+            } finally {
+                lock.unlock();
             }
         }
 
-        private void writeBufferToChannel() throws IOException {
-            buffer.flip();
-            int count = writeWithNonBlockingRetry();
+        private void writeBuffersToChannel() throws IOException {
+            long count = writeWithNonBlockingRetry();
             if (count == 0) {
                 // buffer was still full after non-blocking retries, now block
                 waitForWriteBufferToDrain();
             }
-            buffer.compact();
         }
 
-        private int writeWithNonBlockingRetry() throws IOException {
-            int count = 0;
+        private long writeWithNonBlockingRetry() throws IOException {
+            long count = 0;
             int retryCount = 0;
+            int length = buffers[1] == null ? 1 : 2;
             while (count == 0 && retryCount++ < RETRIES_WHEN_BUFFER_FULL) {
-                count = socket.write(buffer);
+                count = socket.write(buffers, 0, length);
                 if (count < 0) {
                     throw new EOFException();
                 } else if (count == 0) {
@@ -286,6 +324,19 @@ public class SocketConnection<T> implements RemoteConnection<T> {
                 selector.close();
                 selector = null;
             }
+            // A writer may still be blocked on the socket, in which case the buffer is left to the garbage collector rather than reused
+            if (lock.tryLock()) {
+                try {
+                    if (buffer != null) {
+                        buffer.clear();
+                        BUFFER_POOL.offer(buffer);
+                        buffer = null;
+                        buffers[0] = null;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
         }
     }
 }
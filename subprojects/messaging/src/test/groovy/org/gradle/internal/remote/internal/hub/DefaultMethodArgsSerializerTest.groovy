@@ -44,6 +44,27 @@ class DefaultMethodArgsSerializerTest extends SerializerSpec {
         serialize(["a", 12L, "b"] as Object[], arraySerializer) == ["a", 12L, "b"] as Object[]
     }
 
+    def "skips serializer registry that can serialize only some of the types"() {
+        given:
+        registry1.register(String, BaseSerializerFactory.STRING_SERIALIZER)
+        registry2.register(String, BaseSerializerFactory.STRING_SERIALIZER)
+        registry2.register(Long, BaseSerializerFactory.LONG_SERIALIZER)
+
+        expect:
+        def arraySerializer = serializer.forTypes([String, Long] as Class[])
+        serialize(["a", 12L] as Object[], arraySerializer) == ["a", 12L] as Object[]
+    }
+
+    def "falls back to default when no serializer registry can serialize all types"() {
+        given:
+        def serializer = Stub(Serializer)
+        registry1.register(String, BaseSerializerFactory.STRING_SERIALIZER)
+        defaultArgsBuilder.forTypes(_) >> serializer
+
+        expect:
+        this.serializer.forTypes([String, Long] as Class[]) == serializer
+    }
+
     def "falls back to default when no serializer registry knows about types"() {
         given:
         def serializer = Stub(Serializer)
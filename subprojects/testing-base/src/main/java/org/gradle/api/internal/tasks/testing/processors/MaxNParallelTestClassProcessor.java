@@ -16,10 +16,14 @@
 
 package org.gradle.api.internal.tasks.testing.processors;
 
+import org.gradle.api.tasks.testing.TestOutputEvent;
 import org.gradle.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.actor.Actor;
@@ -27,16 +31,37 @@ import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
  * processors.
+ *
+ * <p>
+ *     When the durations of the test classes in a previous run are known, test classes are instead handed out on demand: whenever a
+ *     processor has finished its test classes, it receives the longest of the detected test classes that have not been assigned yet.
+ *     A processor has finished a test class when the completion of the test class comes back through its result processor. Test classes
+ *     without a known duration are assumed to take as long as the average known test class.
+ * </p>
+ *
+ * <p>
+ *     The test classes that are still waiting when detection has finished are assigned longest first, each to the processor with the
+ *     least estimated work left. Waiting for processors to finish instead would hang when a processor does not report the completion of
+ *     its test classes, such as a worker process that has crashed or a test framework that only runs the test classes when stopped.
+ * </p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Map<String, Long> classDurations;
+    private final long averageDuration;
+    private final Object lock = new Object();
+    private final List<TestClassRunInfo> pendingClasses = new ArrayList<TestClassRunInfo>();
+    private final List<ProcessorSlot> slots = new ArrayList<ProcessorSlot>();
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
@@ -44,9 +69,15 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private Actor resultProcessorActor;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, Collections.<String, Long>emptyMap());
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, Map<String, Long> classDurations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.classDurations = classDurations;
+        this.averageDuration = average(classDurations.values());
     }
 
     @Override
@@ -58,14 +89,16 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
 
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
+        if (isScheduleByDuration()) {
+            synchronized (lock) {
+                pendingClasses.add(testClass);
+                assignToIdleProcessors();
+            }
+            return;
+        }
         TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
+            processor = createProcessor(resultProcessor);
         } else {
             processor = processors.get(pos);
             pos = (pos + 1) % processors.size();
@@ -76,9 +109,157 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     @Override
     public void stop() {
         try {
-            CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
+            try {
+                synchronized (lock) {
+                    assignPendingClasses();
+                }
+            } finally {
+                CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
+            }
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
     }
+
+    private boolean isScheduleByDuration() {
+        return maxProcessors > 1 && !classDurations.isEmpty();
+    }
+
+    /**
+     * Assigns the longest waiting test classes to the processors that have no test classes left, starting new processors when allowed.
+     */
+    private void assignToIdleProcessors() {
+        while (!pendingClasses.isEmpty()) {
+            ProcessorSlot idle = null;
+            for (ProcessorSlot slot : slots) {
+                if (slot.assignedClasses.isEmpty()) {
+                    idle = slot;
+                    break;
+                }
+            }
+            if (idle == null) {
+                if (slots.size() == maxProcessors) {
+                    return;
+                }
+                idle = createSlot();
+            }
+            idle.assign(takeLongestPendingClass());
+        }
+    }
+
+    /**
+     * Assigns all waiting test classes longest first, each to the processor with the least estimated work left.
+     */
+    private void assignPendingClasses() {
+        while (!pendingClasses.isEmpty()) {
+            ProcessorSlot leastBusy;
+            if (slots.size() < maxProcessors) {
+                leastBusy = createSlot();
+            } else {
+                leastBusy = slots.get(0);
+                for (ProcessorSlot slot : slots) {
+                    if (slot.assignedWork < leastBusy.assignedWork) {
+                        leastBusy = slot;
+                    }
+                }
+            }
+            leastBusy.assign(takeLongestPendingClass());
+        }
+    }
+
+    /**
+     * Removes the waiting test class with the longest estimated duration. Of test classes with the same estimate, the one detected first is taken.
+     */
+    private TestClassRunInfo takeLongestPendingClass() {
+        int longest = 0;
+        for (int i = 1; i < pendingClasses.size(); i++) {
+            if (estimateDuration(pendingClasses.get(i)) > estimateDuration(pendingClasses.get(longest))) {
+                longest = i;
+            }
+        }
+        return pendingClasses.remove(longest);
+    }
+
+    private long estimateDuration(TestClassRunInfo testClass) {
+        Long duration = classDurations.get(testClass.getTestClassName());
+        return duration != null ? duration : averageDuration;
+    }
+
+    private static long average(Iterable<Long> durations) {
+        long total = 0;
+        int count = 0;
+        for (Long duration : durations) {
+            total += duration;
+            count++;
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+    private ProcessorSlot createSlot() {
+        ProcessorSlot slot = new ProcessorSlot();
+        slot.processor = createProcessor(slot);
+        slots.add(slot);
+        return slot;
+    }
+
+    private TestClassProcessor createProcessor(TestResultProcessor resultProcessor) {
+        TestClassProcessor processor = factory.create();
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    /**
+     * A processor along with the test classes assigned to it that it has not finished yet. Receives the results of the processor, to notice when it finishes a test class.
+     */
+    private class ProcessorSlot implements TestResultProcessor {
+        private final Map<String, Long> assignedClasses = new HashMap<String, Long>();
+        private final Map<Object, String> runningClasses = new HashMap<Object, String>();
+        private TestClassProcessor processor;
+        private long assignedWork;
+
+        void assign(TestClassRunInfo testClass) {
+            long estimate = estimateDuration(testClass);
+            assignedClasses.put(testClass.getTestClassName(), estimate);
+            assignedWork += estimate;
+            processor.processTestClass(testClass);
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            if (test.isComposite() && test.getClassName() != null) {
+                synchronized (lock) {
+                    if (assignedClasses.containsKey(test.getClassName()) && !runningClasses.containsValue(test.getClassName())) {
+                        runningClasses.put(test.getId(), test.getClassName());
+                    }
+                }
+            }
+            resultProcessor.started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+            synchronized (lock) {
+                String className = runningClasses.remove(testId);
+                if (className != null) {
+                    assignedWork -= assignedClasses.remove(className);
+                    assignToIdleProcessors();
+                }
+            }
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            resultProcessor.failure(testId, result);
+        }
+    }
 }
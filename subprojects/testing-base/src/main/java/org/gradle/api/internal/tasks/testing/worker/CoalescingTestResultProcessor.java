@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces adjacent output events for the same test and destination before forwarding them, so that a test writing lots of
+ * output does not send one message per line to the build process.
+ *
+ * <p>
+ *     Output is held back until {@value #MAX_BUFFERED_CHARS} characters have been collected or {@value #FLUSH_INTERVAL_MILLIS}ms have passed.
+ *     Any other event forwards the held back output first, so events are received in the same order as they were produced.
+ *     The given executor runs the delayed flushes. It is owned by the caller and can be shared by several instances over time.
+ * </p>
+ */
+public class CoalescingTestResultProcessor implements TestResultProcessor, Stoppable {
+    static final int FLUSH_INTERVAL_MILLIS = 50;
+    static final int MAX_BUFFERED_CHARS = 8192;
+
+    private final TestResultProcessor delegate;
+    private final Executor executor;
+    private final Object lock = new Object();
+    private final Runnable flushAction = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            synchronized (lock) {
+                flushScheduled = false;
+                flushOutput();
+            }
+        }
+    };
+    // Protected by lock
+    private final StringBuilder output = new StringBuilder();
+    private Object outputOwner;
+    private TestOutputEvent.Destination outputDestination;
+    private boolean flushScheduled;
+    private boolean stopped;
+
+    public CoalescingTestResultProcessor(TestResultProcessor delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (lock) {
+            flushOutput();
+            delegate.started(test, event);
+        }
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        synchronized (lock) {
+            flushOutput();
+            delegate.completed(testId, event);
+        }
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        synchronized (lock) {
+            flushOutput();
+            delegate.failure(testId, result);
+        }
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        synchronized (lock) {
+            if (output.length() > 0 && (!outputOwner.equals(testId) || outputDestination != event.getDestination())) {
+                flushOutput();
+            }
+            if (stopped || (output.length() == 0 && event.getMessage().length() >= MAX_BUFFERED_CHARS)) {
+                delegate.output(testId, event);
+                return;
+            }
+            outputOwner = testId;
+            outputDestination = event.getDestination();
+            output.append(event.getMessage());
+            if (output.length() >= MAX_BUFFERED_CHARS) {
+                flushOutput();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.execute(flushAction);
+            }
+        }
+    }
+
+    /**
+     * Forwards any held back output. Output received from now on is forwarded immediately.
+     */
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            flushOutput();
+            stopped = true;
+        }
+    }
+
+    private void flushOutput() {
+        if (output.length() == 0) {
+            return;
+        }
+        delegate.output(outputOwner, new DefaultTestOutputEvent(outputDestination, output.toString()));
+        output.setLength(0);
+        outputOwner = null;
+        outputDestination = null;
+    }
+}
@@ -42,12 +42,23 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
     private final BuildOperationWorkerRegistry.Operation owner;
+    private final TestWorkerPool workerPool;
+    private final TestWorkerPool.WorkerKey workerKey;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
+    private ReusableTestWorker reusableWorker;
     private TestResultProcessor resultProcessor;
     private BuildOperationWorkerRegistry.Completion workerCompletion;
 
     public ForkingTestClassProcessor(WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, BuildOperationWorkerRegistry.Operation owner) {
+        this(workerFactory, processorFactory, options, classPath, buildConfigAction, moduleRegistry, owner, null, null);
+    }
+
+    /**
+     * @param workerPool the pool to take a worker process from and return it to when finished, or null to start a worker process that stops when finished.
+     * @param workerKey the key of the workers in the pool that can be used, calculated once for the test execution. Only used together with a pool.
+     */
+    public ForkingTestClassProcessor(WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, BuildOperationWorkerRegistry.Operation owner, TestWorkerPool workerPool, TestWorkerPool.WorkerKey workerKey) {
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
         this.options = options;
@@ -55,6 +66,8 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
         this.owner = owner;
+        this.workerPool = workerPool;
+        this.workerKey = workerKey;
     }
 
     @Override
@@ -66,13 +79,34 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     public void processTestClass(TestClassRunInfo testClass) {
         if (remoteProcessor == null) {
             workerCompletion = owner.operationStart();
-            remoteProcessor = forkProcess();
+            remoteProcessor = workerPool == null ? forkProcess() : startReusableWorker();
         }
 
         remoteProcessor.processTestClass(testClass);
     }
 
     RemoteTestClassProcessor forkProcess() {
+        startWorkerProcess();
+
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
+        connection.connect();
+        remoteProcessor.startProcessing();
+        return remoteProcessor;
+    }
+
+    private RemoteTestClassProcessor startReusableWorker() {
+        reusableWorker = workerPool.reserve(workerKey);
+        if (reusableWorker == null) {
+            reusableWorker = new ReusableTestWorker(startWorkerProcess());
+            workerPool.add(reusableWorker);
+        }
+        return reusableWorker.startProcessing(processorFactory, resultProcessor);
+    }
+
+    private WorkerProcess startWorkerProcess() {
         WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
         builder.setBaseName("Gradle Test Executor");
         builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
@@ -82,14 +116,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
 
         workerProcess = builder.build();
         workerProcess.start();
-
-        ObjectConnection connection = workerProcess.getConnection();
-        connection.useParameterSerializers(TestEventSerializer.create());
-        connection.addIncoming(TestResultProcessor.class, resultProcessor);
-        RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
-        connection.connect();
-        remoteProcessor.startProcessing();
-        return remoteProcessor;
+        return workerProcess;
     }
 
     List<URL> getTestWorkerImplementationClasspath() {
@@ -117,11 +144,25 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     public void stop() {
         if (remoteProcessor != null) {
             try {
-                remoteProcessor.stop();
-                workerProcess.waitForStop();
+                if (reusableWorker != null) {
+                    stopReusableWorker();
+                } else {
+                    remoteProcessor.stop();
+                    workerProcess.waitForStop();
+                }
             } finally {
                 workerCompletion.operationFinish();
             }
         }
     }
+
+    private void stopReusableWorker() {
+        if (reusableWorker.stopProcessing()) {
+            workerPool.release(workerKey, reusableWorker);
+        } else {
+            // The worker process has stopped or cannot be used again, so stop it and report any failure
+            workerPool.discard(reusableWorker);
+            reusableWorker.stop();
+        }
+    }
 }
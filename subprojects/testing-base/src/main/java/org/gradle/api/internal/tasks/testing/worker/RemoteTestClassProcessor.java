@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 
 /**
  * @see org.gradle.api.internal.tasks.testing.TestClassProcessor
@@ -27,11 +28,23 @@ public interface RemoteTestClassProcessor {
      */
     void startProcessing();
 
+    /**
+     * Starts processing using the given factory, instead of the one the worker was started with. Used to start a further test execution
+     * after {@link #stopProcessing()}. Does not block.
+     */
+    void startProcessing(WorkerTestClassProcessorFactory factory);
+
     /**
      * Does not block.
      */
     void processTestClass(TestClassRunInfo testClass);
 
+    /**
+     * Stops processing and keeps the worker running, so that it can be used by a further test execution. The worker notifies its
+     * {@link TestWorkerListener} once all results have been sent. Does not block.
+     */
+    void stopProcessing();
+
     /**
      * Does not block.
      */
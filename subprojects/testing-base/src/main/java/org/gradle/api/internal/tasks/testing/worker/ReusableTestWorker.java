@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.dispatch.StreamCompletion;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.worker.WorkerProcess;
+
+/**
+ * A test worker process that is kept running after a test execution, so that it can be used by a later test execution.
+ *
+ * <p>
+ *     The results of each test execution are forwarded to the result processor of that execution. Result events and the notification
+ *     that the worker has stopped processing are received on different channels, so the worker reports how many result events it has sent
+ *     and stopping waits until all of them have been received.
+ * </p>
+ */
+class ReusableTestWorker implements TestResultProcessor, TestWorkerListener, StreamCompletion, Stoppable {
+    private final WorkerProcess workerProcess;
+    private final RemoteTestClassProcessor remoteProcessor;
+    private final Object lock = new Object();
+    // Protected by lock
+    private TestResultProcessor resultProcessor;
+    private long receivedCount;
+    private long sentCount;
+    private boolean processingStopped;
+    private boolean reusable;
+    private boolean endOfStream;
+
+    ReusableTestWorker(WorkerProcess workerProcess) {
+        this.workerProcess = workerProcess;
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(TestResultProcessor.class, this);
+        connection.addIncoming(TestWorkerListener.class, this);
+        remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
+        connection.connect();
+    }
+
+    boolean isAlive() {
+        synchronized (lock) {
+            return !endOfStream;
+        }
+    }
+
+    /**
+     * Starts a test execution that uses the given factory and forwards its results to the given result processor.
+     */
+    RemoteTestClassProcessor startProcessing(WorkerTestClassProcessorFactory factory, TestResultProcessor resultProcessor) {
+        synchronized (lock) {
+            this.resultProcessor = resultProcessor;
+            receivedCount = 0;
+            processingStopped = false;
+        }
+        remoteProcessor.startProcessing(factory);
+        return remoteProcessor;
+    }
+
+    /**
+     * Stops the current test execution and blocks until all of its results have been received.
+     *
+     * @return true if the worker can be used again, false if the worker process has stopped or could not undo the changes the tests made to it.
+     */
+    boolean stopProcessing() {
+        remoteProcessor.stopProcessing();
+        synchronized (lock) {
+            try {
+                while (!endOfStream && !(processingStopped && receivedCount == sentCount)) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } finally {
+                resultProcessor = null;
+            }
+            return !endOfStream && reusable;
+        }
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        currentResultProcessor().started(test, event);
+        received();
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        currentResultProcessor().completed(testId, event);
+        received();
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        currentResultProcessor().output(testId, event);
+        received();
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        currentResultProcessor().failure(testId, result);
+        received();
+    }
+
+    private TestResultProcessor currentResultProcessor() {
+        synchronized (lock) {
+            return resultProcessor;
+        }
+    }
+
+    private void received() {
+        synchronized (lock) {
+            receivedCount++;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void processingStopped(long resultCount, boolean reusable) {
+        synchronized (lock) {
+            sentCount = resultCount;
+            this.reusable = reusable;
+            processingStopped = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void endStream() {
+        synchronized (lock) {
+            endOfStream = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the worker process and waits for it to exit. Fails when the worker process did not exit normally.
+     */
+    @Override
+    public void stop() {
+        if (isAlive()) {
+            remoteProcessor.stop();
+        }
+        workerProcess.waitForStop();
+    }
+}
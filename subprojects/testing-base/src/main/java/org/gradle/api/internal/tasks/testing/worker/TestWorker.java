@@ -19,13 +19,18 @@ package org.gradle.api.internal.tasks.testing.worker;
 import org.gradle.api.Action;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.tasks.testing.TestOutputEvent;
 import org.gradle.internal.time.TimeProvider;
 import org.gradle.internal.time.TrueTimeProvider;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.LongIdGenerator;
@@ -40,15 +45,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
     private final WorkerTestClassProcessorFactory factory;
     private CountDownLatch completed;
+    private WorkerProcessContext workerProcessContext;
+    private ServiceRegistry testServices;
+    private StoppableExecutor outputFlushExecutor;
+    private Properties systemProperties;
+    private TestResultProcessor resultDispatch;
+    private TestWorkerListener workerListener;
     private TestClassProcessor processor;
-    private TestResultProcessor resultProcessor;
+    private CoalescingTestResultProcessor resultProcessor;
+    private CountingTestResultProcessor resultCounter;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
         this.factory = factory;
@@ -61,9 +75,14 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         completed = new CountDownLatch(1);
 
         System.setProperty(WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
+        systemProperties = copyOf(System.getProperties());
 
         DefaultServiceRegistry testServices = new TestFrameworkServiceRegistry(workerProcessContext);
-        startReceivingTests(workerProcessContext, testServices);
+        this.workerProcessContext = workerProcessContext;
+        this.testServices = testServices;
+        // Stopped when the test services are closed
+        outputFlushExecutor = testServices.get(ExecutorFactory.class).create("Test output flush", 1);
+        startReceivingTests(workerProcessContext);
 
         try {
             try {
@@ -79,26 +98,34 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         }
     }
 
-    private void startReceivingTests(WorkerProcessContext workerProcessContext, ServiceRegistry testServices) {
-        TestClassProcessor targetProcessor = factory.create(testServices);
-        IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
-
-        targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
-                workerProcessContext.getDisplayName(), testServices.get(TimeProvider.class));
-        ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
-                TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
-        processor = proxy.getSource();
-
+    private void startReceivingTests(WorkerProcessContext workerProcessContext) {
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        resultDispatch = serverConnection.addOutgoing(TestResultProcessor.class);
+        workerListener = serverConnection.addOutgoing(TestWorkerListener.class);
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
     }
 
     @Override
     public void startProcessing() {
+        startProcessing(factory);
+    }
+
+    @Override
+    public void startProcessing(WorkerTestClassProcessorFactory factory) {
         Thread.currentThread().setName("Test worker");
+        TestClassProcessor targetProcessor = factory.create(testServices);
+        IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
+
+        targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
+                workerProcessContext.getDisplayName(), testServices.get(TimeProvider.class));
+        ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
+                TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
+        processor = proxy.getSource();
+
+        resultCounter = new CountingTestResultProcessor(resultDispatch);
+        resultProcessor = new CoalescingTestResultProcessor(resultCounter, outputFlushExecutor);
         processor.startProcessing(resultProcessor);
     }
 
@@ -113,16 +140,96 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         }
     }
 
+    @Override
+    public void stopProcessing() {
+        Thread.currentThread().setName("Test worker");
+        boolean reusable = false;
+        try {
+            if (processor != null) {
+                stopProcessor();
+            }
+            reusable = resetWorkerState();
+        } finally {
+            workerListener.processingStopped(resultCounter == null ? 0 : resultCounter.count.get(), reusable);
+        }
+    }
+
+    /**
+     * Undoes changes the tests made to the worker, so that they do not affect the next test execution.
+     *
+     * @return false when this was not possible, for example because the tests installed a security manager that does not allow it.
+     */
+    private boolean resetWorkerState() {
+        try {
+            System.setProperties(copyOf(systemProperties));
+            System.setSecurityManager(null);
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not reset the state of {}, it will not be used again.", workerProcessContext.getDisplayName(), e);
+            return false;
+        }
+    }
+
     @Override
     public void stop() {
         Thread.currentThread().setName("Test worker");
         try {
-            processor.stop();
+            if (processor != null) {
+                stopProcessor();
+            }
         } finally {
             completed.countDown();
         }
     }
 
+    private void stopProcessor() {
+        try {
+            processor.stop();
+        } finally {
+            processor = null;
+            resultProcessor.stop();
+        }
+    }
+
+    private static Properties copyOf(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    private static class CountingTestResultProcessor implements TestResultProcessor {
+        private final TestResultProcessor delegate;
+        private final AtomicLong count = new AtomicLong();
+
+        CountingTestResultProcessor(TestResultProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            count.incrementAndGet();
+            delegate.started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            count.incrementAndGet();
+            delegate.completed(testId, event);
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            count.incrementAndGet();
+            delegate.output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            count.incrementAndGet();
+            delegate.failure(testId, result);
+        }
+    }
+
     private static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
         private final WorkerProcessContext workerProcessContext;
 
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+/**
+ * Receives notifications from a test worker that is kept running between test executions.
+ */
+public interface TestWorkerListener {
+    /**
+     * Called when the worker has stopped processing, after it has sent the given number of result events for the test execution.
+     * Always called, even when stopping failed.
+     *
+     * @param reusable false when the changes the tests made to the worker could not be undone, so the worker should not be used again.
+     */
+    void processingStopped(long resultCount, boolean reusable);
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.process.JavaForkOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps test worker processes running for the rest of the build session, so that later test executions do not need to start
+ * new worker processes.
+ *
+ * <p>
+ *     A worker is only reused by a test execution with the same test framework, JVM configuration and test runtime classpath, including
+ *     the content of the classpath. Classes stay loaded between test executions, so a worker is never used when a class on its classpath
+ *     has changed. System properties are restored after each test execution, but other static state the tests leave behind is kept.
+ *     For this reason the pool is only used when enabled via the {@value #ENABLED_PROPERTY} system property.
+ * </p>
+ * <p>
+ *     Each owner, usually a test task, only keeps idle workers for the key it used last. When the classpath of a test task changes,
+ *     for example during a continuous build, the idle workers for its previous key are stopped, unless another owner still uses that key.
+ *     The number of idle workers is also limited, stopping the workers that have been idle the longest first.
+ * </p>
+ */
+public class TestWorkerPool implements Stoppable {
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.test.reuseworkers";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestWorkerPool.class);
+
+    private final FileHasher fileHasher;
+    private final int maxIdleWorkers;
+    private final Object lock = new Object();
+    private final List<ReusableTestWorker> allWorkers = new ArrayList<ReusableTestWorker>();
+    // Least recently released first
+    private final List<IdleWorker> idleWorkers = new LinkedList<IdleWorker>();
+    private final Map<String, HashCode> ownerKeys = new HashMap<String, HashCode>();
+
+    public TestWorkerPool(FileHasher fileHasher, int maxIdleWorkers) {
+        this.fileHasher = fileHasher;
+        this.maxIdleWorkers = maxIdleWorkers;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Calculates the key that identifies the workers that can be used for the given test execution. This hashes the content of the classpath,
+     * so it should be calculated once per test execution.
+     *
+     * @param owner identifies the owner of the workers, usually the path of the test task.
+     */
+    public WorkerKey workerKey(String owner, JavaForkOptions options, Iterable<File> classPath, WorkerTestClassProcessorFactory processorFactory) {
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(processorFactory.getClass().getName(), Charsets.UTF_8);
+        hasher.putString(String.valueOf(options.getExecutable()), Charsets.UTF_8);
+        for (String jvmArg : options.getAllJvmArgs()) {
+            hasher.putString(jvmArg, Charsets.UTF_8);
+        }
+        hasher.putString(options.getWorkingDir().getAbsolutePath(), Charsets.UTF_8);
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(options.getEnvironment()).entrySet()) {
+            hasher.putString(entry.getKey(), Charsets.UTF_8);
+            hasher.putString(String.valueOf(entry.getValue()), Charsets.UTF_8);
+        }
+        for (File file : classPath) {
+            hasher.putString(file.getAbsolutePath(), Charsets.UTF_8);
+            putContent(hasher, file);
+        }
+        return new WorkerKey(owner, hasher.hash());
+    }
+
+    private void putContent(Hasher hasher, File file) {
+        if (file.isFile()) {
+            hasher.putBytes(fileHasher.hash(file).asBytes());
+        } else if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                hasher.putString(child.getName(), Charsets.UTF_8);
+                putContent(hasher, child);
+            }
+        }
+    }
+
+    /**
+     * Returns an idle worker with the given key, or null when there is none. The worker is reserved until it is released again.
+     * Idle workers the owner of the key used before are stopped.
+     */
+    ReusableTestWorker reserve(WorkerKey workerKey) {
+        List<ReusableTestWorker> evicted = new ArrayList<ReusableTestWorker>();
+        try {
+            synchronized (lock) {
+                HashCode previousKey = ownerKeys.put(workerKey.owner, workerKey.hash);
+                if (previousKey != null && !previousKey.equals(workerKey.hash) && !ownerKeys.containsValue(previousKey)) {
+                    evictIdle(previousKey, evicted);
+                }
+                Iterator<IdleWorker> iterator = idleWorkers.iterator();
+                while (iterator.hasNext()) {
+                    IdleWorker idle = iterator.next();
+                    if (!idle.key.equals(workerKey.hash)) {
+                        continue;
+                    }
+                    iterator.remove();
+                    if (idle.worker.isAlive()) {
+                        LOGGER.debug("Reusing test worker.");
+                        return idle.worker;
+                    }
+                    allWorkers.remove(idle.worker);
+                }
+                return null;
+            }
+        } finally {
+            stopAll(evicted);
+        }
+    }
+
+    /**
+     * Adds a newly started worker, which is reserved until it is released.
+     */
+    void add(ReusableTestWorker worker) {
+        synchronized (lock) {
+            allWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Makes a reserved worker available again. Stops the workers that have been idle the longest when there are too many idle workers.
+     */
+    void release(WorkerKey workerKey, ReusableTestWorker worker) {
+        List<ReusableTestWorker> evicted = new ArrayList<ReusableTestWorker>();
+        synchronized (lock) {
+            if (workerKey.hash.equals(ownerKeys.get(workerKey.owner))) {
+                idleWorkers.add(new IdleWorker(workerKey.hash, worker));
+            } else {
+                // The owner has moved on to a different key in the meantime
+                allWorkers.remove(worker);
+                evicted.add(worker);
+            }
+            while (idleWorkers.size() > maxIdleWorkers) {
+                ReusableTestWorker oldest = idleWorkers.remove(0).worker;
+                allWorkers.remove(oldest);
+                evicted.add(oldest);
+            }
+        }
+        stopAll(evicted);
+    }
+
+    /**
+     * Removes a worker that cannot be used again.
+     */
+    void discard(ReusableTestWorker worker) {
+        synchronized (lock) {
+            allWorkers.remove(worker);
+        }
+    }
+
+    private void evictIdle(HashCode key, List<ReusableTestWorker> evicted) {
+        Iterator<IdleWorker> iterator = idleWorkers.iterator();
+        while (iterator.hasNext()) {
+            IdleWorker idle = iterator.next();
+            if (idle.key.equals(key)) {
+                iterator.remove();
+                allWorkers.remove(idle.worker);
+                evicted.add(idle.worker);
+            }
+        }
+    }
+
+    private static void stopAll(List<ReusableTestWorker> workers) {
+        if (!workers.isEmpty()) {
+            LOGGER.debug("Stopping {} idle test worker(s).", workers.size());
+            CompositeStoppable.stoppable(workers).stop();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            LOGGER.debug("Stopping {} test worker(s).", allWorkers.size());
+            try {
+                CompositeStoppable.stoppable(allWorkers).stop();
+            } finally {
+                allWorkers.clear();
+                idleWorkers.clear();
+                ownerKeys.clear();
+            }
+        }
+    }
+
+    /**
+     * Identifies the workers that can be used by a test execution, and the owner of the test execution.
+     */
+    public static final class WorkerKey {
+        private final String owner;
+        private final HashCode hash;
+
+        WorkerKey(String owner, HashCode hash) {
+            this.owner = owner;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            WorkerKey other = (WorkerKey) o;
+            return owner.equals(other.owner) && hash.equals(other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(owner, hash);
+        }
+
+        @Override
+        public String toString() {
+            return owner + ":" + hash;
+        }
+    }
+
+    private static class IdleWorker {
+        private final HashCode key;
+        private final ReusableTestWorker worker;
+
+        IdleWorker(HashCode key, ReusableTestWorker worker) {
+            this.key = key;
+            this.worker = worker;
+        }
+    }
+}
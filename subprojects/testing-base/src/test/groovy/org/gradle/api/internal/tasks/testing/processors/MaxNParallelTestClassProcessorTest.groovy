@@ -18,7 +18,10 @@ package org.gradle.api.internal.tasks.testing.processors
 
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
 import org.gradle.internal.actor.Actor
 import org.gradle.internal.actor.ActorFactory
 import spock.lang.Specification
@@ -167,4 +170,82 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         then:
         1 * asyncProcessor2.processTestClass(test)
     }
+
+    def assignsLongestTestClassesFirstAsProcessorsFinishWhenDurationsAreKnown() {
+        def processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, [A: 100L, B: 50L, C: 40L, D: 30L])
+        def testA = testClass("A")
+        def testB = testClass("B")
+        def testC = testClass("C")
+        def testD = testClass("D")
+        def testUnknown = testClass("Unknown")
+        def classD = Stub(TestDescriptorInternal) {
+            getId() >> "d"
+            getClassName() >> "D"
+            isComposite() >> true
+        }
+        def startEvent = new TestStartEvent(0)
+        def completeEvent = new TestCompleteEvent(0)
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        TestResultProcessor resultProcessor1 = null
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+
+        when:
+        [testD, testUnknown, testB, testA, testC].each { processor.processTestClass(it) }
+
+        then:
+        2 * factory.create() >>> [processor1, processor2]
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * asyncProcessor1.startProcessing(_) >> { TestResultProcessor p -> resultProcessor1 = p }
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor2.startProcessing(_)
+        1 * asyncProcessor1.processTestClass(testD)
+        1 * asyncProcessor2.processTestClass(testUnknown)
+        0 * asyncProcessor1._
+        0 * asyncProcessor2._
+
+        when:
+        resultProcessor1.started(classD, startEvent)
+        resultProcessor1.completed("d", completeEvent)
+
+        then:
+        1 * asyncResultProcessor.started(classD, startEvent)
+
+        then:
+        1 * asyncResultProcessor.completed("d", completeEvent)
+
+        then:
+        1 * asyncProcessor1.processTestClass(testA)
+        0 * asyncProcessor1._
+        0 * asyncProcessor2._
+
+        when:
+        processor.stop()
+
+        then:
+        // Unknown is estimated at the average duration of 55
+        1 * asyncProcessor2.processTestClass(testB)
+
+        then:
+        1 * asyncProcessor1.processTestClass(testC)
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    private TestClassRunInfo testClass(String name) {
+        Stub(TestClassRunInfo) {
+            getTestClassName() >> name
+        }
+    }
 }
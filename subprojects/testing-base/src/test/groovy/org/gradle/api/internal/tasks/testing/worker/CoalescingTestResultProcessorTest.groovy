@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class CoalescingTestResultProcessorTest extends Specification {
+    def delegate = Mock(TestResultProcessor)
+    def executor = Mock(Executor)
+    def processor = new CoalescingTestResultProcessor(delegate, executor)
+    Runnable flush
+
+    def "forwards adjacent output of the same test as a single event when flushed"() {
+        when:
+        processor.output("test", new DefaultTestOutputEvent(StdOut, "line 1\n"))
+        processor.output("test", new DefaultTestOutputEvent(StdOut, "line 2\n"))
+
+        then:
+        1 * executor.execute(_) >> { Runnable action -> flush = action }
+        0 * delegate._
+
+        when:
+        flush.run()
+
+        then:
+        1 * delegate.output("test", new DefaultTestOutputEvent(StdOut, "line 1\nline 2\n"))
+        0 * delegate._
+    }
+
+    def "forwards held back output before other events"() {
+        def test = Stub(TestDescriptorInternal)
+        def completeEvent = new TestCompleteEvent(100)
+        def failure = new RuntimeException()
+
+        when:
+        processor.output("test", new DefaultTestOutputEvent(StdOut, "out"))
+        processor.failure("test", failure)
+        processor.output("test", new DefaultTestOutputEvent(StdErr, "err"))
+        processor.completed("test", completeEvent)
+        processor.started(test, null)
+
+        then:
+        1 * delegate.output("test", new DefaultTestOutputEvent(StdOut, "out"))
+
+        then:
+        1 * delegate.failure("test", failure)
+
+        then:
+        1 * delegate.output("test", new DefaultTestOutputEvent(StdErr, "err"))
+
+        then:
+        1 * delegate.completed("test", completeEvent)
+
+        then:
+        1 * delegate.started(test, null)
+        0 * delegate._
+    }
+
+    def "does not coalesce output of different tests or destinations"() {
+        when:
+        processor.output("test 1", new DefaultTestOutputEvent(StdOut, "a"))
+        processor.output("test 1", new DefaultTestOutputEvent(StdErr, "b"))
+        processor.output("test 2", new DefaultTestOutputEvent(StdErr, "c"))
+        processor.stop()
+
+        then:
+        1 * delegate.output("test 1", new DefaultTestOutputEvent(StdOut, "a"))
+
+        then:
+        1 * delegate.output("test 1", new DefaultTestOutputEvent(StdErr, "b"))
+
+        then:
+        1 * delegate.output("test 2", new DefaultTestOutputEvent(StdErr, "c"))
+        0 * delegate._
+    }
+
+    def "forwards output as soon as enough has been collected"() {
+        def line = "x" * 1000
+
+        when:
+        9.times {
+            processor.output("test", new DefaultTestOutputEvent(StdOut, line))
+        }
+
+        then:
+        1 * delegate.output("test", { it.message.length() == 9000 })
+        0 * delegate._
+    }
+
+    def "forwards output immediately after stop"() {
+        given:
+        processor.stop()
+
+        when:
+        processor.output("test", new DefaultTestOutputEvent(StdOut, "out"))
+
+        then:
+        1 * delegate.output("test", new DefaultTestOutputEvent(StdOut, "out"))
+        0 * executor._
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
+import org.gradle.internal.remote.ObjectConnection
+import org.gradle.process.internal.worker.WorkerProcess
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+class ReusableTestWorkerTest extends ConcurrentSpec {
+    def connection = Mock(ObjectConnection)
+    def workerProcess = Mock(WorkerProcess)
+    def remoteProcessor = Mock(RemoteTestClassProcessor)
+    def factory = Stub(WorkerTestClassProcessorFactory)
+    def event = new TestCompleteEvent(0)
+    ReusableTestWorker worker
+
+    def setup() {
+        workerProcess.connection >> connection
+        connection.addOutgoing(RemoteTestClassProcessor) >> remoteProcessor
+        worker = new ReusableTestWorker(workerProcess)
+    }
+
+    def "stopping waits until all results of the test execution have been received"() {
+        def resultProcessor = Mock(TestResultProcessor)
+        def nextResultProcessor = Mock(TestResultProcessor)
+
+        when:
+        worker.startProcessing(factory, resultProcessor)
+        async {
+            start {
+                worker.completed("test", event)
+                worker.processingStopped(2, true)
+                thread.block()
+                instant.lastResult
+                worker.completed("suite", event)
+            }
+            assert worker.stopProcessing()
+            instant.stopped
+        }
+
+        then:
+        instant.stopped > instant.lastResult
+        1 * remoteProcessor.startProcessing(factory)
+        1 * remoteProcessor.stopProcessing()
+        1 * resultProcessor.completed("test", event)
+        1 * resultProcessor.completed("suite", event)
+
+        when:
+        worker.startProcessing(factory, nextResultProcessor)
+        worker.completed("test", event)
+
+        then:
+        1 * nextResultProcessor.completed("test", event)
+        0 * resultProcessor._
+    }
+
+    def "cannot be used again when worker could not undo changes made by the tests"() {
+        when:
+        worker.startProcessing(factory, Mock(TestResultProcessor))
+        worker.processingStopped(0, false)
+
+        then:
+        !worker.stopProcessing()
+        worker.isAlive()
+    }
+
+    def "cannot be used again when worker process has stopped"() {
+        when:
+        worker.startProcessing(factory, Mock(TestResultProcessor))
+        worker.endStream()
+
+        then:
+        !worker.stopProcessing()
+        !worker.isAlive()
+
+        when:
+        worker.stop()
+
+        then:
+        0 * remoteProcessor.stop()
+        1 * workerProcess.waitForStop()
+    }
+}
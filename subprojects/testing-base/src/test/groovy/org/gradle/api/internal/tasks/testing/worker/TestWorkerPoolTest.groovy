@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.hash.DefaultFileHasher
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
+import org.gradle.process.JavaForkOptions
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class TestWorkerPoolTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def pool = new TestWorkerPool(new DefaultFileHasher(), 2)
+    def factory = Stub(WorkerTestClassProcessorFactory)
+    def classesDir = tmpDir.createDir("classes")
+    def jar = tmpDir.createFile("lib.jar")
+    def jvmArgs = ["-Xmx64m"]
+    def options = Stub(JavaForkOptions) {
+        getExecutable() >> "java"
+        getAllJvmArgs() >> { jvmArgs }
+        getWorkingDir() >> tmpDir.testDirectory
+        getEnvironment() >> [VAR: "value"]
+    }
+
+    def "worker key changes when JVM arguments or classpath content change"() {
+        classesDir.createFile("org/gradle/SomeTest.class").text = "original"
+        def key = workerKey()
+
+        expect:
+        workerKey() == key
+
+        when:
+        classesDir.file("org/gradle/SomeTest.class").text = "changed"
+
+        then:
+        workerKey() != key
+
+        when:
+        key = workerKey()
+        jvmArgs = ["-Xmx128m"]
+
+        then:
+        workerKey() != key
+    }
+
+    def "reserves released worker with the same key"() {
+        def worker = Mock(ReusableTestWorker)
+        def key = workerKey()
+        def otherKey = workerKey(":other", [jar])
+        pool.add(worker)
+
+        expect:
+        pool.reserve(key) == null
+
+        when:
+        pool.release(key, worker)
+
+        then:
+        pool.reserve(otherKey) == null
+
+        when:
+        def reserved = pool.reserve(key)
+
+        then:
+        reserved == worker
+        pool.reserve(key) == null
+        _ * worker.isAlive() >> true
+    }
+
+    def "does not reserve worker that has stopped"() {
+        def worker = Mock(ReusableTestWorker)
+        def key = workerKey()
+        pool.reserve(key)
+        pool.add(worker)
+        pool.release(key, worker)
+
+        when:
+        def reserved = pool.reserve(key)
+
+        then:
+        reserved == null
+        1 * worker.isAlive() >> false
+
+        when:
+        pool.stop()
+
+        then:
+        0 * worker.stop()
+    }
+
+    def "stops idle workers of an owner when the owner uses a different key"() {
+        def worker = Mock(ReusableTestWorker)
+        def key = workerKey()
+        pool.reserve(key)
+        pool.add(worker)
+        pool.release(key, worker)
+        classesDir.createFile("org/gradle/SomeTest.class").text = "changed"
+
+        when:
+        def reserved = pool.reserve(workerKey())
+
+        then:
+        reserved == null
+        1 * worker.stop()
+
+        when:
+        pool.stop()
+
+        then:
+        0 * worker.stop()
+    }
+
+    def "keeps idle workers of a key that another owner still uses"() {
+        def worker = Mock(ReusableTestWorker)
+        def key = workerKey()
+        def otherOwnerKey = workerKey(":other")
+        pool.reserve(otherOwnerKey)
+        pool.reserve(key)
+        pool.add(worker)
+        pool.release(key, worker)
+        classesDir.createFile("org/gradle/SomeTest.class").text = "changed"
+
+        when:
+        pool.reserve(workerKey())
+
+        then:
+        0 * worker.stop()
+
+        when:
+        def reserved = pool.reserve(otherOwnerKey)
+
+        then:
+        reserved == worker
+        _ * worker.isAlive() >> true
+    }
+
+    def "stops worker released after its owner moved on to a different key"() {
+        def worker = Mock(ReusableTestWorker)
+        def key = workerKey()
+        pool.reserve(key)
+        pool.add(worker)
+        classesDir.createFile("org/gradle/SomeTest.class").text = "changed"
+        pool.reserve(workerKey())
+
+        when:
+        pool.release(key, worker)
+
+        then:
+        1 * worker.stop()
+    }
+
+    def "stops workers that have been idle the longest when there are too many idle workers"() {
+        def workers = (1..3).collect { Mock(ReusableTestWorker) }
+        def key = workerKey()
+        pool.reserve(key)
+        workers.each { pool.add(it) }
+        pool.release(key, workers[0])
+        pool.release(key, workers[1])
+
+        when:
+        pool.release(key, workers[2])
+
+        then:
+        1 * workers[0].stop()
+        0 * workers[1].stop()
+        0 * workers[2].stop()
+    }
+
+    def "stops all workers"() {
+        def idle = Mock(ReusableTestWorker)
+        def reserved = Mock(ReusableTestWorker)
+        def key = workerKey()
+        pool.reserve(key)
+        pool.add(idle)
+        pool.add(reserved)
+        pool.release(key, idle)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * idle.stop()
+        1 * reserved.stop()
+    }
+
+    private TestWorkerPool.WorkerKey workerKey(String owner = ":test", List<File> classPath = [classesDir, jar]) {
+        pool.workerKey(owner, options, classPath, factory)
+    }
+}
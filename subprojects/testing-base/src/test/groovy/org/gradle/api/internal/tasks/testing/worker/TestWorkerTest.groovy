@@ -71,4 +71,72 @@ public class TestWorkerTest extends ConcurrentSpec {
         1 * processor.processTestClass(test)
         1 * processor.stop()
     }
+
+    def keepsRunningAfterProcessingStoppedAndRestoresSystemProperties() {
+        def otherFactory = Mock(WorkerTestClassProcessorFactory)
+        def otherProcessor = Mock(TestClassProcessor)
+        def workerListener = Mock(TestWorkerListener)
+        System.properties['prop'] = 'original'
+
+        when:
+        async {
+            worker.execute(workerContext)
+        }
+
+        then:
+        System.properties['prop'] == 'original'
+
+        and:
+        1 * connection.addOutgoing(TestResultProcessor) >> resultProcessor
+        1 * connection.addOutgoing(TestWorkerListener) >> workerListener
+        1 * connection.connect() >> {
+            start {
+                worker.startProcessing()
+                worker.processTestClass(test)
+                worker.stopProcessing()
+                worker.startProcessing(otherFactory)
+                worker.stop()
+            }
+        }
+        1 * factory.create(_) >> processor
+        1 * processor.processTestClass(test) >> { System.properties['prop'] = 'changed' }
+        1 * processor.stop()
+        // Start and completion of the worker's test suite
+        1 * workerListener.processingStopped(2, true)
+        1 * otherFactory.create(_) >> otherProcessor
+        1 * otherProcessor.startProcessing(_)
+        1 * otherProcessor.stop()
+    }
+
+    def notifiesThatWorkerCannotBeReusedWhenStoppingProcessingFails() {
+        def workerListener = Mock(TestWorkerListener)
+        def failure = new RuntimeException("broken")
+        def stopFailure = null
+
+        when:
+        async {
+            worker.execute(workerContext)
+        }
+
+        then:
+        stopFailure == failure
+
+        and:
+        1 * connection.addOutgoing(TestResultProcessor) >> resultProcessor
+        1 * connection.addOutgoing(TestWorkerListener) >> workerListener
+        1 * connection.connect() >> {
+            start {
+                worker.startProcessing()
+                try {
+                    worker.stopProcessing()
+                } catch (RuntimeException e) {
+                    stopFailure = e
+                }
+                worker.stop()
+            }
+        }
+        1 * factory.create(_) >> processor
+        1 * processor.stop() >> { throw failure }
+        1 * workerListener.processingStopped(_, false)
+    }
 }
@@ -24,28 +24,36 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.util.internal.Java9ClassReader;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Base class for test framework detectors. Test class files may be processed concurrently. Whether a super class is a test class is
+ * only determined once for each super class, as many test classes usually share the same class hierarchy.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTestFrameworkDetector.class);
     protected static final String TEST_CASE = "junit/framework/TestCase";
     protected static final String GROOVY_TEST_CASE = "groovy/util/GroovyTestCase";
     protected static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
     private List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
-    private final Map<File, Boolean> superClasses;
+    private final ConcurrentMap<String, Boolean> superClasses;
+    private final Object publishLock = new Object();
     private TestClassProcessor testClassProcessor;
     private final List<String> knownTestCaseClassNames;
 
@@ -55,18 +63,15 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<String, Boolean>();
         this.knownTestCaseClassNames = new ArrayList<String>();
         addKnownTestCaseClassNames(TEST_CASE, GROOVY_TEST_CASE);
     }
 
     protected abstract T createClassVisitor();
 
-    protected File getSuperTestClassFile(String superClassName) {
+    private File getSuperTestClassFile(String superClassName) {
         prepareClasspath();
-        if (StringUtils.isEmpty(superClassName)) {
-            throw new IllegalArgumentException("superClassName is empty!");
-        }
 
         final Iterator<File> testClassDirectoriesIt = testClassDirectories.iterator();
 
@@ -90,7 +95,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
     }
 
-    private void prepareClasspath() {
+    private synchronized void prepareClasspath() {
         if (testClassDirectories != null) {
             return;
         }
@@ -145,19 +150,29 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
 
     protected abstract boolean processTestClass(File testClassFile, boolean superClass);
 
-    protected boolean processSuperClass(File testClassFile) {
-        boolean isTest = false;
-
-        Boolean isSuperTest = superClasses.get(testClassFile);
+    /**
+     * Scans the given super class, unless it has been scanned before, and returns whether it is a test class.
+     */
+    protected boolean processSuperClass(String superClassName) {
+        if (StringUtils.isEmpty(superClassName)) {
+            throw new IllegalArgumentException("superClassName is empty!");
+        }
 
-        if (isSuperTest == null) {
-            isTest = processTestClass(testClassFile, true);
+        Boolean isSuperTest = superClasses.get(superClassName);
+        if (isSuperTest != null) {
+            return isSuperTest;
+        }
 
-            superClasses.put(testClassFile, isTest);
+        boolean isTest = false;
+        final File superClassFile = getSuperTestClassFile(superClassName);
+        if (superClassFile != null) {
+            isTest = processTestClass(superClassFile, true);
         } else {
-            isTest = isSuperTest;
+            LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file", superClassName);
         }
 
+        // Another thread may have scanned the same super class concurrently, which gives the same result
+        superClasses.put(superClassName, isTest);
         return isTest;
     }
 
@@ -168,7 +183,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected void publishTestClass(boolean isTest, TestClassVisitor classVisitor, boolean superClass) {
         if (isTest && !classVisitor.isAbstract() && !superClass) {
             String className = Type.getObjectType(classVisitor.getClassName()).getClassName();
-            testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
+            synchronized (publishLock) {
+                testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
+            }
         }
     }
 
@@ -22,23 +22,48 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * <p>When an executor factory and more than one thread are given, the class files are passed to the detector from multiple threads.
+ * The detected test classes are still passed to the test class processor in the order in which their class files were found, each as
+ * soon as the class files before it have been processed.</p>
  */
 public class DefaultTestClassScanner implements Runnable {
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null, 1);
+    }
+
+    /**
+     * @param maxThreads the number of threads to detect test classes with, usually the maximum number of workers of the build.
+     */
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, ExecutorFactory executorFactory, int maxThreads) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
     }
 
     @Override
@@ -51,12 +76,43 @@ public class DefaultTestClassScanner implements Runnable {
     }
 
     private void detectionScan() {
-        testFrameworkDetector.startDetection(testClassProcessor);
-        candidateClassFiles.visit(new ClassFileVisitor() {
-            public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
-            }
-        });
+        if (executorFactory == null || maxThreads <= 1) {
+            testFrameworkDetector.startDetection(testClassProcessor);
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    testFrameworkDetector.processTestClass(fileDetails.getFile());
+                }
+            });
+            return;
+        }
+
+        final OrderedTestClassProcessor orderedProcessor = new OrderedTestClassProcessor(testClassProcessor);
+        testFrameworkDetector.startDetection(orderedProcessor);
+        final StoppableExecutor executor = executorFactory.create("Test class detection", maxThreads);
+        try {
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                private int nextIndex;
+
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final File file = fileDetails.getFile();
+                    final int index = nextIndex++;
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            orderedProcessor.startClassFile(index);
+                            try {
+                                testFrameworkDetector.processTestClass(file);
+                            } finally {
+                                orderedProcessor.finishClassFile(index);
+                            }
+                        }
+                    });
+                }
+            });
+        } finally {
+            // Waits for the detection of all class files and rethrows the first failure
+            executor.stop();
+        }
     }
 
     private void filenameScan() {
@@ -81,4 +137,66 @@ public class DefaultTestClassScanner implements Runnable {
 
         public abstract void visitClassFile(FileVisitDetails fileDetails);
     }
+
+    /**
+     * Holds back the test classes detected in a class file until the test classes of all class files found before it have been passed on.
+     */
+    private static class OrderedTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+        private final ThreadLocal<Integer> currentClassFile = new ThreadLocal<Integer>();
+        private final Map<Integer, List<TestClassRunInfo>> detectedClasses = new HashMap<Integer, List<TestClassRunInfo>>();
+        private final Set<Integer> finishedClassFiles = new HashSet<Integer>();
+        private int nextClassFile;
+
+        OrderedTestClassProcessor(TestClassProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        void startClassFile(int index) {
+            currentClassFile.set(index);
+        }
+
+        void finishClassFile(int index) {
+            currentClassFile.remove();
+            synchronized (detectedClasses) {
+                finishedClassFiles.add(index);
+                while (finishedClassFiles.remove(nextClassFile)) {
+                    List<TestClassRunInfo> classes = detectedClasses.remove(nextClassFile);
+                    if (classes != null) {
+                        for (TestClassRunInfo testClass : classes) {
+                            delegate.processTestClass(testClass);
+                        }
+                    }
+                    nextClassFile++;
+                }
+            }
+        }
+
+        @Override
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public void processTestClass(TestClassRunInfo testClass) {
+            Integer index = currentClassFile.get();
+            synchronized (detectedClasses) {
+                if (index == null) {
+                    delegate.processTestClass(testClass);
+                    return;
+                }
+                List<TestClassRunInfo> classes = detectedClasses.get(index);
+                if (classes == null) {
+                    classes = new ArrayList<TestClassRunInfo>(1);
+                    detectedClasses.put(index, classes);
+                }
+                classes.add(testClass);
+            }
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+        }
+    }
 }
@@ -27,15 +27,19 @@ import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassPro
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.tasks.testing.Test;
 import org.gradle.internal.Factory;
 import org.gradle.internal.actor.ActorFactory;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationWorkerRegistry;
 import org.gradle.internal.progress.BuildOperationExecutor;
 import org.gradle.internal.time.TrueTimeProvider;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -47,13 +51,31 @@ public class DefaultTestExecuter implements TestExecuter {
     private final ModuleRegistry moduleRegistry;
     private final BuildOperationWorkerRegistry buildOperationWorkerRegistry;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final ExecutorFactory executorFactory;
+    private final int maxWorkerCount;
+    private final TestWorkerPool workerPool;
+    private final Map<String, Long> previousClassDurations;
 
     public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry, BuildOperationWorkerRegistry buildOperationWorkerRegistry, BuildOperationExecutor buildOperationExecutor) {
+        this(workerFactory, actorFactory, moduleRegistry, buildOperationWorkerRegistry, buildOperationExecutor, null, 1, null, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * @param executorFactory used to detect test classes in parallel, or null to detect them on the calling thread.
+     * @param maxWorkerCount the maximum number of threads to detect test classes with.
+     * @param workerPool used to reuse test worker processes between test executions, or null to start new worker processes.
+     * @param previousClassDurations the duration of each test class in the previous run, by class name, used to balance the test classes across forks.
+     */
+    public DefaultTestExecuter(WorkerProcessFactory workerFactory, ActorFactory actorFactory, ModuleRegistry moduleRegistry, BuildOperationWorkerRegistry buildOperationWorkerRegistry, BuildOperationExecutor buildOperationExecutor, ExecutorFactory executorFactory, int maxWorkerCount, TestWorkerPool workerPool, Map<String, Long> previousClassDurations) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
         this.moduleRegistry = moduleRegistry;
         this.buildOperationWorkerRegistry = buildOperationWorkerRegistry;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.executorFactory = executorFactory;
+        this.maxWorkerCount = maxWorkerCount;
+        this.workerPool = workerPool;
+        this.previousClassDurations = previousClassDurations;
     }
 
     @Override
@@ -62,10 +84,13 @@ public class DefaultTestExecuter implements TestExecuter {
         final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
         final BuildOperationWorkerRegistry.Operation currentOperation = buildOperationWorkerRegistry.getCurrent();
         final Set<File> classpath = ImmutableSet.copyOf(testTask.getClasspath());
+        // A reused worker would run the test classes of all its forks
+        final TestWorkerPool forkWorkerPool = testTask.getForkEvery() == 0 ? workerPool : null;
+        final TestWorkerPool.WorkerKey workerKey = forkWorkerPool == null ? null : forkWorkerPool.workerKey(testTask.getPath(), testTask, classpath, testInstanceFactory);
         final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
-                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry, currentOperation);
+                    classpath, testFramework.getWorkerConfigurationAction(), moduleRegistry, currentOperation, forkWorkerPool, workerKey);
             }
         };
         Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
@@ -75,7 +100,7 @@ public class DefaultTestExecuter implements TestExecuter {
         };
 
         TestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
-            reforkingProcessorFactory, actorFactory);
+            reforkingProcessorFactory, actorFactory, previousClassDurations);
 
         final FileTree testClassFiles = testTask.getCandidateClassFiles();
 
@@ -84,7 +109,7 @@ public class DefaultTestExecuter implements TestExecuter {
             TestFrameworkDetector testFrameworkDetector = testTask.getTestFramework().getDetector();
             testFrameworkDetector.setTestClassesDirectory(testTask.getTestClassesDir());
             testFrameworkDetector.setTestClasspath(classpath);
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, executorFactory, maxWorkerCount);
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
@@ -23,6 +23,10 @@ import java.util.Set;
 public interface TestFrameworkDetector {
     void startDetection(TestClassProcessor testClassProcessor);
 
+    /**
+     * Checks whether the given class file is a test class, and passes it to the test class processor if so. May be called concurrently
+     * for different class files.
+     */
     boolean processTestClass(File testClassFile);
 
     void setTestClassesDirectory(File testClassesDir);
@@ -51,31 +51,30 @@ public class DefaultTestReport implements TestReporter {
         LOG.info("Generating HTML test report...");
 
         Timer clock = Timers.startTimer();
-        AllTestResults model = loadModelFromProvider(resultsProvider);
-        generateFiles(model, resultsProvider, reportDir);
+        generateFiles(new AllTestResults(), resultsProvider, reportDir);
         LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
     }
 
-    private AllTestResults loadModelFromProvider(TestResultsProvider resultsProvider) {
-        final AllTestResults model = new AllTestResults();
-        resultsProvider.visitClasses(new Action<TestClassResult>() {
-            public void execute(TestClassResult classResult) {
-                model.addTestClass(classResult.getId(), classResult.getClassName());
-                List<TestMethodResult> collectedResults = classResult.getResults();
-                for (TestMethodResult collectedResult : collectedResults) {
-                    final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), collectedResult.getName(), collectedResult.getDuration());
-                    if (collectedResult.getResultType() == SKIPPED) {
-                        testResult.setIgnored();
-                    } else {
-                        List<TestFailure> failures = collectedResult.getFailures();
-                        for (TestFailure failure : failures) {
-                            testResult.addFailure(failure);
-                        }
-                    }
+    /**
+     * Adds the given class to the model. The details of failures are only kept when asked for, as they are only shown on the page of the class itself.
+     */
+    private static ClassTestResults addToModel(AllTestResults model, TestClassResult classResult, boolean keepFailures) {
+        ClassTestResults classTestResults = model.addTestClass(classResult.getId(), classResult.getClassName());
+        List<TestMethodResult> collectedResults = classResult.getResults();
+        for (TestMethodResult collectedResult : collectedResults) {
+            final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), collectedResult.getName(), collectedResult.getDuration());
+            if (collectedResult.getResultType() == SKIPPED) {
+                testResult.setIgnored();
+            } else if (keepFailures) {
+                List<TestFailure> failures = collectedResult.getFailures();
+                for (TestFailure failure : failures) {
+                    testResult.addFailure(failure);
                 }
+            } else if (!collectedResult.getFailures().isEmpty()) {
+                testResult.setFailed();
             }
-        });
-        return model;
+        }
+        return classTestResults;
     }
 
     private void generateFiles(AllTestResults model, final TestResultsProvider resultsProvider, File reportDir) {
@@ -86,13 +85,19 @@ public class DefaultTestReport implements TestReporter {
                 public void render(final AllTestResults model, final HtmlReportBuilder output) throws IOException {
                     buildOperationProcessor.run(new Action<BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>>>() {
                         @Override
-                        public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                        public void execute(final BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                            // Render the page of each class as soon as it has been read, using a model of its own that holds the details of
+                            // its failures. The overview and package pages only need a summary of each test, which is all the main model keeps.
+                            resultsProvider.visitClasses(new Action<TestClassResult>() {
+                                public void execute(TestClassResult classResult) {
+                                    addToModel(model, classResult, false);
+                                    ClassTestResults classResults = addToModel(new AllTestResults(), classResult, true);
+                                    queue.add(generator(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider), output));
+                                }
+                            });
                             queue.add(generator("index.html", model, new OverviewPageRenderer(), output));
                             for (PackageTestResults packageResults : model.getPackages()) {
                                 queue.add(generator(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer(), output));
-                                for (ClassTestResults classResults : packageResults.getClasses()) {
-                                    queue.add(generator(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider), output));
-                                }
                             }
                         }
                     });
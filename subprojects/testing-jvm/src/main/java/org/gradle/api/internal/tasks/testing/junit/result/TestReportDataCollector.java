@@ -25,17 +25,19 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Collects the test results into memory and spools the test output to file during execution (to avoid holding it all in memory).
+ * Spools the test results and the test output to file during execution (to avoid holding them all in memory).
+ * Only the class names and start times are kept in memory until the writers are closed.
  */
 public class TestReportDataCollector implements TestListener, TestOutputListener {
 
-    private final Map<String, TestClassResult> results;
+    private final Map<String, TestClassResult> results = new HashMap<String, TestClassResult>();
+    private final TestResultSerializer.Writer resultWriter;
     private final TestOutputStore.Writer outputWriter;
     private final Map<TestDescriptor, TestMethodResult> currentTestMethods = new HashMap<TestDescriptor, TestMethodResult>();
     private long internalIdCounter = 1;
 
-    public TestReportDataCollector(Map<String, TestClassResult> results, TestOutputStore.Writer outputWriter) {
-        this.results = results;
+    public TestReportDataCollector(TestResultSerializer.Writer resultWriter, TestOutputStore.Writer outputWriter) {
+        this.resultWriter = resultWriter;
         this.outputWriter = outputWriter;
     }
 
@@ -53,9 +55,8 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
                 methodResult.addFailure(failureMessage(throwable), stackTrace(throwable), exceptionClassName(throwable));
             }
             methodResult.completed(result);
-            TestClassResult classResult = new TestClassResult(internalIdCounter++, suite.getName(), result.getStartTime());
-            classResult.add(methodResult);
-            results.put(suite.getName(), classResult);
+            TestClassResult classResult = classResult(suite.getName(), result.getStartTime());
+            resultWriter.add(classResult, methodResult);
         }
     }
 
@@ -72,15 +73,20 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
         for (Throwable throwable : result.getExceptions()) {
             methodResult.addFailure(failureMessage(throwable), stackTrace(throwable), exceptionClassName(throwable));
         }
+        TestClassResult classResult = classResult(className, result.getStartTime());
+        resultWriter.add(classResult, methodResult);
+    }
+
+    private TestClassResult classResult(String className, long startTime) {
         TestClassResult classResult = results.get(className);
         if (classResult == null) {
-            classResult = new TestClassResult(internalIdCounter++, className, result.getStartTime());
+            classResult = new TestClassResult(internalIdCounter++, className, startTime);
             results.put(className, classResult);
         } else if (classResult.getStartTime() == 0) {
             //class results may be created earlier, where we don't yet have access to the start time
-            classResult.setStartTime(result.getStartTime());
+            classResult.setStartTime(startTime);
         }
-        classResult.add(methodResult);
+        return classResult;
     }
 
     private String failureMessage(Throwable throwable) {
@@ -132,6 +138,7 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
             //feels like this scenario should modelled more explicitly
             classResult = new TestClassResult(internalIdCounter++, className, 0);
             results.put(className, classResult);
+            resultWriter.add(classResult);
         }
 
         TestMethodResult methodResult = currentTestMethods.get(testDescriptor);
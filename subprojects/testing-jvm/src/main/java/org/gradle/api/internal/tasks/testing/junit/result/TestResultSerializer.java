@@ -20,17 +20,29 @@ import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.io.RandomAccessFileInputStream;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
-import org.gradle.internal.serialize.FlushableEncoder;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
 import java.io.*;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Stores test results in a binary file.
+ *
+ * <p>
+ *     The file starts with the results of the individual test methods, in the order in which they were written. These are followed
+ *     by an index that lists the classes, their durations and the position of the results of each of their methods, and finally by the position of the index.
+ *     This allows results to be written as tests complete, in any order, and to be read back one class at a time.
+ * </p>
+ */
 public class TestResultSerializer {
-    private static final int RESULT_VERSION = 3;
+    private static final int RESULT_VERSION = 4;
 
     private final File resultsFile;
 
@@ -39,41 +51,143 @@ public class TestResultSerializer {
     }
 
     public void write(Collection<TestClassResult> results) {
+        Writer writer = writer();
         try {
-            OutputStream outputStream = new FileOutputStream(resultsFile);
-            try {
-                if (!results.isEmpty()) { // only write if we have results, otherwise truncate
-                    FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
-                    encoder.writeSmallInt(RESULT_VERSION);
-                    write(results, encoder);
-                    encoder.flush();
+            for (TestClassResult classResult : results) {
+                writer.add(classResult);
+                for (TestMethodResult methodResult : classResult.getResults()) {
+                    writer.add(classResult, methodResult);
                 }
-            } finally {
-                outputStream.close();
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        } finally {
+            writer.close();
         }
     }
 
-    private void write(Collection<TestClassResult> results, Encoder encoder) throws IOException {
-        encoder.writeSmallInt(results.size());
-        for (TestClassResult result : results) {
-            write(result, encoder);
+    /**
+     * Creates a writer that writes results as they are added. The writer must be closed for the results to be readable.
+     */
+    public Writer writer() {
+        return new Writer();
+    }
+
+    public class Writer implements Closeable {
+        private final Map<Long, ClassEntry> classes = new LinkedHashMap<Long, ClassEntry>();
+        private KryoBackedEncoder encoder;
+        private long writePosition;
+        private int encoderPosition;
+
+        /**
+         * Adds a class to the results. The class name and start time are written when the writer is closed, so they can still change until then.
+         * Any method results that have been added to the class are ignored.
+         */
+        public void add(TestClassResult classResult) {
+            entryFor(classResult);
+        }
+
+        /**
+         * Writes the result of a method of the given class.
+         */
+        public void add(TestClassResult classResult, TestMethodResult methodResult) {
+            ClassEntry entry = entryFor(classResult);
+            try {
+                KryoBackedEncoder encoder = encoder();
+                entry.add(writePosition(), methodResult.getEndTime());
+                write(methodResult, encoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ClassEntry entryFor(TestClassResult classResult) {
+            ClassEntry entry = classes.get(classResult.getId());
+            if (entry == null) {
+                entry = new ClassEntry(classResult);
+                classes.put(classResult.getId(), entry);
+            }
+            return entry;
+        }
+
+        private KryoBackedEncoder encoder() throws IOException {
+            if (encoder == null) {
+                encoder = new KryoBackedEncoder(new FileOutputStream(resultsFile));
+                encoder.writeSmallInt(RESULT_VERSION);
+            }
+            return encoder;
+        }
+
+        /**
+         * Returns the position in the file at which the next result will be written. The encoder counts its position as an int, which wraps
+         * once more than 2GB has been written, so only the difference to the previous position is taken from the encoder.
+         */
+        private long writePosition() {
+            int position = encoder.getWritePosition();
+            writePosition += position - encoderPosition;
+            encoderPosition = position;
+            return writePosition;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (classes.isEmpty()) {
+                    // only write if we have results, otherwise truncate
+                    new FileOutputStream(resultsFile).close();
+                    return;
+                }
+                KryoBackedEncoder encoder = encoder();
+                try {
+                    long indexPosition = writePosition();
+                    writeIndex(encoder);
+                    encoder.writeLong(indexPosition);
+                } finally {
+                    encoder.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeIndex(Encoder encoder) throws IOException {
+            encoder.writeSmallInt(classes.size());
+            for (ClassEntry entry : classes.values()) {
+                TestClassResult classResult = entry.classResult;
+                encoder.writeSmallLong(classResult.getId());
+                encoder.writeString(classResult.getClassName());
+                encoder.writeLong(classResult.getStartTime());
+                encoder.writeSmallLong(Math.max(entry.endTime, classResult.getStartTime()) - classResult.getStartTime());
+                encoder.writeSmallInt(entry.methodCount);
+                long previous = 0;
+                for (int i = 0; i < entry.methodCount; i++) {
+                    encoder.writeSmallLong(entry.methodPositions[i] - previous);
+                    previous = entry.methodPositions[i];
+                }
+            }
         }
     }
 
-    private void write(TestClassResult classResult, Encoder encoder) throws IOException {
-        encoder.writeSmallLong(classResult.getId());
-        encoder.writeString(classResult.getClassName());
-        encoder.writeLong(classResult.getStartTime());
-        encoder.writeSmallInt(classResult.getResults().size());
-        for (TestMethodResult methodResult : classResult.getResults()) {
-            write(methodResult, encoder);
+    private static class ClassEntry {
+        final TestClassResult classResult;
+        long[] methodPositions = new long[4];
+        int methodCount;
+        long endTime;
+
+        ClassEntry(TestClassResult classResult) {
+            this.classResult = classResult;
+        }
+
+        void add(long position, long methodEndTime) {
+            endTime = Math.max(endTime, methodEndTime);
+            if (methodCount == methodPositions.length) {
+                long[] newPositions = new long[methodPositions.length * 2];
+                System.arraycopy(methodPositions, 0, newPositions, 0, methodCount);
+                methodPositions = newPositions;
+            }
+            methodPositions[methodCount++] = position;
         }
     }
 
-    private void write(TestMethodResult methodResult, Encoder encoder) throws IOException {
+    private static void write(TestMethodResult methodResult, Encoder encoder) throws IOException {
         encoder.writeSmallLong(methodResult.getId());
         encoder.writeString(methodResult.getName());
         encoder.writeSmallInt(methodResult.getResultType().ordinal());
@@ -87,66 +201,139 @@ public class TestResultSerializer {
         }
     }
 
+    /**
+     * Visits the results one class at a time, so that only the results of a single class are held in memory.
+     */
     public void read(Action<? super TestClassResult> visitor) {
         if (!isHasResults()) {
             return;
         }
         try {
-            InputStream inputStream = new FileInputStream(resultsFile);
+            RandomAccessFile dataFile = new RandomAccessFile(resultsFile, "r");
             try {
-                Decoder decoder = new KryoBackedDecoder(inputStream);
-                int version = decoder.readSmallInt();
-                if (version != RESULT_VERSION) {
-                    throw new IllegalArgumentException(String.format("Unexpected result file version %d found in %s.", version, resultsFile));
+                readResults(openIndex(dataFile), new MethodResultReader(dataFile), visitor);
+            } finally {
+                dataFile.close();
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Checks the version of the given results file and returns a decoder positioned at the start of its index.
+     */
+    private Decoder openIndex(RandomAccessFile dataFile) throws IOException {
+        dataFile.seek(0);
+        int version = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile)).readSmallInt();
+        if (version != RESULT_VERSION) {
+            throw new IllegalArgumentException(String.format("Unexpected result file version %d found in %s.", version, resultsFile));
+        }
+        dataFile.seek(dataFile.length() - 8);
+        long indexPosition = dataFile.readLong();
+        byte[] index = new byte[(int) (dataFile.length() - 8 - indexPosition)];
+        dataFile.seek(indexPosition);
+        dataFile.readFully(index);
+        return new KryoBackedDecoder(new ByteArrayInputStream(index));
+    }
+
+    /**
+     * Returns the duration of each test class, by class name. Only reads the index, not the results of the individual methods.
+     */
+    public Map<String, Long> readClassDurations() {
+        Map<String, Long> durations = new HashMap<String, Long>();
+        if (!isHasResults()) {
+            return durations;
+        }
+        try {
+            RandomAccessFile dataFile = new RandomAccessFile(resultsFile, "r");
+            try {
+                Decoder indexDecoder = openIndex(dataFile);
+                int classCount = indexDecoder.readSmallInt();
+                for (int i = 0; i < classCount; i++) {
+                    indexDecoder.readSmallLong();
+                    String className = indexDecoder.readString();
+                    indexDecoder.readLong();
+                    durations.put(className, indexDecoder.readSmallLong());
+                    int testMethodCount = indexDecoder.readSmallInt();
+                    for (int j = 0; j < testMethodCount; j++) {
+                        indexDecoder.readSmallLong();
+                    }
                 }
-                readResults(decoder, visitor);
             } finally {
-                inputStream.close();
+                dataFile.close();
             }
         } catch (Exception e) {
             throw UncheckedException.throwAsUncheckedException(e);
         }
+        return durations;
     }
 
     public boolean isHasResults() {
         return resultsFile.exists() && resultsFile.length() > 0;
     }
 
-    private void readResults(Decoder decoder, Action<? super TestClassResult> visitor) throws ClassNotFoundException, IOException {
-        int classCount = decoder.readSmallInt();
+    private void readResults(Decoder indexDecoder, MethodResultReader methodReader, Action<? super TestClassResult> visitor) throws IOException {
+        int classCount = indexDecoder.readSmallInt();
         for (int i = 0; i < classCount; i++) {
-            TestClassResult classResult = readClassResult(decoder);
+            TestClassResult classResult = readClassResult(indexDecoder, methodReader);
             visitor.execute(classResult);
         }
     }
 
-    private TestClassResult readClassResult(Decoder decoder) throws IOException, ClassNotFoundException {
-        long id = decoder.readSmallLong();
-        String className = decoder.readString();
-        long startTime = decoder.readLong();
+    private TestClassResult readClassResult(Decoder indexDecoder, MethodResultReader methodReader) throws IOException {
+        long id = indexDecoder.readSmallLong();
+        String className = indexDecoder.readString();
+        long startTime = indexDecoder.readLong();
+        // The duration is calculated from the method results
+        indexDecoder.readSmallLong();
         TestClassResult result = new TestClassResult(id, className, startTime);
-        int testMethodCount = decoder.readSmallInt();
+        int testMethodCount = indexDecoder.readSmallInt();
+        long position = 0;
         for (int i = 0; i < testMethodCount; i++) {
-            TestMethodResult methodResult = readMethodResult(decoder);
-            result.add(methodResult);
+            position += indexDecoder.readSmallLong();
+            result.add(methodReader.read(position));
         }
         return result;
     }
 
-    private TestMethodResult readMethodResult(Decoder decoder) throws ClassNotFoundException, IOException {
-        long id = decoder.readSmallLong();
-        String name = decoder.readString();
-        TestResult.ResultType resultType = TestResult.ResultType.values()[decoder.readSmallInt()];
-        long duration = decoder.readSmallLong();
-        long endTime = decoder.readLong();
-        TestMethodResult methodResult = new TestMethodResult(id, name, resultType, duration, endTime);
-        int failures = decoder.readSmallInt();
-        for (int i = 0; i < failures; i++) {
-            String exceptionType = decoder.readString();
-            String message = decoder.readString();
-            String stackTrace = decoder.readString();
-            methodResult.addFailure(message, stackTrace, exceptionType);
-        }
-        return methodResult;
+    /**
+     * Reads method results at given positions, reusing the decoder when results are read in the order they were written.
+     */
+    private static class MethodResultReader {
+        private final RandomAccessFile dataFile;
+        private KryoBackedDecoder decoder;
+        private long decoderStart;
+
+        MethodResultReader(RandomAccessFile dataFile) {
+            this.dataFile = dataFile;
+            this.decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
+        }
+
+        TestMethodResult read(long position) throws IOException {
+            if (decoderStart + decoder.getReadPosition() != position) {
+                dataFile.seek(position);
+                decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
+                decoderStart = position;
+            }
+            return readMethodResult(decoder);
+        }
+
+        private static TestMethodResult readMethodResult(Decoder decoder) throws IOException {
+            long id = decoder.readSmallLong();
+            String name = decoder.readString();
+            TestResult.ResultType resultType = TestResult.ResultType.values()[decoder.readSmallInt()];
+            long duration = decoder.readSmallLong();
+            long endTime = decoder.readLong();
+            TestMethodResult methodResult = new TestMethodResult(id, name, resultType, duration, endTime);
+            int failures = decoder.readSmallInt();
+            for (int i = 0; i < failures; i++) {
+                String exceptionType = decoder.readString();
+                String message = decoder.readString();
+                String stackTrace = decoder.readString();
+                methodResult.addFailure(message, stackTrace, exceptionType);
+            }
+            return methodResult;
+        }
     }
 }
@@ -18,14 +18,10 @@ package org.gradle.api.internal.tasks.testing.testng;
 import org.gradle.api.internal.tasks.testing.detection.AbstractTestFrameworkDetector;
 import org.gradle.api.internal.tasks.testing.detection.ClassFileExtractionManager;
 import org.gradle.api.internal.tasks.testing.detection.TestClassVisitor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.File;
 
 class TestNGDetector extends AbstractTestFrameworkDetector<TestNGTestClassDetecter> {
-    private static final Logger LOGGER = LoggerFactory.getLogger(TestNGDetector.class);
-
     TestNGDetector(ClassFileExtractionManager classFileExtractionManager) {
         super(classFileExtractionManager);
     }
@@ -47,16 +43,7 @@ class TestNGDetector extends AbstractTestFrameworkDetector<TestNGTestClassDetect
         boolean isTest = classVisitor.isTest();
 
         if (!isTest) {
-            final String superClassName = classVisitor.getSuperClassName();
-
-            final File superClassFile = getSuperTestClassFile(superClassName);
-
-            if (superClassFile != null) {
-                isTest = processSuperClass(superClassFile);
-            } else {
-                LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file",
-                        superClassName);
-            }
+            isTest = processSuperClass(classVisitor.getSuperClassName());
         }
 
         publishTestClass(isTest, classVisitor, superClass);
@@ -17,6 +17,7 @@
 package org.gradle.api.tasks.testing;
 
 import groovy.lang.Closure;
+import org.gradle.StartParameter;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.Incubating;
@@ -41,8 +42,7 @@ import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
 import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
 import org.gradle.api.internal.tasks.testing.junit.report.TestReporter;
 import org.gradle.api.internal.tasks.testing.junit.result.Binary2JUnitXmlReportGenerator;
-import org.gradle.api.internal.tasks.testing.junit.result.InMemoryTestResultsProvider;
-import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
+import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider;
 import org.gradle.api.internal.tasks.testing.junit.result.TestOutputAssociation;
 import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore;
 import org.gradle.api.internal.tasks.testing.junit.result.TestReportDataCollector;
@@ -58,6 +58,7 @@ import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProc
 import org.gradle.api.internal.tasks.testing.results.TestListenerAdapter;
 import org.gradle.api.internal.tasks.testing.results.TestListenerInternal;
 import org.gradle.api.internal.tasks.testing.testng.TestNGTestFramework;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.reporting.DirectoryReport;
 import org.gradle.api.reporting.Reporting;
@@ -79,6 +80,7 @@ import org.gradle.api.tasks.testing.logging.TestLoggingContainer;
 import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerBroadcast;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.jvm.UnsupportedJavaRuntimeException;
@@ -100,7 +102,7 @@ import org.gradle.util.ConfigureUtil;
 
 import javax.inject.Inject;
 import java.io.File;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -590,14 +592,13 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         }
 
         File binaryResultsDir = getBinResultsDir();
+        Map<String, Long> previousClassDurations = readPreviousClassDurations(binaryResultsDir);
         getProject().delete(binaryResultsDir);
         getProject().mkdir(binaryResultsDir);
 
-        Map<String, TestClassResult> results = new HashMap<String, TestClassResult>();
-        TestOutputStore testOutputStore = new TestOutputStore(binaryResultsDir);
-
-        TestOutputStore.Writer outputWriter = testOutputStore.writer();
-        TestReportDataCollector testReportDataCollector = new TestReportDataCollector(results, outputWriter);
+        TestOutputStore.Writer outputWriter = new TestOutputStore(binaryResultsDir).writer();
+        TestResultSerializer.Writer resultWriter = new TestResultSerializer(binaryResultsDir).writer();
+        TestReportDataCollector testReportDataCollector = new TestReportDataCollector(resultWriter, outputWriter);
 
         addTestListener(testReportDataCollector);
         addTestOutputListener(testReportDataCollector);
@@ -610,7 +611,8 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         TestResultProcessor resultProcessor = new StateTrackingTestResultProcessor(testListenerInternalBroadcaster.getSource());
 
         if (testExecuter == null) {
-            testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory(), getModuleRegistry(), getServices().get(BuildOperationWorkerRegistry.class), getServices().get(BuildOperationExecutor.class));
+            TestWorkerPool workerPool = TestWorkerPool.isEnabled() ? getServices().get(TestWorkerPool.class) : null;
+            testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory(), getModuleRegistry(), getServices().get(BuildOperationWorkerRegistry.class), getServices().get(BuildOperationExecutor.class), getServices().get(ExecutorFactory.class), getServices().get(StartParameter.class).getMaxWorkerCount(), workerPool, previousClassDurations);
         }
 
         JavaVersion javaVersion = getJavaVersion();
@@ -625,12 +627,10 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
             testListenerBroadcaster.removeAll();
             testOutputListenerBroadcaster.removeAll();
             testListenerInternalBroadcaster.removeAll();
-            outputWriter.close();
+            CompositeStoppable.stoppable(outputWriter, resultWriter).stop();
         }
 
-        new TestResultSerializer(binaryResultsDir).write(results.values());
-
-        TestResultsProvider testResultsProvider = new InMemoryTestResultsProvider(results.values(), testOutputStore);
+        TestResultsProvider testResultsProvider = new BinaryResultBackedTestResultsProvider(binaryResultsDir);
 
         try {
             if (testReporter == null) {
@@ -663,6 +663,16 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         }
     }
 
+    private Map<String, Long> readPreviousClassDurations(File binaryResultsDir) {
+        try {
+            return new TestResultSerializer(binaryResultsDir).readClassDurations();
+        } catch (RuntimeException e) {
+            // Results of an older Gradle version or a broken results file, schedule the test classes without durations
+            getLogger().debug("Could not read test class durations of the previous run from {}.", binaryResultsDir, e);
+            return Collections.emptyMap();
+        }
+    }
+
     /**
      * Registers a test listener with this task. Consider also the following handy methods for quicker hooking into test execution: {@link #beforeTest(groovy.lang.Closure)}, {@link
      * #afterTest(groovy.lang.Closure)}, {@link #beforeSuite(groovy.lang.Closure)}, {@link #afterSuite(groovy.lang.Closure)} <p> This listener will NOT be notified of tests executed by other tasks. To
@@ -16,6 +16,9 @@
 
 package org.gradle.jvm.test.internal.services;
 
+import org.gradle.StartParameter;
+import org.gradle.api.internal.hash.FileHasher;
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.PluginServiceRegistry;
 import org.gradle.jvm.test.internal.JUnitTestSuiteBinaryRenderer;
@@ -28,7 +31,7 @@ public class JvmTestingServices implements PluginServiceRegistry {
 
     @Override
     public void registerBuildSessionServices(ServiceRegistration registration) {
-
+        registration.addProvider(new BuildSessionScopeServices());
     }
 
     @Override
@@ -45,4 +48,10 @@ public class JvmTestingServices implements PluginServiceRegistry {
     public void registerProjectServices(ServiceRegistration registration) {
 
     }
+
+    private static class BuildSessionScopeServices {
+        TestWorkerPool createTestWorkerPool(FileHasher fileHasher, StartParameter startParameter) {
+            return new TestWorkerPool(fileHasher, startParameter.getMaxWorkerCount());
+        }
+    }
 }
@@ -20,7 +20,10 @@ package org.gradle.api.internal.tasks.testing.detection
 import org.gradle.api.file.FileTree
 import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.file.FileVisitor
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.junit.Test
 import spock.lang.Specification
 
@@ -52,4 +55,68 @@ public class DefaultTestClassScannerTest extends Specification {
 
         0 * _._
     }
+
+    def detectsClassFilesInParallelWhenExecutorFactoryIsGiven() {
+        def executorFactory = new DefaultExecutorFactory()
+        def detected = Collections.synchronizedSet(new HashSet<File>())
+        def threads = Collections.synchronizedSet(new HashSet<Thread>())
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(files, detector, processor, executorFactory, 4)
+
+        when:
+        scanner.run()
+
+        then:
+        1 * detector.startDetection(_)
+        1 * files.visit(_) >> { args ->
+            FileVisitor visitor = args[0]
+            (1..20).each { index ->
+                visitor.visitFile({ new File("class${index}.class") } as FileVisitDetails)
+            }
+        }
+        20 * detector.processTestClass(_) >> { File file ->
+            detected << file
+            threads << Thread.currentThread()
+            true
+        }
+        detected == (1..20).collect { new File("class${it}.class") } as Set
+        !threads.contains(Thread.currentThread())
+
+        cleanup:
+        executorFactory.stop()
+    }
+
+    def passesTestClassesDetectedInParallelToProcessorInOrderOfClassFiles() {
+        def executorFactory = new DefaultExecutorFactory()
+        def random = new Random(42)
+        def delays = (1..20).collect { random.nextInt(20) }
+        TestClassProcessor detectedProcessor = null
+        def processed = []
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(files, detector, processor, executorFactory, 4)
+
+        when:
+        scanner.run()
+
+        then:
+        1 * detector.startDetection(_) >> { TestClassProcessor p -> detectedProcessor = p }
+        1 * files.visit(_) >> { args ->
+            FileVisitor visitor = args[0]
+            (1..20).each { index ->
+                visitor.visitFile({ new File("class${index}.class") } as FileVisitDetails)
+            }
+        }
+        20 * detector.processTestClass(_) >> { File file ->
+            def index = file.name.replaceAll("[^0-9]", "") as int
+            Thread.sleep(delays[index - 1])
+            // Only odd class files contain test classes
+            if (index % 2 == 1) {
+                detectedProcessor.processTestClass(new DefaultTestClassRunInfo("Test${index}"))
+            }
+            true
+        }
+        10 * processor.processTestClass(_) >> { TestClassRunInfo testClass -> processed << testClass.testClassName }
+        processed == (1..20).findAll { it % 2 == 1 }.collect { "Test${it}" }
+
+        cleanup:
+        executorFactory.stop()
+    }
 }
@@ -16,9 +16,12 @@
 
 package org.gradle.api.internal.tasks.testing.junit.result
 
+import org.gradle.api.Action
 import org.gradle.api.internal.tasks.testing.*
 import org.gradle.api.internal.tasks.testing.results.DefaultTestResult
 import org.gradle.internal.serialize.PlaceholderException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Issue
 import spock.lang.Specification
 
@@ -29,9 +32,13 @@ import static org.gradle.api.tasks.testing.TestResult.ResultType.FAILURE
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SUCCESS
 
 class TestReportDataCollectorSpec extends Specification {
-    def Map<String, TestClassResult> results = [:]
+    @Rule
+    TestNameTestDirectoryProvider tmp = new TestNameTestDirectoryProvider()
+    def serializer = new TestResultSerializer(tmp.testDirectory)
+    def resultWriter = serializer.writer()
     def TestOutputStore.Writer writer = Mock()
-    def collector = new TestReportDataCollector(results, writer)
+    def collector = new TestReportDataCollector(resultWriter, writer)
+    private Map<String, TestClassResult> readResults
 
     def "keeps track of test results"() {
         def root = new DefaultTestSuiteDescriptor("1", "Suite")
@@ -219,4 +226,13 @@ class TestReportDataCollectorSpec extends Specification {
         then:
         results.get("FooTest").startTime == 100
     }
+
+    Map<String, TestClassResult> getResults() {
+        if (readResults == null) {
+            resultWriter.close()
+            readResults = [:]
+            serializer.read({ readResults[it.className] = it } as Action)
+        }
+        return readResults
+    }
 }
@@ -67,6 +67,62 @@ class TestResultSerializerTest extends Specification {
         readClass2.results.empty
     }
 
+    def "can write results of interleaved classes as they complete"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+        def class1 = new TestClassResult(1, 'Class1', 0)
+        def class2 = new TestClassResult(2, 'Class2', 5678)
+        def class3 = new TestClassResult(3, 'Class3', 0)
+
+        when:
+        def writer = serializer.writer()
+        writer.add(class1, new TestMethodResult(1, "method1", TestResult.ResultType.SUCCESS, 100, 2300))
+        writer.add(class2, new TestMethodResult(2, "method2", TestResult.ResultType.SUCCESS, 100, 2300))
+        writer.add(class1, new TestMethodResult(3, "method3", TestResult.ResultType.FAILURE, 200, 2700).addFailure("message", "stack-trace", "ExceptionType"))
+        writer.add(class3)
+        class1.startTime = 1234
+        writer.close()
+
+        def read = []
+        serializer.read({ read << it } as Action)
+
+        then:
+        read*.className == ['Class1', 'Class2', 'Class3']
+        read[0].startTime == 1234
+        read[0].results*.name == ['method1', 'method3']
+        read[0].results[1].failures[0].stackTrace == "stack-trace"
+        read[1].results*.name == ['method2']
+        read[2].results.empty
+    }
+
+    def "writes empty file when there are no results"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+
+        when:
+        serializer.writer().close()
+
+        then:
+        !serializer.hasResults
+    }
+
+    def "can read class durations without reading method results"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+        def class1 = new TestClassResult(1, 'Class1', 1000)
+        class1.add(new TestMethodResult(1, "method1", TestResult.ResultType.SUCCESS, 100, 2300))
+        class1.add(new TestMethodResult(2, "method2", TestResult.ResultType.SUCCESS, 100, 1500))
+        def class2 = new TestClassResult(2, 'Class2', 5678)
+
+        when:
+        serializer.write([class1, class2])
+
+        then:
+        serializer.readClassDurations() == [Class1: 1300L, Class2: 0L]
+    }
+
+    def "reads no class durations when there are no results"() {
+        expect:
+        new TestResultSerializer(tmp.createDir("results")).readClassDurations().isEmpty()
+    }
+
     List<TestClassResult> serialize(Collection<TestClassResult> results) {
         def serializer = new TestResultSerializer(tmp.createDir("results"))
         serializer.write(results)